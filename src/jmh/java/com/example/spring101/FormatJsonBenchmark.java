@@ -0,0 +1,78 @@
+package com.example.spring101;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
+
+/**
+ * {@code formatJson} builds a pretty-printing Gson on every call; the shared*
+ * benchmarks reuse one instance to show what that costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatJsonBenchmark {
+
+	private Spring101Application application;
+	private Gson sharedGson;
+	private String json;
+	private Map<String, List<String>> headers;
+
+	@Setup
+	public void setUp() {
+		// formatJson 은 클라이언트나 설정을 쓰지 않는다
+		application = new Spring101Application(null, null);
+		sharedGson = new GsonBuilder().setPrettyPrinting().create();
+		json = """
+				{"id":"contoso.sharepoint.com,2C712604-1370-44E7-A1F5-426573FDA80A",
+				 "displayName":"Communication site","name":"root",
+				 "webUrl":"https://contoso.sharepoint.com",
+				 "siteCollection":{"hostname":"contoso.sharepoint.com"},
+				 "createdDateTime":"2017-05-09T20:56:00Z"}""";
+		headers = Map.of(
+				"content-type", List.of("application/json;odata.metadata=minimal"),
+				"ratelimit-limit", List.of("1200"),
+				"ratelimit-remaining", List.of("1187"),
+				"ratelimit-reset", List.of("42"),
+				"request-id", List.of("4c8a3f0e-0b5f-4a59-9d4a-1f1a2d9b6c11"),
+				"x-ms-ags-diagnostic", List.of("{\"ServerInfo\":{\"DataCenter\":\"Korea Central\"}}"));
+	}
+
+	@Benchmark
+	public String formatJsonString() {
+		return application.formatJson(json);
+	}
+
+	@Benchmark
+	public String formatJsonHeaders() {
+		return application.formatJson(headers);
+	}
+
+	@Benchmark
+	public String sharedGsonString() {
+		return sharedGson.toJson(JsonParser.parseString(json));
+	}
+
+	@Benchmark
+	public String sharedGsonHeaders() {
+		return sharedGson.toJson(headers);
+	}
+}
@@ -0,0 +1,67 @@
+package com.example.spring101.graphapi;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Request body serialization and response parsing for a full 20 item $batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchSerializationBenchmark {
+
+	private List<BatchRequestItem> items;
+	private byte[] responseBody;
+
+	@Setup
+	public void setUp() {
+		items = new ArrayList<>();
+		StringBuilder json = new StringBuilder("{\"responses\":[");
+		for (int i = 1; i <= BatchCoalescer.MAX_BATCH_SIZE; i++) {
+			List<String> dependsOn = i > 1 ? List.of(String.valueOf(i - 1)) : List.of();
+			items.add(new BatchRequestItem(String.valueOf(i), "GET", "sites/root?$select=id,displayName",
+					Map.of(), dependsOn));
+			if (i > 1) {
+				json.append(',');
+			}
+
+			json.append("{\"id\":\"").append(i).append("\",\"status\":200,")
+					.append("\"headers\":{\"Content-Type\":\"application/json\",\"RateLimit-Remaining\":\"")
+					.append(1200 - i).append("\"},")
+					.append("\"body\":{\"id\":\"contoso.sharepoint.com,").append(i)
+					.append("\",\"displayName\":\"Communication site\",\"webUrl\":\"https://contoso.sharepoint.com\"}}");
+		}
+		json.append("]}");
+		responseBody = json.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public String serializeRequest() throws Exception {
+		return GraphClientFactory.toBatchJson(items);
+	}
+
+	@Benchmark
+	public int parseResponse(Blackhole blackhole) throws Exception {
+		return BatchResponseParser.parse(new ByteArrayInputStream(responseBody), blackhole::consume);
+	}
+}
@@ -0,0 +1,55 @@
+package com.example.spring101.graphapi;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpResponseWrapperBenchmark {
+
+	private Map<String, String> headers;
+	private HttpResponseWrapper wrapper;
+
+	@Setup
+	public void setUp() {
+		// HTTP/2 응답처럼 소문자 헤더 이름
+		headers = Map.of(
+				"content-type", "application/json",
+				"ratelimit-limit", "1200",
+				"ratelimit-remaining", "1187",
+				"ratelimit-reset", "42",
+				"x-ms-throttle-limit-percentage", "0.8",
+				"request-id", "4c8a3f0e-0b5f-4a59-9d4a-1f1a2d9b6c11");
+		wrapper = new HttpResponseWrapper(headers);
+	}
+
+	@Benchmark
+	public int getHeaderAsInt() {
+		return wrapper.getHeaderAsInt("RateLimit-Remaining", -1);
+	}
+
+	@Benchmark
+	public int getHeaderAsIntMissing() {
+		return wrapper.getHeaderAsInt("Retry-After", -1);
+	}
+
+	@Benchmark
+	public RateLimitSnapshot wrapAndSnapshot() {
+		return new HttpResponseWrapper(headers).toRateLimitSnapshot();
+	}
+}
@@ -0,0 +1,98 @@
+package com.example.spring101.graphapi;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Token bucket cost when every thread hits the same API type.
+ *
+ * The thread count is not fixed here; the jmhThreads* Gradle tasks pass it with -t.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+	private static final Map<String, String> HEADERS = Map.of(
+			"RateLimit-Limit", "10000",
+			"RateLimit-Remaining", "10000",
+			"RateLimit-Reset", "60");
+
+	private volatile RateLimiter limiter;
+	private RateLimitSnapshot snapshot;
+	private HttpResponseWrapper wrapper;
+
+	@Setup(org.openjdk.jmh.annotations.Level.Iteration)
+	public void setUp() {
+		// 로그 출력 비용이 아니라 CAS 경합만 측정
+		RateLimiter.logger.setLevel(Level.WARNING);
+
+		snapshot = RateLimitSnapshot.ofSingleValued(200, HEADERS);
+		wrapper = new HttpResponseWrapper(HEADERS);
+		limiter = seeded();
+
+		// 헤더가 버킷에 반영되지 않으면 제한 없는 빠른 경로만 재게 된다
+		RateLimiter probe = seeded();
+		probe.acquire(GraphClientFactory.BATCH_API_TYPE);
+		if (probe.getCapacityLeft(GraphClientFactory.BATCH_API_TYPE) >= 100f) {
+			throw new IllegalStateException("RateLimit headers did not populate the bucket: " + HEADERS);
+		}
+	}
+
+	/**
+	 * Take a token; a drained window is swapped for a fresh one instead of
+	 * sleeping, so the measurement stays on the compare-and-set path.
+	 */
+	@Benchmark
+	public long acquire() {
+		RateLimiter current = limiter;
+		long delay = current.acquire(GraphClientFactory.BATCH_API_TYPE);
+		if (delay > 0) {
+			reseed(current);
+		}
+		return delay;
+	}
+
+	@Benchmark
+	public void updateWindowFromSnapshot() {
+		limiter.updateWindow(snapshot, GraphClientFactory.BATCH_API_TYPE);
+	}
+
+	@Benchmark
+	public void updateWindowFromWrapper() {
+		limiter.updateWindow(wrapper, GraphClientFactory.BATCH_API_TYPE);
+	}
+
+	@Benchmark
+	public void getCapacityLeft(Blackhole blackhole) {
+		blackhole.consume(limiter.getCapacityLeft(GraphClientFactory.BATCH_API_TYPE));
+	}
+
+	private synchronized void reseed(RateLimiter drained) {
+		if (limiter == drained) {
+			limiter = seeded();
+		}
+	}
+
+	private RateLimiter seeded() {
+		RateLimiter seeded = new RateLimiter();
+		seeded.updateWindow(snapshot, GraphClientFactory.BATCH_API_TYPE);
+		return seeded;
+	}
+}
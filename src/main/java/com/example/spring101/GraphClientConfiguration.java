@@ -0,0 +1,110 @@
+package com.example.spring101;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+
+import com.example.spring101.graphapi.CircuitBreaker;
+import com.example.spring101.graphapi.GraphClientFactory;
+import com.example.spring101.graphapi.GraphClientPool;
+import com.example.spring101.graphapi.GraphResponseCache;
+import com.example.spring101.graphapi.GraphTelemetry;
+import com.example.spring101.graphapi.RateLimiter;
+import com.example.spring101.graphapi.RequestHedger;
+import com.example.spring101.graphapi.SharedQuotaLedger;
+
+/**
+ * Graph clients built from {@code application.properties}.
+ *
+ * The beans are lazy: nothing is created, and no token is requested, until a
+ * runner asks for the pool. Properties are read when the bean is created, not
+ * during AOT processing, so the same build serves every credential set.
+ */
+@Configuration(proxyBeanMethods = false)
+public class GraphClientConfiguration {
+
+	/**
+	 * Client for the first app registration; shares the application's
+	 * {@link RateLimiter} and, when SHARED_QUOTA_FILE is set, its ledger.
+	 */
+	@Bean
+	@Lazy
+	GraphClientFactory graphClientFactory(Environment environment, RateLimiter rateLimiter,
+			GraphTelemetry telemetry, GraphResponseCache responseCache) throws Exception {
+		GraphClientFactory factory = createClient(environment, telemetry, responseCache,
+				environment.getProperty("TENANT_ID"), environment.getProperty("CLIENT_ID"),
+				environment.getProperty("SECRET"));
+		factory.setRateLimiter(rateLimiter);
+
+		// 같은 호스트의 여러 워커가 하나의 할당량을 나눠 쓸 때만 설정
+		String sharedQuotaFile = environment.getProperty("SHARED_QUOTA_FILE");
+		if (sharedQuotaFile != null && !sharedQuotaFile.isBlank()) {
+			rateLimiter.setSharedLedger(openLedger(Path.of(sharedQuotaFile)));
+		}
+		return factory;
+	}
+
+	/**
+	 * Clients for every app registration. The extra ones are set up like the
+	 * first: a {@link RateLimiter} with the same settings as the application's
+	 * and, when SHARED_QUOTA_FILE is set, a ledger next to it. Each gets its
+	 * own, because every registration has a quota of its own.
+	 */
+	@Bean
+	@Lazy
+	GraphClientPool graphClientPool(Environment environment, GraphClientFactory graphClientFactory,
+			RateLimiter rateLimiter, GraphTelemetry telemetry, GraphResponseCache responseCache) throws Exception {
+		// 앱 등록을 더 추가하면 (CLIENT_ID_2, SECRET_2, 선택적으로 TENANT_ID_2 ...) 각자의 할당량으로 나눠 보낸다
+		List<GraphClientFactory> clients = new ArrayList<>(List.of(graphClientFactory));
+		for (int n = 2; environment.getProperty("CLIENT_ID_" + n) != null; n++) {
+			String clientId = environment.getProperty("CLIENT_ID_" + n);
+			GraphClientFactory client = createClient(environment, telemetry, responseCache,
+					environment.getProperty("TENANT_ID_" + n, environment.getProperty("TENANT_ID")),
+					clientId, environment.getProperty("SECRET_" + n));
+
+			RateLimiter limiter = new RateLimiter();
+			limiter.setMinimumCapacityLeft(rateLimiter.getMinimumCapacityLeft());
+			String sharedQuotaFile = environment.getProperty("SHARED_QUOTA_FILE");
+			if (sharedQuotaFile != null && !sharedQuotaFile.isBlank()) {
+				// 다른 워커도 같은 앱 등록이면 같은 파일을 열도록 번호가 아닌 CLIENT_ID 로 구분
+				Path file = Path.of(sharedQuotaFile);
+				limiter.setSharedLedger(openLedger(file.resolveSibling(file.getFileName() + "." + clientId)));
+			}
+			client.setRateLimiter(limiter);
+			clients.add(client);
+		}
+		return new GraphClientPool(clients);
+	}
+
+	private static SharedQuotaLedger openLedger(Path file) throws Exception {
+		SharedQuotaLedger ledger = new SharedQuotaLedger(file);
+		Runtime.getRuntime().addShutdownHook(new Thread(ledger::close));
+		return ledger;
+	}
+
+	/**
+	 * Client for one app registration with its own token; the caller sets
+	 * its rate limiter.
+	 */
+	private static GraphClientFactory createClient(Environment environment, GraphTelemetry telemetry,
+			GraphResponseCache responseCache, String tenantId, String clientId, String secret) {
+		GraphClientFactory client = new GraphClientFactory(tenantId, clientId, secret,
+				environment.getProperty("AUTHORITY", "https://login.microsoftonline.com"));
+		// 로컬 시뮬레이터로 돌릴 때는 GRAPH_BASE_URL 과 AUTHORITY 를 바꾼다
+		client.setGraphBaseUrl(environment.getProperty("GRAPH_BASE_URL", GraphClientFactory.DEFAULT_GRAPH_BASE_URL));
+		client.setTelemetry(telemetry);
+		client.setResponseCache(responseCache);
+		client.setCircuitBreaker(new CircuitBreaker());
+		// 느린 단건 GET 은 지연 백분위(예: 95)를 넘기면 한 번 더 보낸다
+		String hedgePercentile = environment.getProperty("HEDGE_PERCENTILE");
+		if (hedgePercentile != null && !hedgePercentile.isBlank()) {
+			client.setHedger(new RequestHedger(Double.parseDouble(hedgePercentile)));
+		}
+		return client;
+	}
+}
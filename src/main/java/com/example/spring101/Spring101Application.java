@@ -1,26 +1,32 @@
 package com.example.spring101;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Properties;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.IntStream;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.core.env.Environment;
 
+import com.example.spring101.graphapi.AdaptiveConcurrencyLimiter;
+import com.example.spring101.graphapi.CircuitOpenException;
+import com.example.spring101.graphapi.ExecutionMode;
 import com.example.spring101.graphapi.GraphApiResponse;
 import com.example.spring101.graphapi.GraphClientFactory;
+import com.example.spring101.graphapi.GraphClientPool;
+import com.example.spring101.graphapi.GraphWorkloadRunner;
+import com.example.spring101.graphapi.JobJournal;
+import com.example.spring101.graphapi.RequestPriority;
+import com.example.spring101.graphapi.WorkloadResult;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
@@ -30,6 +36,19 @@ public class Spring101Application implements CommandLineRunner {
 
 	public static Logger logger = Logger.getLogger(Spring101Application.class.getName());
 
+
+	private final ObjectProvider<GraphClientPool> clientPool;
+	private final Environment environment;
+
+	/**
+	 * The client pool is lazy, so a context that is only started, e.g. for a
+	 * CDS training run, never creates Graph clients.
+	 */
+	public Spring101Application(ObjectProvider<GraphClientPool> clientPool, Environment environment) {
+		this.clientPool = clientPool;
+		this.environment = environment;
+	}
+
 	public static void main(String[] args) {
 		logger.info("Starting Spring Boot application...");
 		System.setProperty("AZURE_LOG_LEVEL", "body_and_headers");
@@ -41,92 +60,117 @@ public class Spring101Application implements CommandLineRunner {
 	@Override
 	public void run(String... args) throws Exception {
 
-		// Load properties file and set properties used throughout the sample
-		Properties properties = new Properties();
-		properties.load(Thread.currentThread().getContextClassLoader().getResourceAsStream("application.properties"));
+		// application.properties 는 Spring 이 읽는다 (환경 변수로 덮어쓸 수 있다)
+		GraphClientPool clientPool = this.clientPool.getObject();
 
-		GraphClientFactory factory = new GraphClientFactory(
-				properties.getProperty("TENANT_ID"),
-				properties.getProperty("CLIENT_ID"),
-				properties.getProperty("SECRET"),
-				"https://login.microsoftonline.com");
+		// 중간에 실패해도 다음 실행은 끝난 작업을 건너뛰고 이어서 한다
+		JobJournal journal = new JobJournal(Path.of(environment.getProperty("JOB_JOURNAL", "graph-sweep.journal")));
+		try {
+			sweep(clientPool, journal);
+		} finally {
+			journal.close();
+		}
+	}
 
-		// 병렬 실행을 위한 스레드 풀 생성
-		ExecutorService executorService = Executors.newFixedThreadPool(100); // 10개의 스레드 사용
+	private void sweep(GraphClientPool clientPool, JobJournal journal) throws Exception {
+		// 병렬 실행: 스레드 수가 아니라 concurrencyLimiter 가 동시 실행 수를 제한
+		// EXECUTION_MODE=virtual 이면 호출마다 가상 스레드 사용 (기본값 platform)
+		ExecutionMode mode = ExecutionMode.from(environment.getProperty("EXECUTION_MODE", "platform"));
+		int maxConcurrency = Integer.parseInt(environment.getProperty("MAX_CONCURRENCY", "200"));
+		AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(10, 1, maxConcurrency);
 
 		AtomicReference<List<String>> results = new AtomicReference<>(new ArrayList<>());
 
-		AtomicBoolean shouldStop = new AtomicBoolean(false);
 		AtomicInteger threadId = new AtomicInteger(0);
 
-		CompletableFuture<?>[] asyncFutures = IntStream.range(0, 1900)
-				.mapToObj(x -> CompletableFuture.runAsync(() -> {
-					try {
-
-						if (shouldStop.get())
-							return;
-
-						threadId.set(x);
-
-						GraphApiResponse response = factory.callGraphApiWithHeaders("sites/root", Optional.of(x));
-						if (response == null || formatJson(response.getHeaders()).contains("HTTP/1.1 429")) {
-							shouldStop.set(true);
-
-							// throw new RuntimeException("Throttling detected or response is null");
-						}
-
-						// List<String> headers =
-						// Arrays.asList(formatJson(response.getHeaders()).split("\n"));
+		int parallelItems = 1900;
+		WorkloadResult result;
+		try (GraphWorkloadRunner runner = new GraphWorkloadRunner(mode, concurrencyLimiter,
+				() -> clientPool.getCapacityLeft(GraphClientFactory.BATCH_API_TYPE))) {
+			result = runner.runAll(0, parallelItems, x -> {
+				threadId.set(x);
 
-						// int maxLines = Math.max(results.get().size(), headers.size());
+				// 스로틀링이 걸리면 작업을 버리지 않고 runner 가 속도를 줄여 다시 시도
+				GraphApiResponse response = clientPool.callGraphApiWithHeaders("sites/root", Optional.of(x),
+						RequestPriority.NORMAL);
 
-						// for (int i = 0; i < maxLines; i++) {
-						// String prevLine = i < results.get().size() ? results.get().get(i) : "";
-						// String currLine = i < headers.size() ? headers.get(i) : "";
+				// List<String> headers =
+				// Arrays.asList(formatJson(response.getHeaders()).split("\n"));
 
-						// if(!prevLine.equals(currLine)) {
-						// // System.out.println(currLine);
-						// }
-						// }
+				// int maxLines = Math.max(results.get().size(), headers.size());
 
-						// results.set(headers);
+				// for (int i = 0; i < maxLines; i++) {
+				// String prevLine = i < results.get().size() ? results.get().get(i) : "";
+				// String currLine = i < headers.size() ? headers.get(i) : "";
 
-						System.out.println("Thread ID: " + x);
+				// if(!prevLine.equals(currLine)) {
+				// // System.out.println(currLine);
+				// }
+				// }
 
-					} catch (Exception e) {
-						throw new RuntimeException(e);
-					}
-				}, executorService))
-				.toArray(CompletableFuture[]::new);
+				// results.set(headers);
 
-		try {
-			CompletableFuture.allOf(asyncFutures).join();
-		} catch (Exception e) {
-			logger.log(Level.SEVERE, "Error occurred: {0}", e.getMessage());
+				System.out.println("Thread ID: " + x);
+				return response;
+			}, journal, "parallel");
+			logger.log(Level.INFO, "Parallel phase ({0}): {1}", new Object[] { mode, result });
 		}
-		// executorService.shutdown();
 
 		System.out.println("@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@");
 
-		// 순차적으로 다시 실행
-		IntStream.range(0, 5000).forEach(x -> {
-			try {
-				threadId.set(threadId.get() + 1);
-				GraphApiResponse response = factory.callGraphApiWithHeaders("sites/root",
-						Optional.of((int) threadId.get()));
-				// if (response == null || formatJson(response.getHeaders()).contains("HTTP/1.1
-				// 429")) {
-				// throw new RuntimeException("Throttling detected or response is null");
-				// }
-
-				System.out.println("Thread ID: " + threadId.get());
+		// 순차적으로 다시 실행: 순서대로 끝나므로 항목별 기록 대신 다음 위치만 남긴다
+		// 실패한 항목이 하나라도 있으면 그 앞까지만 기록해 다음 실행이 거기서부터 다시 한다
+		int resumeAt = journal.getCheckpoint("sequential").map(Integer::parseInt).orElse(0);
+		boolean contiguous = true;
+		for (int x = resumeAt; x < 5000; x++) {
+			threadId.set(threadId.get() + 1);
+			// 회로가 열려 있어 보내지 못한 항목은 건너뛰지 않고 같은 항목을 다시 시도한다
+			while (true) {
+				try {
+					// 대량 순차 작업은 LOW: 할당량이 줄면 먼저 양보한다
+					GraphApiResponse response = clientPool.callGraphApiWithHeaders("sites/root",
+							Optional.of((int) threadId.get()), RequestPriority.LOW);
+					// if (response == null || formatJson(response.getHeaders()).contains("HTTP/1.1
+					// 429")) {
+					// throw new RuntimeException("Throttling detected or response is null");
+					// }
+
+					System.out.println("Thread ID: " + threadId.get());
+					if (!response.isSuccess()) {
+						if (contiguous) {
+							logger.log(Level.WARNING, "Sequential item {0} got status {1}, keeping the checkpoint at {0}",
+									new Object[] { x, response.getStatusCode() });
+						}
+						contiguous = false;
+					} else if (contiguous) {
+						journal.checkpoint("sequential", String.valueOf(x + 1));
+					}
+					break;
 
-			} catch (Exception e) {
-				logger.log(Level.SEVERE, "Error occurred: {0}", e.getMessage());
-				throw new RuntimeException(e);
+				} catch (CircuitOpenException e) {
+					// 429/5xx 가 계속되는 동안은 보내지 않고 회로가 닫힐 때까지 기다린다
+					logger.warning(e.getMessage());
+					try {
+						TimeUnit.MILLISECONDS.sleep(Math.max(1000, e.getRetryInMillis()));
+					} catch (InterruptedException interrupted) {
+						Thread.currentThread().interrupt();
+						throw new RuntimeException(interrupted);
+					}
+				} catch (Exception e) {
+					logger.log(Level.SEVERE, "Error occurred: {0}", e.getMessage());
+					throw new RuntimeException(e);
+				}
 			}
-		});
+		}
 
+		// 두 단계 모두 남은 작업이 없을 때만 처음부터 다시 시작하도록 지운다:
+		// 병렬 단계는 모든 항목이 이번에 성공했거나 지난 실행에서 이미 끝났어야 하고,
+		// 순차 단계는 건너뛴 항목 없이 끝까지 체크포인트가 이어져야 한다
+		boolean parallelClean = result.getThrottled() == 0 && result.getFailed() == 0
+				&& result.getCompleted() + result.getSkipped() == parallelItems;
+		if (parallelClean && contiguous) {
+			journal.reset();
+		}
 		logger.info("All tasks completed.");
 	}
 
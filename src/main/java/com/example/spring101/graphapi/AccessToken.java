@@ -0,0 +1,32 @@
+package com.example.spring101.graphapi;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * An access token together with the instant it expires.
+ */
+public class AccessToken {
+    private final String token;
+    private final Instant expiresAt;
+
+    public AccessToken(String token, Instant expiresAt) {
+        this.token = token;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * True when the token is expired, or will be within the given margin.
+     */
+    public boolean expiresWithin(Duration margin, Instant now) {
+        return !now.plus(margin).isBefore(expiresAt);
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.spring101.graphapi;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Caches an access token until shortly before it expires.
+ *
+ * Only one thread talks to the token endpoint at a time; concurrent callers
+ * wait on the same future. A background task refreshes the token ahead of
+ * expiry so callers normally never see a miss after the first fetch.
+ */
+public class AccessTokenCache {
+
+    public static final Logger logger = Logger.getLogger(AccessTokenCache.class.getName());
+
+    // 만료 직전 토큰으로 요청하지 않도록 여유 시간을 둔다
+    private static final Duration EXPIRY_SKEW = Duration.ofSeconds(30);
+    private static final Duration REFRESH_RETRY_DELAY = Duration.ofSeconds(15);
+    private static final Duration MIN_REFRESH_DELAY = Duration.ofSeconds(5);
+
+    private final Callable<AccessToken> fetcher;
+    private final Duration refreshAhead;
+
+    private final AtomicReference<AccessToken> current = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<AccessToken>> inFlight = new AtomicReference<>();
+    private ScheduledFuture<?> refreshTask;
+    private volatile Supplier<Instant> clock = Instant::now;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "access-token-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AccessTokenCache(Callable<AccessToken> fetcher) {
+        this(fetcher, Duration.ofMinutes(5));
+    }
+
+    public AccessTokenCache(Callable<AccessToken> fetcher, Duration refreshAhead) {
+        this.fetcher = fetcher;
+        this.refreshAhead = refreshAhead;
+    }
+
+    /**
+     * Return a valid access token, fetching one only if none is cached.
+     */
+    public String getToken() throws Exception {
+        AccessToken token = current.get();
+        if (token != null && !token.expiresWithin(EXPIRY_SKEW, clock.get())) {
+            hits.increment();
+            return token.getToken();
+        }
+
+        misses.increment();
+        try {
+            return fetch(EXPIRY_SKEW).join().getToken();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Drop the cached token, e.g. after the API answered 401.
+     */
+    public void invalidate() {
+        current.set(null);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Number of times the token endpoint was actually called.
+     */
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    /**
+     * Stop the background refresh thread; tokens are still fetched on demand.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    boolean isShutdown() {
+        return scheduler.isShutdown();
+    }
+
+    /**
+     * Time token lifetimes are measured with; tests replace it.
+     */
+    void setClock(Supplier<Instant> clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Milliseconds until the scheduled background refresh, or -1 if none is scheduled.
+     */
+    synchronized long getRefreshDelayMillis() {
+        return refreshTask == null || refreshTask.isDone() ? -1 : refreshTask.getDelay(TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param validFor a cached token valid for at least this long is used as is
+     */
+    private CompletableFuture<AccessToken> fetch(Duration validFor) {
+        while (true) {
+            CompletableFuture<AccessToken> existing = inFlight.get();
+            if (existing != null) {
+                return existing;
+            }
+
+            CompletableFuture<AccessToken> created = new CompletableFuture<>();
+            if (!inFlight.compareAndSet(null, created)) {
+                continue;
+            }
+
+            // 확인과 CAS 사이에 다른 스레드가 받아온 토큰이 있으면 그대로 쓴다
+            AccessToken cached = current.get();
+            if (cached != null && !cached.expiresWithin(validFor, clock.get())) {
+                created.complete(cached);
+                inFlight.compareAndSet(created, null);
+                return created;
+            }
+
+            refreshes.increment();
+            GraphEvents.TokenFetch event = new GraphEvents.TokenFetch();
+            event.begin();
+            try {
+                AccessToken token = fetcher.call();
+                event.success = true;
+                current.set(token);
+                scheduleRefresh(token);
+                created.complete(token);
+            } catch (Exception e) {
+                created.completeExceptionally(e);
+            } finally {
+                event.commit();
+                inFlight.compareAndSet(created, null);
+            }
+            return created;
+        }
+    }
+
+    /**
+     * Refresh {@code refreshAhead} before expiry, or halfway through the
+     * lifetime of a token that lives shorter than that, but never sooner than
+     * {@code MIN_REFRESH_DELAY}.
+     */
+    private void scheduleRefresh(AccessToken token) {
+        Duration lifetime = Duration.between(clock.get(), token.getExpiresAt());
+        Duration delay = lifetime.minus(refreshAhead);
+        if (delay.compareTo(MIN_REFRESH_DELAY) < 0) {
+            Duration half = lifetime.dividedBy(2);
+            delay = half.compareTo(MIN_REFRESH_DELAY) > 0 ? half : MIN_REFRESH_DELAY;
+        }
+        schedule(delay);
+    }
+
+    private synchronized void schedule(Duration delay) {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        // 토큰마다 예약이 쌓이지 않도록 이전 예약은 취소
+        if (refreshTask != null) {
+            refreshTask.cancel(false);
+        }
+        refreshTask = scheduler.schedule(this::refreshInBackground, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs on the refresh thread once the scheduled delay has passed.
+     */
+    void refreshInBackground() {
+        // 이미 다른 스레드가 새 토큰을 받아왔으면 건너뛴다
+        AccessToken token = current.get();
+        if (token != null && !token.expiresWithin(refreshAhead, clock.get())) {
+            return;
+        }
+
+        try {
+            fetch(refreshAhead).join();
+        } catch (CompletionException e) {
+            logger.log(Level.WARNING, "Background token refresh failed, retrying", e.getCause());
+            AccessToken stillValid = current.get();
+            if (stillValid != null && !stillValid.expiresWithin(EXPIRY_SKEW, clock.get())) {
+                schedule(REFRESH_RETRY_DELAY);
+            }
+        }
+    }
+}
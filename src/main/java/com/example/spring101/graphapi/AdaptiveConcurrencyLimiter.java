@@ -0,0 +1,193 @@
+package com.example.spring101.graphapi;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * AIMD limit on the number of Graph calls in flight.
+ *
+ * The limit grows by one per round of successful calls while latency stays
+ * close to the observed baseline and the tenant still has quota left. A 429
+ * halves the limit and, when the server sent {@code Retry-After}, pauses new
+ * calls until it has passed. Throttling therefore slows callers down instead
+ * of failing them.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    public static final Logger logger = Logger.getLogger(AdaptiveConcurrencyLimiter.class.getName());
+
+    private static final double BACKOFF_RATIO = 0.5;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final long DEFAULT_THROTTLE_PAUSE_MILLIS = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private long pausedUntilNanos;
+    private long lastDecreaseNanos;
+    private double baselineLatencyNanos;
+
+    private float healthyCapacityLeft = 20f; // RateLimit-Remaining 이 이 비율(%) 아래면 늘리지 않는다
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Require 1 <= minLimit <= initialLimit <= maxLimit");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    public void setHealthyCapacityLeft(float percent) {
+        this.healthyCapacityLeft = percent;
+    }
+
+    /**
+     * Wait for a free slot. Every successful acquire must be followed by exactly
+     * one of {@link #onSuccess}, {@link #onThrottled} or {@link #onDropped}.
+     */
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                long pause = pausedUntilNanos - System.nanoTime();
+                if (pause > 0) {
+                    changed.awaitNanos(pause);
+                } else if (inFlight >= (int) limit) {
+                    changed.await();
+                } else {
+                    inFlight++;
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take a slot only if one is free right now.
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (pausedUntilNanos - System.nanoTime() > 0 || inFlight >= (int) limit) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release a slot after a successful call.
+     *
+     * @param latencyNanos      how long the call took
+     * @param capacityLeftPercent quota left as reported by {@link RateLimiter#getCapacityLeft}
+     */
+    public void onSuccess(long latencyNanos, float capacityLeftPercent) {
+        lock.lock();
+        try {
+            inFlight--;
+            updateBaseline(latencyNanos);
+
+            boolean latencyHealthy = latencyNanos <= baselineLatencyNanos * LATENCY_TOLERANCE;
+            boolean quotaHealthy = capacityLeftPercent > healthyCapacityLeft;
+            // 한도를 다 쓰고 있을 때만 늘린다 (안 쓰는 한도를 키워봐야 의미 없음)
+            boolean saturated = inFlight + 1 >= (int) limit;
+
+            if (latencyHealthy && quotaHealthy && saturated) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            } else if (!quotaHealthy) {
+                limit = Math.max(minLimit, limit * 0.9);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release a slot after a 429, back off multiplicatively and honour Retry-After.
+     *
+     * @param retryAfterSeconds value of the Retry-After header, or 0 when absent
+     */
+    public void onThrottled(int retryAfterSeconds) {
+        lock.lock();
+        try {
+            inFlight--;
+            long now = System.nanoTime();
+
+            // 동시에 들어온 429 여러 개로 한도가 바닥까지 떨어지지 않도록 한 번만 줄인다
+            long settle = Math.max((long) baselineLatencyNanos, TimeUnit.MILLISECONDS.toNanos(100));
+            if (now - lastDecreaseNanos > settle) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                lastDecreaseNanos = now;
+                logger.warning(String.format("Throttled, concurrency limit lowered to %d", (int) limit));
+            }
+
+            long pauseMillis = retryAfterSeconds > 0 ? TimeUnit.SECONDS.toMillis(retryAfterSeconds)
+                    : DEFAULT_THROTTLE_PAUSE_MILLIS;
+            long pausedUntil = now + TimeUnit.MILLISECONDS.toNanos(pauseMillis);
+            if (pausedUntil - pausedUntilNanos > 0) {
+                pausedUntilNanos = pausedUntil;
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release a slot without adjusting the limit, e.g. after an I/O error.
+     */
+    public void onDropped() {
+        lock.lock();
+        try {
+            inFlight--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    private void updateBaseline(long latencyNanos) {
+        if (baselineLatencyNanos == 0 || latencyNanos < baselineLatencyNanos) {
+            baselineLatencyNanos = latencyNanos;
+        } else {
+            // 네트워크 상태가 바뀌면 기준값도 천천히 따라간다
+            baselineLatencyNanos += (latencyNanos - baselineLatencyNanos) * 0.01;
+        }
+    }
+}
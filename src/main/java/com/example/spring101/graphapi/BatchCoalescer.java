@@ -0,0 +1,178 @@
+package com.example.spring101.graphapi;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Collects independent requests from many threads and sends them as one
+ * {@code $batch} call.
+ *
+ * A batch is flushed as soon as it holds {@code maxBatchSize} requests, or
+ * {@code maxLinger} after its first request arrived, whichever comes first.
+ * Each caller's future is completed with its own sub-response.
+ */
+public class BatchCoalescer {
+
+    public static final Logger logger = Logger.getLogger(BatchCoalescer.class.getName());
+
+    // Graph 는 $batch 한 번에 최대 20개 요청까지 허용
+    public static final int MAX_BATCH_SIZE = 20;
+
+    private final Function<List<BatchRequestItem>, CompletableFuture<List<BatchResponseItem>>> executor;
+    private final int maxBatchSize;
+    private final Duration maxLinger;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<Pending> pending = new ArrayList<>();
+    private ScheduledFuture<?> lingerTimer;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "batch-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BatchCoalescer(Function<List<BatchRequestItem>, CompletableFuture<List<BatchResponseItem>>> executor,
+            int maxBatchSize, Duration maxLinger) {
+        if (maxBatchSize < 1 || maxBatchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("maxBatchSize must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        this.executor = executor;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLinger = maxLinger;
+    }
+
+    /**
+     * Queue a request for the next batch.
+     *
+     * @param url Graph path relative to the API version, e.g. {@code /sites/root}
+     */
+    public CompletableFuture<BatchResponseItem> submit(String method, String url, Map<String, String> headers) {
+        Pending request = new Pending(method, url, headers);
+        List<Pending> full = null;
+
+        lock.lock();
+        try {
+            pending.add(request);
+            if (pending.size() >= maxBatchSize) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                List<Pending> batch = pending;
+                lingerTimer = scheduler.schedule(() -> flushExpired(batch), maxLinger.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (full != null) {
+            dispatch(full);
+        }
+        return request.future;
+    }
+
+    /**
+     * Send whatever is queued right now.
+     */
+    public void flush() {
+        List<Pending> batch;
+        lock.lock();
+        try {
+            batch = takePending();
+        } finally {
+            lock.unlock();
+        }
+
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    private void flushExpired(List<Pending> batch) {
+        lock.lock();
+        try {
+            // 타이머가 도는 사이 이미 가득 차서 보내진 배치라면 무시
+            if (pending != batch) {
+                return;
+            }
+            takePending();
+        } finally {
+            lock.unlock();
+        }
+        dispatch(batch);
+    }
+
+    public void shutdown() {
+        flush();
+        scheduler.shutdown();
+    }
+
+    // lock 을 잡은 상태에서만 호출
+    private List<Pending> takePending() {
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        if (lingerTimer != null) {
+            lingerTimer.cancel(false);
+            lingerTimer = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(List<Pending> batch) {
+        List<BatchRequestItem> items = new ArrayList<>(batch.size());
+        Map<String, Pending> byId = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Pending request = batch.get(i);
+            String id = String.valueOf(i + 1);
+            items.add(new BatchRequestItem(id, request.method, request.url, request.headers, List.of()));
+            byId.put(id, request);
+        }
+
+        CompletableFuture<List<BatchResponseItem>> responses;
+        try {
+            responses = executor.apply(items);
+        } catch (RuntimeException e) {
+            responses = CompletableFuture.failedFuture(e);
+        }
+
+        responses.whenComplete((results, error) -> {
+            if (error != null) {
+                byId.values().forEach(request -> request.future.completeExceptionally(error));
+                return;
+            }
+
+            for (BatchResponseItem result : results) {
+                Pending request = byId.remove(result.getId());
+                if (request != null) {
+                    request.future.complete(result);
+                }
+            }
+            // 응답에 빠진 요청은 호출자가 알 수 있도록 실패 처리
+            byId.values().forEach(request -> request.future.completeExceptionally(
+                    new RuntimeException("No sub-response in $batch for " + request.method + " " + request.url)));
+        });
+    }
+
+    private static class Pending {
+        final String method;
+        final String url;
+        final Map<String, String> headers;
+        final CompletableFuture<BatchResponseItem> future = new CompletableFuture<>();
+
+        Pending(String method, String url, Map<String, String> headers) {
+            this.method = method;
+            this.url = url;
+            this.headers = headers;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.spring101.graphapi;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Splits a graph of sub-requests into as few {@code $batch} rounds as possible.
+ *
+ * {@link BatchRequestItem#getDependsOn()} is read as a real data dependency.
+ * Graph runs a batch's requests in parallel unless they are chained with
+ * {@code dependsOn}, so a chain only costs latency where it is needed. A batch
+ * holds at most {@code maxBatchSize} requests and {@code dependsOn} can only
+ * point inside its own batch, so larger graphs take several rounds:
+ * <ul>
+ * <li>the number of rounds is {@code ceil(n / maxBatchSize)}, the minimum;</li>
+ * <li>connected groups of requests are kept in one round where they fit, so
+ *     their chains stay on the server; larger groups are cut in topological
+ *     order so every request runs in the same round as its dependencies or a
+ *     later one;</li>
+ * <li>{@code dependsOn} is rewritten to the dependencies in the same round,
+ *     since earlier rounds have already finished.</li>
+ * </ul>
+ */
+public final class BatchPlanner {
+
+    private BatchPlanner() {
+    }
+
+    /**
+     * @return the rounds to send in order, each in topological order
+     * @throws IllegalArgumentException for duplicate ids, unknown dependencies
+     *                                  or cycles
+     */
+    public static List<List<BatchRequestItem>> plan(List<BatchRequestItem> items, int maxBatchSize) {
+        if (items.isEmpty()) {
+            return List.of();
+        }
+        List<BatchRequestItem> order = topologicalOrder(items);
+        Map<String, Integer> position = new HashMap<>();
+        for (int i = 0; i < order.size(); i++) {
+            position.put(order.get(i).getId(), i);
+        }
+
+        int rounds = (order.size() + maxBatchSize - 1) / maxBatchSize;
+        List<List<BatchRequestItem>> bins = pack(order, components(order), rounds, maxBatchSize);
+        if (bins == null) {
+            bins = cut(order, maxBatchSize);
+        }
+
+        List<List<BatchRequestItem>> plan = new ArrayList<>(bins.size());
+        for (List<BatchRequestItem> bin : bins) {
+            bin.sort(Comparator.comparingInt(item -> position.get(item.getId())));
+            Set<String> ids = new HashSet<>();
+            bin.forEach(item -> ids.add(item.getId()));
+
+            List<BatchRequestItem> round = new ArrayList<>(bin.size());
+            for (BatchRequestItem item : bin) {
+                List<String> local = item.getDependsOn().stream().filter(ids::contains).toList();
+                round.add(local.size() == item.getDependsOn().size() ? item
+                        : new BatchRequestItem(item.getId(), item.getMethod(), item.getUrl(), item.getHeaders(), local));
+            }
+            plan.add(round);
+        }
+        return plan;
+    }
+
+    /**
+     * Kahn's algorithm, keeping the input order among requests that are ready.
+     */
+    private static List<BatchRequestItem> topologicalOrder(List<BatchRequestItem> items) {
+        Map<String, BatchRequestItem> byId = new LinkedHashMap<>();
+        for (BatchRequestItem item : items) {
+            if (byId.put(item.getId(), item) != null) {
+                throw new IllegalArgumentException("Duplicate batch request id " + item.getId());
+            }
+        }
+
+        Map<String, Integer> waitingOn = new HashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (BatchRequestItem item : items) {
+            for (String dependency : item.getDependsOn()) {
+                if (!byId.containsKey(dependency)) {
+                    throw new IllegalArgumentException(item.getId() + " depends on unknown request " + dependency);
+                }
+                dependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(item.getId());
+            }
+            waitingOn.put(item.getId(), new HashSet<>(item.getDependsOn()).size());
+        }
+
+        ArrayDeque<String> ready = new ArrayDeque<>();
+        items.stream().filter(item -> waitingOn.get(item.getId()) == 0).forEach(item -> ready.add(item.getId()));
+        List<BatchRequestItem> order = new ArrayList<>(items.size());
+        while (!ready.isEmpty()) {
+            String id = ready.poll();
+            order.add(byId.get(id));
+            for (String dependent : dependents.getOrDefault(id, List.of())) {
+                if (waitingOn.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (order.size() != items.size()) {
+            throw new IllegalArgumentException("Batch requests contain a dependency cycle");
+        }
+        return order;
+    }
+
+    /**
+     * Requests connected by dependencies in either direction, each in
+     * topological order, largest group first.
+     */
+    private static List<List<BatchRequestItem>> components(List<BatchRequestItem> order) {
+        Map<String, String> parent = new HashMap<>();
+        order.forEach(item -> parent.put(item.getId(), item.getId()));
+        for (BatchRequestItem item : order) {
+            for (String dependency : item.getDependsOn()) {
+                parent.put(root(parent, item.getId()), root(parent, dependency));
+            }
+        }
+
+        Map<String, List<BatchRequestItem>> groups = new LinkedHashMap<>();
+        for (BatchRequestItem item : order) {
+            groups.computeIfAbsent(root(parent, item.getId()), key -> new ArrayList<>()).add(item);
+        }
+        List<List<BatchRequestItem>> components = new ArrayList<>(groups.values());
+        components.sort(Comparator.comparingInt(List<BatchRequestItem>::size).reversed());
+        return components;
+    }
+
+    private static String root(Map<String, String> parent, String id) {
+        String root = id;
+        while (!parent.get(root).equals(root)) {
+            root = parent.get(root);
+        }
+        parent.put(id, root);
+        return root;
+    }
+
+    /**
+     * First-fit of whole groups into {@code rounds} batches, then the groups
+     * that did not fit are poured into the free slots in topological order.
+     *
+     * @return the batches, or {@code null} if that needs more than {@code rounds}
+     */
+    private static List<List<BatchRequestItem>> pack(List<BatchRequestItem> order,
+            List<List<BatchRequestItem>> components, int rounds, int maxBatchSize) {
+        List<List<BatchRequestItem>> bins = new ArrayList<>(rounds);
+        for (int i = 0; i < rounds; i++) {
+            bins.add(new ArrayList<>(maxBatchSize));
+        }
+
+        List<List<BatchRequestItem>> split = new ArrayList<>();
+        for (List<BatchRequestItem> component : components) {
+            List<BatchRequestItem> bin = bins.stream()
+                    .filter(candidate -> candidate.size() + component.size() <= maxBatchSize)
+                    .findFirst().orElse(null);
+            if (bin != null) {
+                bin.addAll(component);
+            } else {
+                split.add(component);
+            }
+        }
+
+        // 나뉘는 그룹은 의존 대상과 같거나 뒤의 라운드에만 놓는다
+        Map<String, Integer> roundOf = new HashMap<>();
+        for (List<BatchRequestItem> component : split) {
+            for (BatchRequestItem item : component) {
+                int earliest = 0;
+                for (String dependency : item.getDependsOn()) {
+                    earliest = Math.max(earliest, roundOf.get(dependency));
+                }
+                int round = earliest;
+                while (round < rounds && bins.get(round).size() >= maxBatchSize) {
+                    round++;
+                }
+                if (round == rounds) {
+                    return null;
+                }
+                bins.get(round).add(item);
+                roundOf.put(item.getId(), round);
+            }
+        }
+        bins.removeIf(List::isEmpty);
+        return bins;
+    }
+
+    private static List<List<BatchRequestItem>> cut(List<BatchRequestItem> order, int maxBatchSize) {
+        List<List<BatchRequestItem>> bins = new ArrayList<>();
+        for (int i = 0; i < order.size(); i += maxBatchSize) {
+            bins.add(new ArrayList<>(order.subList(i, Math.min(order.size(), i + maxBatchSize))));
+        }
+        return bins;
+    }
+}
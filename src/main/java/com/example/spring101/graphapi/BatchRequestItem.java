@@ -0,0 +1,50 @@
+package com.example.spring101.graphapi;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One sub-request of a Graph {@code $batch} call.
+ */
+public class BatchRequestItem {
+    private final String id;
+    private final String method;
+    private final String url;
+    private final Map<String, String> headers;
+    private final List<String> dependsOn;
+
+    public BatchRequestItem(String id, String method, String url, Map<String, String> headers, List<String> dependsOn) {
+        this.id = id;
+        this.method = method;
+        // $batch 의 url 은 버전 없이 '/' 로 시작하는 상대 경로
+        this.url = url.startsWith("/") ? url : "/" + url;
+        this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+        this.dependsOn = List.copyOf(dependsOn);
+    }
+
+    public static BatchRequestItem get(String id, String url) {
+        return new BatchRequestItem(id, "GET", url, Map.of(), List.of());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public List<String> getDependsOn() {
+        return dependsOn;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.spring101.graphapi;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One sub-response of a Graph {@code $batch} call.
+ */
+public class BatchResponseItem {
+    private final String id;
+    private final int status;
+    private final Map<String, String> headers;
+    private final String body;
+    private final RateLimitSnapshot rateLimit;
+
+    public BatchResponseItem(String id, int status, Map<String, String> headers, String body) {
+        this.id = id;
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+        this.rateLimit = RateLimitSnapshot.ofSingleValued(status, headers);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public RateLimitSnapshot getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * View this sub-response as a regular {@link GraphApiResponse}.
+     */
+    public GraphApiResponse toResponse() {
+        Map<String, List<String>> multiHeaders = new LinkedHashMap<>();
+        headers.forEach((name, value) -> multiHeaders.put(name, List.of(value)));
+        return new GraphApiResponse(status, multiHeaders, body);
+    }
+}
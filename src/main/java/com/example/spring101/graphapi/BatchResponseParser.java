@@ -0,0 +1,100 @@
+package com.example.spring101.graphapi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Streams the {@code responses} array of a {@code $batch} response.
+ *
+ * Sub-responses are handed to the consumer one at a time as they are parsed,
+ * so the full payload is never held as a single String. Only the body of the
+ * current sub-response is materialized.
+ */
+public class BatchResponseParser {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private BatchResponseParser() {
+    }
+
+    /**
+     * @return the number of sub-responses passed to {@code consumer}
+     */
+    public static int parse(InputStream in, Consumer<BatchResponseItem> consumer) throws IOException {
+        int count = 0;
+        try (JsonParser parser = MAPPER.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object at the start of the $batch response");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("responses".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        BatchResponseItem item = readItem(parser);
+                        GraphEvents.batchItem(item);
+                        consumer.accept(item);
+                        count++;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return count;
+    }
+
+    private static BatchResponseItem readItem(JsonParser parser) throws IOException {
+        String id = null;
+        int status = -1;
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        String body = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id" -> id = parser.getValueAsString();
+                case "status" -> status = parser.getValueAsInt(-1);
+                case "headers" -> readHeaders(parser, value, headers);
+                case "body" -> body = readBody(parser, value);
+                default -> parser.skipChildren();
+            }
+        }
+        return new BatchResponseItem(id, status, headers, body);
+    }
+
+    private static void readHeaders(JsonParser parser, JsonToken value, Map<String, String> headers) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            headers.put(name, parser.getValueAsString());
+            parser.skipChildren();
+        }
+    }
+
+    private static String readBody(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            // base64 등 JSON 이 아닌 본문은 문자열로 온다
+            return parser.getText();
+        }
+        JsonNode node = parser.readValueAsTree();
+        return node.toString();
+    }
+}
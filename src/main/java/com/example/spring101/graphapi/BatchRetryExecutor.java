@@ -0,0 +1,245 @@
+package com.example.spring101.graphapi;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Runs a {@code $batch} and resubmits only the sub-requests that were throttled.
+ *
+ * Each throttled item waits for its own {@code Retry-After} (or a jittered
+ * exponential backoff when there is none). Items that depend on a throttled
+ * item come back as 424 and are retried together with it; dependencies on
+ * items that already succeeded are dropped. An item whose dependency failed
+ * for good (e.g. 404) is not resent and fails with that dependency's status.
+ * The result holds exactly one sub-response per original id.
+ */
+public class BatchRetryExecutor {
+
+    public static final Logger logger = Logger.getLogger(BatchRetryExecutor.class.getName());
+
+    private static final int FAILED_DEPENDENCY = 424;
+
+    /**
+     * Sends one {@code $batch} round. The returned response carries the
+     * sub-responses; a throttled envelope may carry none.
+     */
+    @FunctionalInterface
+    public interface BatchSender {
+        GraphApiResponse send(List<BatchRequestItem> items) throws Exception;
+    }
+
+    private final RetryBudget budget;
+    private int maxRounds = 5;
+    private Duration baseBackoff = Duration.ofSeconds(1);
+    private Duration maxBackoff = Duration.ofSeconds(60);
+
+    public BatchRetryExecutor(RetryBudget budget) {
+        this.budget = budget;
+    }
+
+    public void setMaxRounds(int maxRounds) {
+        this.maxRounds = maxRounds;
+    }
+
+    public void setBaseBackoff(Duration baseBackoff) {
+        this.baseBackoff = baseBackoff;
+    }
+
+    public void setMaxBackoff(Duration maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return the last {@code $batch} status and headers with the merged
+     *         sub-responses in the original order
+     */
+    public GraphApiResponse execute(List<BatchRequestItem> items, BatchSender sender) throws Exception {
+        Map<String, BatchRequestItem> pending = new LinkedHashMap<>();
+        items.forEach(item -> pending.put(item.getId(), item));
+        Map<String, BatchResponseItem> results = new HashMap<>();
+        Map<String, Long> notBefore = new HashMap<>();
+        Set<String> succeeded = new HashSet<>();
+        Map<String, Integer> failed = new HashMap<>(); // 재시도하지 않을 실패와 그 status
+
+        budget.recordRequests(items.size());
+        GraphApiResponse last = null;
+
+        for (int round = 0; !pending.isEmpty(); round++) {
+            failDependents(pending, failed, results);
+            if (pending.isEmpty()) {
+                break;
+            }
+            waitUntilDue(pending, notBefore);
+            List<BatchRequestItem> due = dueItems(pending, notBefore, succeeded);
+
+            last = sender.send(due);
+            Map<String, BatchResponseItem> byId = new HashMap<>();
+            last.getBatchResponses().forEach(response -> byId.put(response.getId(), response));
+            long envelopeRetryAfter = retryAfterMillis(last.getRateLimit());
+
+            List<String> retry = new ArrayList<>();
+            for (BatchRequestItem item : due) {
+                BatchResponseItem response = byId.get(item.getId());
+                if (response != null) {
+                    results.put(item.getId(), response);
+                }
+                if (response != null && response.getStatus() == FAILED_DEPENDENCY) {
+                    // 의존 대상이 재시도 중이면 함께 다시 보내고, 그 시점은 의존 대상을 따른다
+                    retry.add(item.getId());
+                    notBefore.put(item.getId(), 0L);
+                } else if (response == null || isRetryable(response.getStatus())) {
+                    retry.add(item.getId());
+                    long wait = response == null ? envelopeRetryAfter
+                            : retryAfterMillis(response.getRateLimit());
+                    notBefore.put(item.getId(), System.currentTimeMillis()
+                            + (wait > 0 ? wait : backoffMillis(round)));
+                } else {
+                    pending.remove(item.getId());
+                    notBefore.remove(item.getId());
+                    if (response.getStatus() < 400) {
+                        succeeded.add(item.getId());
+                    } else {
+                        failed.put(item.getId(), response.getStatus());
+                    }
+                }
+            }
+            // 의존 대상이 영구 실패한 424 는 다시 보내지 않는다
+            retry.removeAll(failDependents(pending, failed, results));
+
+            if (retry.isEmpty()) {
+                break;
+            }
+            if (round + 1 >= maxRounds || !budget.tryWithdraw(retry.size())) {
+                logger.warning(String.format("Giving up on %d throttled sub-requests after %d rounds",
+                        retry.size(), round + 1));
+                break;
+            }
+        }
+
+        List<BatchResponseItem> merged = new ArrayList<>(items.size());
+        for (BatchRequestItem item : items) {
+            BatchResponseItem response = results.get(item.getId());
+            merged.add(response != null ? response
+                    : new BatchResponseItem(item.getId(), last.getStatusCode(), Map.of(), null));
+        }
+        return new GraphApiResponse(last.getStatusCode(), last.getHeaders(), null, merged);
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 429 || status == 503 || status == 504;
+    }
+
+    /**
+     * Settle pending items that depend, directly or through other items, on
+     * one that failed for good: they fail with that dependency's status.
+     *
+     * @return the ids settled
+     */
+    private static Set<String> failDependents(Map<String, BatchRequestItem> pending, Map<String, Integer> failed,
+            Map<String, BatchResponseItem> results) {
+        Set<String> settled = new HashSet<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BatchRequestItem item : List.copyOf(pending.values())) {
+                Integer status = item.getDependsOn().stream()
+                        .map(failed::get).filter(failure -> failure != null).findFirst().orElse(null);
+                if (status != null) {
+                    pending.remove(item.getId());
+                    failed.put(item.getId(), status);
+                    results.put(item.getId(), new BatchResponseItem(item.getId(), status, Map.of(), null));
+                    settled.add(item.getId());
+                    changed = true;
+                }
+            }
+        }
+        return settled;
+    }
+
+    private void waitUntilDue(Map<String, BatchRequestItem> pending, Map<String, Long> notBefore)
+            throws InterruptedException {
+        Map<String, Long> effective = effectiveNotBefore(pending, notBefore);
+        long earliest = effective.values().stream().mapToLong(Long::longValue).min().orElse(0);
+        long delay = earliest - System.currentTimeMillis();
+        if (delay > 0) {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        }
+    }
+
+    /**
+     * Pending items whose wait, and the wait of every pending item they depend
+     * on, has passed. Dependencies on items that succeeded are removed.
+     */
+    private static List<BatchRequestItem> dueItems(Map<String, BatchRequestItem> pending, Map<String, Long> notBefore,
+            Set<String> succeeded) {
+        long now = System.currentTimeMillis();
+        Map<String, Long> effective = effectiveNotBefore(pending, notBefore);
+
+        List<BatchRequestItem> items = new ArrayList<>();
+        for (BatchRequestItem item : pending.values()) {
+            if (effective.get(item.getId()) > now) {
+                continue;
+            }
+            List<String> dependsOn = item.getDependsOn().stream().filter(id -> !succeeded.contains(id)).toList();
+            items.add(dependsOn.size() == item.getDependsOn().size() ? item
+                    : new BatchRequestItem(item.getId(), item.getMethod(), item.getUrl(), item.getHeaders(), dependsOn));
+        }
+        return items;
+    }
+
+    /**
+     * An item can only be sent in the same round as the pending items it
+     * depends on, so it is due no earlier than the latest of them.
+     */
+    private static Map<String, Long> effectiveNotBefore(Map<String, BatchRequestItem> pending,
+            Map<String, Long> notBefore) {
+        Map<String, Long> effective = new HashMap<>();
+        for (String id : pending.keySet()) {
+            resolve(id, pending, notBefore, effective, new HashSet<>());
+        }
+        return effective;
+    }
+
+    private static long resolve(String id, Map<String, BatchRequestItem> pending, Map<String, Long> notBefore,
+            Map<String, Long> effective, Set<String> visiting) {
+        Long known = effective.get(id);
+        if (known != null) {
+            return known;
+        }
+        if (!visiting.add(id)) {
+            throw new IllegalArgumentException("Cyclic dependsOn at sub-request " + id);
+        }
+
+        long time = notBefore.getOrDefault(id, 0L);
+        for (String dependency : pending.get(id).getDependsOn()) {
+            if (pending.containsKey(dependency)) {
+                time = Math.max(time, resolve(dependency, pending, notBefore, effective, visiting));
+            }
+        }
+        effective.put(id, time);
+        return time;
+    }
+
+    private static long retryAfterMillis(RateLimitSnapshot rateLimit) {
+        return TimeUnit.SECONDS.toMillis(Math.max(0, rateLimit.getRetryAfterSeconds()));
+    }
+
+    private long backoffMillis(int round) {
+        long cap = Math.min(maxBackoff.toMillis(), baseBackoff.toMillis() << Math.min(round, 20));
+        // full jitter: 여러 스레드가 동시에 재시도하지 않도록 분산
+        return ThreadLocalRandom.current().nextLong(cap / 2, cap + 1);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.spring101.graphapi;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size heap buffers reused for response bodies.
+ *
+ * At most {@code maxPooled} free buffers are kept; buffers released beyond
+ * that, or never released, are left to the garbage collector.
+ */
+public class BufferPool {
+
+    public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+    private final int bufferSize;
+    private final BlockingQueue<ByteBuffer> free;
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+
+    public BufferPool() {
+        this(DEFAULT_BUFFER_SIZE, 512);
+    }
+
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * An empty buffer in write mode.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer != null) {
+            reused.increment();
+            return buffer;
+        }
+        allocated.increment();
+        return ByteBuffer.allocate(bufferSize);
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() == bufferSize) {
+            free.offer(buffer.clear());
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public long getAllocated() {
+        return allocated.sum();
+    }
+
+    public long getReused() {
+        return reused.sum();
+    }
+
+    public int getPooled() {
+        return free.size();
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.spring101.graphapi;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Per-endpoint circuit breaker for Graph calls.
+ *
+ * The last {@code windowSize} outcomes of every endpoint are kept; a 429, a
+ * 5xx or a transport error counts as a failure. Once at least
+ * {@code minimumCalls} of them are in and the failure ratio reaches
+ * {@code failureRatio}, the circuit opens and calls fail fast with
+ * {@link CircuitOpenException} instead of queueing behind the rate limiter.
+ * It stays open for {@code openDuration}, or the longest {@code Retry-After}
+ * seen, whichever is later. After that one probe is let through: success
+ * closes the circuit, failure opens it again.
+ */
+public class CircuitBreaker {
+
+    public static final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final double failureRatio;
+    private final Duration openDuration;
+    private volatile int minimumCalls;
+    private volatile LongSupplier clock = System::currentTimeMillis;
+
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    public CircuitBreaker() {
+        this(20, 0.5, Duration.ofSeconds(30));
+    }
+
+    public CircuitBreaker(int windowSize, double failureRatio, Duration openDuration) {
+        if (windowSize < 1 || failureRatio <= 0 || failureRatio > 1) {
+            throw new IllegalArgumentException("Invalid circuit breaker window " + windowSize + " / ratio " + failureRatio);
+        }
+        this.windowSize = windowSize;
+        this.failureRatio = failureRatio;
+        this.openDuration = openDuration;
+        this.minimumCalls = Math.min(10, windowSize);
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    /**
+     * Outcomes needed before the failure ratio is trusted; default 10.
+     */
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, windowSize));
+    }
+
+    /**
+     * Epoch milliseconds the open duration is measured with; tests replace it.
+     */
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Permission to call {@code endpoint}; every granted call must be followed
+     * by {@link #record(String, GraphApiResponse, Throwable)}, or by
+     * {@link #release(String)} if it was not sent.
+     *
+     * @throws CircuitOpenException while the circuit is open, or while the
+     *                              half-open probe is in flight
+     */
+    public void acquire(String endpoint) {
+        circuit(endpoint).acquire(endpoint);
+    }
+
+    /**
+     * Give back a granted call that was never sent, e.g. because waiting for
+     * the rate limiter failed or was cancelled. It counts as no outcome, but a
+     * half-open probe is freed so the next call can probe.
+     */
+    public void release(String endpoint) {
+        Circuit circuit = circuits.get(endpoint);
+        if (circuit != null) {
+            circuit.release();
+        }
+    }
+
+    /**
+     * @param response the response, {@code null} if the call failed with {@code error}
+     */
+    public void record(String endpoint, GraphApiResponse response, Throwable error) {
+        if (error instanceof CircuitOpenException) {
+            return;
+        }
+        int retryAfter = response == null ? 0 : Math.max(0, response.getRateLimit().getRetryAfterSeconds());
+        record(endpoint, response != null && !isFailure(response.getStatusCode()), retryAfter);
+    }
+
+    /**
+     * Outcome of a call whose status is known, e.g. a streamed {@code $batch} envelope.
+     */
+    public void record(String endpoint, int statusCode, int retryAfterSeconds) {
+        record(endpoint, !isFailure(statusCode), Math.max(0, retryAfterSeconds));
+    }
+
+    public State getState(String endpoint) {
+        Circuit circuit = circuits.get(endpoint);
+        return circuit == null ? State.CLOSED : circuit.state(clock.getAsLong());
+    }
+
+    private void record(String endpoint, boolean success, int retryAfterSeconds) {
+        circuit(endpoint).record(endpoint, success, retryAfterSeconds);
+    }
+
+    static boolean isFailure(int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
+    }
+
+    private Circuit circuit(String endpoint) {
+        return circuits.computeIfAbsent(endpoint, key -> new Circuit(windowSize));
+    }
+
+    /**
+     * State of one endpoint. Calls per endpoint are few compared to the cost
+     * of a round trip, so a monitor is enough.
+     */
+    private final class Circuit {
+        private final boolean[] outcomes; // 최근 결과 링 버퍼, true = 실패
+        private int next;
+        private int recorded;
+        private int failures;
+
+        private State state = State.CLOSED;
+        private long openUntil;
+        private boolean probing;
+
+        Circuit(int windowSize) {
+            this.outcomes = new boolean[windowSize];
+        }
+
+        synchronized State state(long now) {
+            return state == State.OPEN && now >= openUntil ? State.HALF_OPEN : state;
+        }
+
+        synchronized void acquire(String endpoint) {
+            long now = clock.getAsLong();
+            switch (state(now)) {
+                case CLOSED -> {
+                }
+                case OPEN -> throw new CircuitOpenException(endpoint, openUntil - now);
+                case HALF_OPEN -> {
+                    if (probing) {
+                        throw new CircuitOpenException(endpoint, 0);
+                    }
+                    state = State.HALF_OPEN;
+                    probing = true;
+                }
+            }
+        }
+
+        synchronized void release() {
+            probing = false;
+        }
+
+        synchronized void record(String endpoint, boolean success, int retryAfterSeconds) {
+            long now = clock.getAsLong();
+            if (state == State.HALF_OPEN) {
+                probing = false;
+                if (success) {
+                    reset();
+                    logger.info(String.format("Circuit for %s closed", endpoint));
+                } else {
+                    open(endpoint, now, retryAfterSeconds);
+                }
+                return;
+            }
+            if (state == State.OPEN) {
+                // 열리기 전에 보낸 호출의 결과: Retry-After 만 반영
+                openUntil = Math.max(openUntil, now + TimeUnit.SECONDS.toMillis(retryAfterSeconds));
+                return;
+            }
+
+            boolean failure = !success;
+            if (recorded == outcomes.length) {
+                failures -= outcomes[next] ? 1 : 0;
+            } else {
+                recorded++;
+            }
+            outcomes[next] = failure;
+            failures += failure ? 1 : 0;
+            next = (next + 1) % outcomes.length;
+
+            if (recorded >= minimumCalls && failures >= failureRatio * recorded) {
+                open(endpoint, now, retryAfterSeconds);
+            }
+        }
+
+        private void open(String endpoint, long now, int retryAfterSeconds) {
+            long wait = Math.max(openDuration.toMillis(), TimeUnit.SECONDS.toMillis(retryAfterSeconds));
+            state = State.OPEN;
+            openUntil = now + wait;
+            logger.warning(String.format("Circuit for %s opened for %d ms after %d failures in %d calls",
+                    endpoint, wait, failures, recorded));
+        }
+
+        private void reset() {
+            state = State.CLOSED;
+            next = 0;
+            recorded = 0;
+            failures = 0;
+        }
+    }
+}
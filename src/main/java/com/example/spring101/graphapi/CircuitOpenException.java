@@ -0,0 +1,24 @@
+package com.example.spring101.graphapi;
+
+/**
+ * Thrown instead of calling an endpoint whose {@link CircuitBreaker} is open.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    private final String endpoint;
+    private final long retryInMillis;
+
+    public CircuitOpenException(String endpoint, long retryInMillis) {
+        super(String.format("Circuit for %s is open, retry in %d ms", endpoint, retryInMillis));
+        this.endpoint = endpoint;
+        this.retryInMillis = retryInMillis;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long getRetryInMillis() {
+        return retryInMillis;
+    }
+}
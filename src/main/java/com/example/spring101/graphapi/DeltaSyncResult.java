@@ -0,0 +1,39 @@
+package com.example.spring101.graphapi;
+
+/**
+ * Outcome of one {@link DeltaSync#sync} round.
+ */
+public class DeltaSyncResult {
+    private final int changes;
+    private final int pages;
+    private final boolean fullSync;
+
+    public DeltaSyncResult(int changes, int pages, boolean fullSync) {
+        this.changes = changes;
+        this.pages = pages;
+        this.fullSync = fullSync;
+    }
+
+    /**
+     * Items passed to the consumer, removals included.
+     */
+    public int getChanges() {
+        return changes;
+    }
+
+    public int getPages() {
+        return pages;
+    }
+
+    /**
+     * Whether the whole collection was listed because no valid delta link was stored.
+     */
+    public boolean isFullSync() {
+        return fullSync;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("changes=%d, pages=%d, fullSync=%s", changes, pages, fullSync);
+    }
+}
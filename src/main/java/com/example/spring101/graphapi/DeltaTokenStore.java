@@ -0,0 +1,221 @@
+package com.example.spring101.graphapi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Durable map from a delta resource to its last {@code @odata.deltaLink}.
+ *
+ * Updates are appended to a single file as length-prefixed, checksummed
+ * records and forced to disk before {@link #put} returns. On open the file is
+ * replayed and the last record per resource wins; a torn record at the end of
+ * the file (a crash mid-write) is ignored and cut off. When the file holds
+ * more than {@code compactionFactor} times the live data it is rewritten.
+ *
+ * Record layout: {@code int length, int crc32, byte[] payload} where the
+ * payload is {@code short keyLength, key, link} in UTF-8 and an empty link
+ * removes the key.
+ */
+public class DeltaTokenStore implements Closeable {
+
+    public static final Logger logger = Logger.getLogger(DeltaTokenStore.class.getName());
+
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private final Path file;
+    private final Map<String, String> links = new ConcurrentHashMap<>();
+    private final Map<String, Integer> recordBytes = new HashMap<>(); // 키별 최신 레코드 크기
+    private final int compactionFactor;
+    private FileChannel channel;
+    private long liveBytes;
+
+    public DeltaTokenStore(Path file) throws IOException {
+        this(file, 4);
+    }
+
+    public DeltaTokenStore(Path file, int compactionFactor) throws IOException {
+        this.file = file;
+        this.compactionFactor = compactionFactor;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        replay();
+    }
+
+    public Optional<String> get(String resource) {
+        return Optional.ofNullable(links.get(resource));
+    }
+
+    /**
+     * Remember {@code deltaLink} for {@code resource}; durable once this returns.
+     */
+    public synchronized void put(String resource, String deltaLink) throws IOException {
+        if (deltaLink.isEmpty()) {
+            throw new IllegalArgumentException("deltaLink must not be empty");
+        }
+        append(resource, deltaLink);
+        links.put(resource, deltaLink);
+        maybeCompact();
+    }
+
+    /**
+     * Forget the link, e.g. when Graph reports that it expired.
+     */
+    public synchronized void remove(String resource) throws IOException {
+        if (links.remove(resource) != null) {
+            append(resource, "");
+            maybeCompact();
+        }
+    }
+
+    public int size() {
+        return links.size();
+    }
+
+    public synchronized long getFileSize() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Rewrite the file with only the current link per resource.
+     */
+    public synchronized void compact() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".compact");
+        long written = 0;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Map.Entry<String, String> entry : links.entrySet()) {
+                ByteBuffer record = encode(entry.getKey(), entry.getValue());
+                written += record.remaining();
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        liveBytes = written;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void append(String resource, String deltaLink) throws IOException {
+        ByteBuffer record = encode(resource, deltaLink);
+        int length = record.remaining();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        channel.force(false);
+        track(resource, deltaLink.isEmpty() ? 0 : length);
+    }
+
+    private void track(String resource, int bytes) {
+        Integer previous = bytes == 0 ? recordBytes.remove(resource) : recordBytes.put(resource, bytes);
+        liveBytes += bytes - (previous != null ? previous : 0);
+    }
+
+    private void maybeCompact() throws IOException {
+        if (channel.size() > 4096 && channel.size() > liveBytes * compactionFactor) {
+            compact();
+        }
+    }
+
+    private void replay() throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        long position = 0;
+
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            int crc = header.getInt();
+            if (length < 2 || length > MAX_RECORD_BYTES || position + HEADER_BYTES + length > size) {
+                break;
+            }
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + HEADER_BYTES);
+            if (crc != checksum(payload.array(), length)) {
+                break;
+            }
+
+            payload.flip();
+            int keyLength = payload.getShort() & 0xFFFF;
+            if (keyLength > payload.remaining()) {
+                break;
+            }
+            String key = new String(payload.array(), 2, keyLength, StandardCharsets.UTF_8);
+            String link = new String(payload.array(), 2 + keyLength, length - 2 - keyLength, StandardCharsets.UTF_8);
+            if (link.isEmpty()) {
+                links.remove(key);
+            } else {
+                links.put(key, link);
+            }
+            track(key, link.isEmpty() ? 0 : HEADER_BYTES + length);
+            position += HEADER_BYTES + length;
+        }
+
+        if (position < size) {
+            // 마지막 레코드가 쓰다 만 상태: 잘라내고 이어서 기록
+            logger.warning(String.format("Truncating %d bytes of incomplete records in %s", size - position, file));
+            channel.truncate(position);
+        }
+        channel.position(position);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of " + file);
+            }
+        }
+    }
+
+    private static ByteBuffer encode(String resource, String deltaLink) {
+        byte[] key = resource.getBytes(StandardCharsets.UTF_8);
+        byte[] link = deltaLink.getBytes(StandardCharsets.UTF_8);
+        if (key.length > 0xFFFF || HEADER_BYTES + 2 + key.length + link.length > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("Delta record too large for " + resource);
+        }
+        int length = 2 + key.length + link.length;
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        payload.putShort((short) key.length).put(key).put(link);
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + length);
+        record.putInt(length).putInt(checksum(payload.array(), length)).put(payload.array());
+        record.flip();
+        return record;
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.spring101.graphapi;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for one Graph workload (see {@link GraphClientFactory#apiType}).
+ */
+public class EndpointTelemetry {
+
+    private final String endpoint;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final QuotaTimeSeries quota;
+
+    EndpointTelemetry(String endpoint, int quotaSamples) {
+        this.endpoint = endpoint;
+        this.quota = new QuotaTimeSeries(quotaSamples);
+    }
+
+    void recordRequest(long latencyNanos, int statusCode) {
+        requests.increment();
+        latency.record(latencyNanos);
+        recordStatus(statusCode);
+    }
+
+    void recordStatus(int statusCode) {
+        if (statusCode == 429) {
+            throttled.increment();
+        } else if (statusCode >= 500 || statusCode < 0) {
+            failures.increment();
+        }
+    }
+
+    void recordWait(long nanos) {
+        if (nanos > 0) {
+            waits.increment();
+            waitNanos.add(nanos);
+        }
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getWaits() {
+        return waits.sum();
+    }
+
+    public double getWaitSeconds() {
+        return waitNanos.sum() / 1_000_000_000.0;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public QuotaTimeSeries getQuota() {
+        return quota;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.spring101.graphapi;
+
+import java.util.Locale;
+
+/**
+ * Which kind of thread {@link GraphWorkloadRunner} runs each Graph call on.
+ */
+public enum ExecutionMode {
+    /** Fixed pool of platform threads, one per concurrency slot. */
+    PLATFORM,
+    /** A new virtual thread per call. */
+    VIRTUAL;
+
+    public static ExecutionMode from(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -1,25 +1,156 @@
 package com.example.spring101.graphapi;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * A simple class to hold the response headers and body.
+ * A simple class to hold the response status, headers and body.
+ *
+ * Responses read by {@link HttpClientTransport} keep their body in pooled
+ * buffers ({@link ResponseBody}); {@link #getBody()} decodes it on first use.
+ * Callers that parse the body should prefer {@link #openBody()} and call
+ * {@link #release()} once done so the buffers can be reused. A response handed
+ * to several callers is given to each as its own {@link #retain() reference};
+ * the buffers are reused once every caller has released its own.
  */
 public class GraphApiResponse {
+    private final int statusCode;
     private final Map<String, List<String>> headers;
     private final String body;
+    private final ResponseBody content;
+    private final List<BatchResponseItem> batchResponses;
+    private final RateLimitSnapshot rateLimit;
+    private final AtomicBoolean released = new AtomicBoolean();
 
-    public GraphApiResponse(Map<String, List<String>> headers, String body) {
+    public GraphApiResponse(int statusCode, Map<String, List<String>> headers, String body) {
+        this(statusCode, headers, body, List.of());
+    }
+
+    /**
+     * Response of a {@code $batch} call whose body was consumed by
+     * {@link BatchResponseParser}; {@link #getBody()} is {@code null} then.
+     */
+    public GraphApiResponse(int statusCode, Map<String, List<String>> headers, String body,
+            List<BatchResponseItem> batchResponses) {
+        this(statusCode, headers, body, null, batchResponses);
+    }
+
+    private GraphApiResponse(int statusCode, Map<String, List<String>> headers, String body, ResponseBody content,
+            List<BatchResponseItem> batchResponses) {
+        this.statusCode = statusCode;
         this.headers = headers;
         this.body = body;
+        this.content = content;
+        this.batchResponses = batchResponses;
+        this.rateLimit = RateLimitSnapshot.of(statusCode, headers);
+    }
+
+    private GraphApiResponse(GraphApiResponse other) {
+        this.statusCode = other.statusCode;
+        this.headers = other.headers;
+        this.body = other.body;
+        this.content = other.content;
+        this.batchResponses = other.batchResponses;
+        this.rateLimit = other.rateLimit;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
     }
 
     public Map<String, List<String>> getHeaders() {
         return headers;
     }
 
+    /**
+     * Response whose body stays in {@code content} until it is asked for.
+     */
+    public static GraphApiResponse withBody(int statusCode, Map<String, List<String>> headers, ResponseBody content) {
+        return new GraphApiResponse(statusCode, headers, null, content, List.of());
+    }
+
     public String getBody() {
-        return body;
+        return content != null ? content.asString() : body;
+    }
+
+    /**
+     * The body as bytes, without decoding it to a String first.
+     */
+    public InputStream openBody() {
+        if (content != null) {
+            return content.newInputStream();
+        }
+        return body != null ? new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)) : InputStream.nullInputStream();
+    }
+
+    public void writeBodyTo(WritableByteChannel channel) throws IOException {
+        if (content != null) {
+            content.writeTo(channel);
+        } else if (body != null) {
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(body);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Hand pooled body buffers back. The body must not be read afterwards,
+     * unless {@link #getBody()} was already called. Safe to call more than once;
+     * only the first call drops this reference.
+     */
+    public void release() {
+        if (content != null && released.compareAndSet(false, true)) {
+            content.release();
+        }
+    }
+
+    /**
+     * Another reference to the same response for one more caller, released on
+     * its own.
+     */
+    GraphApiResponse retain() {
+        if (content == null) {
+            return this;
+        }
+        content.retain();
+        return new GraphApiResponse(this);
+    }
+
+    /**
+     * Throttling headers of this response, parsed once when it was created.
+     */
+    public RateLimitSnapshot getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * Sub-responses in the order they were received; empty for non-batch calls.
+     */
+    public List<BatchResponseItem> getBatchResponses() {
+        return batchResponses;
+    }
+
+    /**
+     * A 2xx whose {@code $batch} sub-responses, if any, are all 2xx as well;
+     * Graph answers a batch with 200 even when some sub-requests failed.
+     */
+    public boolean isSuccess() {
+        if (statusCode < 200 || statusCode >= 300) {
+            return false;
+        }
+        for (BatchResponseItem item : batchResponses) {
+            if (item.getStatus() < 200 || item.getStatus() >= 300) {
+                return false;
+            }
+        }
+        return true;
     }
-}
\ No newline at end of file
+}
@@ -1,351 +1,833 @@
 package com.example.spring101.graphapi;
 
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
-
-import com.google.gson.Gson;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.gson.GsonBuilder;
 
-public class GraphClientFactory {
+public class GraphClientFactory implements AutoCloseable {
+
+    public static final Logger logger = Logger.getLogger(GraphClientFactory.class.getName());
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Executor BODY_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    public static final String DEFAULT_GRAPH_BASE_URL = "https://graph.microsoft.com/v1.0/";
+    public static final String BATCH_API_TYPE = "batch";
 
     private final String tenantId;
     private final String clientId;
     private final String clientSecret;
     private final String authority;
 
-    private final AtomicInteger throttleLimit = new AtomicInteger(0);
-    private int reqCount = 0;
+    private final AccessTokenCache tokenCache;
+    private final GraphTransport transport;
+    private volatile BatchCoalescer coalescer;
+    private volatile RateLimiter rateLimiter = new RateLimiter();
+    private volatile PriorityScheduler scheduler = new PriorityScheduler(rateLimiter);
+    private final BatchRetryExecutor batchRetry = new BatchRetryExecutor(new RetryBudget(0.2, 50, 200));
+
+    private volatile GraphTelemetry telemetry = new GraphTelemetry();
+
+    private volatile String graphBaseUrl = DEFAULT_GRAPH_BASE_URL;
+
+    private volatile GraphResponseCache responseCache;
+
+    private volatile RequestHedger hedger;
+    private volatile CircuitBreaker circuitBreaker;
 
-    private Map<Integer, Map<String, Integer>> rateLimitInfos = new HashMap<>();
+    private final SingleFlight<String, GraphApiResponse> inFlight = new SingleFlight<>();
+
+    private final LogSampler responseLog = new LogSampler(logger, Duration.ofSeconds(1));
+    private final LogSampler throttleLog = new LogSampler(logger, Duration.ofSeconds(1));
+    private final LogSampler failureLog = new LogSampler(logger, Duration.ofSeconds(1));
+    private final LogSampler telemetryLog = new LogSampler(logger, Duration.ofSeconds(10));
+    private volatile boolean requestCollapsing = true;
 
     public GraphClientFactory(String tenantId, String clientId, String clientSecret, String authority) {
+        this(tenantId, clientId, clientSecret, authority, new HttpClientTransport(new TransportOptions()));
+    }
+
+    public GraphClientFactory(String tenantId, String clientId, String clientSecret, String authority,
+            GraphTransport transport) {
         this.tenantId = tenantId;
         this.clientId = clientId;
         this.clientSecret = clientSecret;
         this.authority = authority;
+        this.transport = transport;
+        this.tokenCache = new AccessTokenCache(this::fetchAccessToken);
     }
 
     /**
-     * Get an access token from Azure AD.
+     * Get an access token from Azure AD, served from the cache while it is valid.
      */
     public String getAccessToken() throws Exception {
-        String tokenEndpoint = String.format("%s/%s/oauth2/v2.0/token", authority, tenantId);
+        return tokenCache.getToken();
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public AccessTokenCache getTokenCache() {
+        return tokenCache;
+    }
+
+    public GraphTransport getTransport() {
+        return transport;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        this.scheduler = new PriorityScheduler(rateLimiter);
+    }
+
+    public PriorityScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public GraphTelemetry getTelemetry() {
+        return telemetry;
+    }
+
+    public void setTelemetry(GraphTelemetry telemetry) {
+        this.telemetry = telemetry;
+    }
+
+    public String getGraphBaseUrl() {
+        return graphBaseUrl;
+    }
+
+    /**
+     * Point the client at another Graph root, e.g. a local simulator.
+     */
+    public void setGraphBaseUrl(String graphBaseUrl) {
+        this.graphBaseUrl = graphBaseUrl.endsWith("/") ? graphBaseUrl : graphBaseUrl + "/";
+    }
+
+    public GraphResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Serve {@link #callGraphApi(String)} reads from {@code responseCache}, or
+     * always go to Graph when {@code null} (the default).
+     */
+    public void setResponseCache(GraphResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    public RequestHedger getHedger() {
+        return hedger;
+    }
+
+    /**
+     * Hedge single GETs with {@code hedger}, or send one attempt when
+     * {@code null} (the default). Reads coalesced into {@code $batch} are not
+     * hedged.
+     */
+    public void setHedger(RequestHedger hedger) {
+        this.hedger = hedger;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Fail fast with {@link CircuitOpenException} while an endpoint keeps
+     * answering 429/5xx, or never when {@code null} (the default). Endpoints
+     * are keyed like the rate limiter's, with {@code $batch} as "batch".
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public boolean isRequestCollapsing() {
+        return requestCollapsing;
+    }
+
+    /**
+     * When enabled (the default), concurrent identical reads share one
+     * in-flight call instead of each spending quota on it.
+     */
+    public void setRequestCollapsing(boolean requestCollapsing) {
+        this.requestCollapsing = requestCollapsing;
+    }
+
+    public SingleFlight<String, GraphApiResponse> getRequestCollapser() {
+        return inFlight;
+    }
 
-        URL url = new URL(tokenEndpoint);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("POST");
-        connection.setDoOutput(true);
-        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+    public BatchRetryExecutor getBatchRetry() {
+        return batchRetry;
+    }
+
+    /**
+     * Route {@link #callGraphApi(String)} through a {@link BatchCoalescer} so that
+     * concurrent callers share {@code $batch} round trips.
+     *
+     * @param maxBatchSize requests per batch, at most 20
+     * @param maxLinger    how long the first request of a batch waits for others
+     */
+    public void enableBatching(int maxBatchSize, Duration maxLinger) {
+        BatchCoalescer previous = coalescer;
+        coalescer = new BatchCoalescer(this::executeBatchAsync, maxBatchSize, maxLinger);
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    public void disableBatching() {
+        BatchCoalescer previous = coalescer;
+        coalescer = null;
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * Stop the background token refresh and batching and close the transport.
+     * Safe to call more than once.
+     */
+    @Override
+    public void close() {
+        disableBatching();
+        tokenCache.shutdown();
+        transport.close();
+    }
+
+    /**
+     * Request a new access token from Azure AD.
+     */
+    private AccessToken fetchAccessToken() throws Exception {
+        String tokenEndpoint = String.format("%s/%s/oauth2/v2.0/token", authority, tenantId);
 
         String body = String.format(
                 "client_id=%s&scope=https://graph.microsoft.com/.default&client_secret=%s&grant_type=client_credentials",
-                clientId, clientSecret);
+                URLEncoder.encode(clientId, StandardCharsets.UTF_8),
+                URLEncoder.encode(clientSecret, StandardCharsets.UTF_8));
 
-        try (OutputStream os = connection.getOutputStream()) {
-            os.write(body.getBytes(StandardCharsets.UTF_8));
-        }
+        GraphApiResponse response = transport.send(
+                GraphRequest.post(tokenEndpoint, "application/x-www-form-urlencoded", body));
 
-        if (connection.getResponseCode() == 200) {
-            // Parse the response to extract the access token
-            String response = new String(connection.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-            return parseAccessToken(response);
-        } else {
-            throw new RuntimeException("Failed to get access token: " + connection.getResponseCode());
+        try {
+            if (response.getStatusCode() == 200) {
+                // Parse the response to extract the access token
+                return parseAccessToken(response.getBody());
+            } else {
+                throw new RuntimeException("Failed to get access token: " + response.getStatusCode());
+            }
+        } finally {
+            response.release();
         }
     }
 
     /**
      * Call Microsoft Graph API with the access token and return both headers and
      * body.
+     *
+     * Sends a $batch of ten reads of {@code endpoint}. Throttled sub-requests are
+     * retried on their own by {@link BatchRetryExecutor}; the result holds one
+     * sub-response per request id.
      */
     public GraphApiResponse callGraphApiWithHeaders(String endpoint, Optional<Integer> threadId) throws Exception {
+        return callGraphApiWithHeaders(endpoint, threadId, RequestPriority.NORMAL);
+    }
 
-        String accessToken = getAccessToken();
+    /**
+     * @param priority how {@link PriorityScheduler} ranks the $batch against other calls
+     */
+    public GraphApiResponse callGraphApiWithHeaders(String endpoint, Optional<Integer> threadId,
+            RequestPriority priority) throws Exception {
 
         // GET
-        // URL url = new URL("https://graph.microsoft.com/v1.0/" + endpoint);
-        // HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        // connection.setRequestMethod("GET");
-        // connection.setRequestProperty("Authorization", "Bearer " + accessToken);
-
-        // POST
-        URL url = new URL("https://graph.microsoft.com/v1.0/$batch");
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Authorization", "Bearer " + accessToken);
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setDoOutput(true);
-
-        String jsonBody = """
-                {
-                  "requests": [
-                      {
-                          "id": "1",
-                          "method": "GET",
-                          "url": "/sites/root"
-                      },
-                      {
-                          "id": "2",
-                          "dependsOn": [ "1" ],
-                          "method": "GET",
-                          "url": "/sites/root"
-                      },
-                      {
-                          "id": "3",
-                          "dependsOn": [ "2" ],
-                          "method": "GET",
-                          "url": "/sites/root"
-                      },
-                      {
-                          "id": "4",
-                          "dependsOn": [ "3" ],
-                          "method": "GET",
-                          "url": "/sites/root"
-                      },
-                      {
-                          "id": "5",
-                          "dependsOn": [ "4" ],
-                          "method": "GET",
-                          "url": "/sites/root"
-                      },
-                      {
-                          "id": "6",
-                          "dependsOn": [ "5" ],
-                          "method": "GET",
-                          "url": "/sites/root"
-                      },
-                      {
-                          "id": "7",
-                          "dependsOn": [ "6" ],
-                          "method": "GET",
-                          "url": "/sites/root"
-                      },
-                      {
-                          "id": "8",
-                          "dependsOn": [ "7" ],
-                          "method": "GET",
-                          "url": "/sites/root"
-                      },
-                      {
-                          "id": "9",
-                          "dependsOn": [ "8" ],
-                          "method": "GET",
-                          "url": "/sites/root"
-                      },
-                      {
-                          "id": "10",
-                          "dependsOn": [ "9" ],
-                          "method": "GET",
-                          "url": "/sites/root"
-                      }
-                  ]
-                }""";
-        try (OutputStream os = connection.getOutputStream()) {
-            os.write(jsonBody.getBytes(StandardCharsets.UTF_8));
-        }
-        // connection.setRequestProperty("Content-Type", "application/json");
-
-        reqCount++;
-
-        int retries = 0;
-        int backoffTime = 1; // 초기 대기 시간 (1초)
-        int maxBackoffTime = 60; // 최대 대기 시간 (60초)
-
-        while (retries < 5) { // 최대 재시도 횟수 (5번)
-
-            // 헤더에서 RateLimit 관련 값 추출
-            int retryAfter = getRetryAfter(connection);
-            int rateLimitLimit = getRateLimitLimit(connection);
-            int rateLimitReset = getRateLimitReset(connection);
-            int rateLimitRemaining = getRateLimitRemaining(connection);
-
-            if (retryAfter > 0) {
-                System.out.println("==============================================");
-                System.out.println("Thread ID: " + threadId.orElse(-1));
-                System.out.println(url.toString());
-                System.out.println("Retry-After: " + retryAfter);
-            }
+        // GraphRequest request = GraphRequest.get(graphBaseUrl + endpoint)
+        //         .withHeader("Authorization", "Bearer " + getAccessToken());
 
-            if (rateLimitLimit > 1) {
-                System.out.println("==============================================");
-                System.out.println("Thread ID: " + threadId.orElse(-1));
-                System.out.println(url.toString());
-                // System.out.println("Retry-After: " + retryAfter);
-                System.out.println("RateLimit-Limit: " + rateLimitLimit);
-                System.out.println("RateLimit-Remaining: " + rateLimitRemaining);
-                System.out.println("RateLimit-Reset: " + rateLimitReset);
+        // POST: 서로의 결과가 필요 없는 10개 읽기이므로 dependsOn 없이 서버에서 병렬 실행
+        List<BatchRequestItem> items = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            items.add(BatchRequestItem.get(String.valueOf(i), endpoint));
+        }
 
-                double rateLimitPercentage = 100 - ((double) rateLimitRemaining / rateLimitLimit) * 100;
-                System.out.println("RateLimit-Percentage: " + rateLimitPercentage + "%");
+        // 같은 엔드포인트를 동시에 읽는 스레드들은 하나의 $batch 결과를 함께 사용
+        GraphApiResponse response = requestCollapsing
+                ? inFlight.call("batch|" + requestKey(endpoint),
+                        () -> batchRetry.execute(items, round -> sendBatchRound(round, priority)))
+                : batchRetry.execute(items, round -> sendBatchRound(round, priority));
+
+        // RateLimit 관련 값은 응답 생성 시 한 번만 파싱된 값을 사용
+        RateLimitSnapshot rateLimit = response.getRateLimit();
+        int thread = threadId.orElse(-1);
+
+        // 호출마다 stdout 에 쓰지 않고 초당 한 번만, 켜져 있을 때만 문자열을 만든다
+        // 개별 응답은 GraphEvents (JFR) 로 확인
+        if (rateLimit.getRetryAfterSeconds() > 0) {
+            throttleLog.log(Level.WARNING, () -> String.format("Thread %d: %s Retry-After: %d",
+                    thread, endpoint, rateLimit.getRetryAfterSeconds()));
+        }
 
-                // 기존에 있던 데이터 가져오기 (없으면 새로 만들기)
-                Map<String, Integer> rateLimitInfo = rateLimitInfos.getOrDefault(threadId, new HashMap<>());
+        if (response.getStatusCode() == 200) {
+            if (rateLimit.getLimit() > 1) {
+                // 남은 quota 추이는 GraphTelemetry 가 엔드포인트별로 기록한다
+                responseLog.log(Level.INFO, () -> String.format(
+                        "Thread %d: %s RateLimit-Limit: %d, RateLimit-Remaining: %d, RateLimit-Reset: %d (%.1f%% used), total responses: %d",
+                        thread, endpoint, rateLimit.getLimit(), rateLimit.getRemaining(), rateLimit.getResetSeconds(),
+                        100 - ((double) rateLimit.getRemaining() / rateLimit.getLimit()) * 100,
+                        telemetry.getTotalRequests()));
+            }
 
-                // 데이터 설정 또는 업데이트
-                rateLimitInfo.put("timestamp", (int) Instant.now().getEpochSecond());
-                rateLimitInfo.put("rateLimitLimit", rateLimitLimit);
-                rateLimitInfo.put("rateLimitReset", rateLimitReset);
-                rateLimitInfo.put("rateLimitRemaining", rateLimitRemaining);
-                rateLimitInfo.put("reqCount", reqCount);
+            // Post 일때는 항상 200 으로 옴: 스로틀링 여부는 하위 응답의 status 로 판단
+            long throttled = response.getBatchResponses().stream().filter(item -> item.getStatus() == 429).count();
+            if (throttled > 0) {
+                throttleLog.log(Level.WARNING, () -> "Sub-requests still throttled after retries: " + throttled);
+                logTelemetry();
+            }
+            return response;
+        } else {
+            failureLog.log(Level.SEVERE, () -> String.format("Thread %d: failed to call Graph API: %d, headers: %s",
+                    thread, response.getStatusCode(),
+                    new GsonBuilder().setPrettyPrinting().create().toJson(response.getHeaders())));
 
-                // 업데이트된 맵을 다시 저장
-                rateLimitInfos.put(threadId.orElse(-1), rateLimitInfo);
+            logTelemetry();
 
-                return null;
+            return response;
+        }
+    }
 
-                // throttleLimit.set((int) rateLimitPercentage);
+    /**
+     * Send any number of sub-requests, planned by {@link BatchPlanner} into the
+     * fewest {@code $batch} rounds. {@code dependsOn} may point at any other
+     * request; a request whose dependency from an earlier round failed is not
+     * sent and comes back as 424.
+     *
+     * @return one sub-response per request, in the order given
+     */
+    public List<BatchResponseItem> executePlanned(List<BatchRequestItem> items, RequestPriority priority)
+            throws Exception {
+        // 계획된 항목에는 같은 라운드의 의존만 남으므로 원래 선언으로 판단
+        Map<String, List<String>> declared = new HashMap<>();
+        items.forEach(item -> declared.put(item.getId(), item.getDependsOn()));
+
+        Map<String, BatchResponseItem> results = new HashMap<>();
+        for (List<BatchRequestItem> round : BatchPlanner.plan(items, BatchCoalescer.MAX_BATCH_SIZE)) {
+            List<BatchRequestItem> send = new ArrayList<>(round.size());
+            for (BatchRequestItem item : round) {
+                // 라운드는 위상 순서이므로 이 라운드에서 건너뛴 의존도 이미 결과에 있다
+                boolean dependencyFailed = declared.get(item.getId()).stream()
+                        .map(results::get)
+                        .anyMatch(result -> result != null && (result.getStatus() < 200 || result.getStatus() >= 400));
+                if (dependencyFailed) {
+                    results.put(item.getId(), new BatchResponseItem(item.getId(), 424, Map.of(), null));
+                } else {
+                    send.add(item);
+                }
             }
+            if (!send.isEmpty()) {
+                batchRetry.execute(send, batch -> sendBatchRound(batch, priority))
+                        .getBatchResponses().forEach(response -> results.put(response.getId(), response));
+            }
+        }
+        return items.stream().map(item -> results.get(item.getId())).toList();
+    }
 
-            // RateLimit-Remaining이 20(프로세스 수)이면 대기 후 재시도
-            if (rateLimitRemaining > 0 && rateLimitRemaining <= 20) {
-                System.out.println("Rate limit exceeded. Waiting for " + rateLimitReset + " seconds...");
-                waitForRateLimitReset(rateLimitReset); // 지정된 시간 동안 대기
+    /**
+     * One round of {@link #callGraphApiWithHeaders}: a throttled envelope is
+     * returned as is so the retry engine can wait and resend.
+     */
+    private GraphApiResponse sendBatchRound(List<BatchRequestItem> items, RequestPriority priority) throws Exception {
+        List<BatchResponseItem> results = new ArrayList<>();
+        GraphApiResponse envelope = executeBatch(items, results::add, priority);
 
-                // 재시도
-                connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setRequestProperty("Authorization", "Bearer " + accessToken);
-                reqCount++;
+        int status = envelope.getStatusCode();
+        if (status != 200 && status != 429 && status != 503 && status != 504) {
+            throw new RuntimeException("Failed to call Graph batch API: " + status);
+        }
+        return new GraphApiResponse(status, envelope.getHeaders(), null, results);
+    }
 
-                retries++;
-                backoffTime = Math.min(backoffTime * 2, maxBackoffTime); // 지수적으로 증가 (최대값 60초)
-            } else {
-                break; // Rate limit 초과가 아니면 루프 종료
+    private void logTelemetry() {
+        telemetryLog.log(Level.INFO, () -> {
+            StringBuilder summary = new StringBuilder();
+            for (EndpointTelemetry stats : telemetry.getEndpoints()) {
+                summary.append(String.format("%s: requests=%d, throttled=%d, remaining=%d/%d, burn=%.2f/s%n",
+                        stats.getEndpoint(), stats.getRequests(), stats.getThrottled(),
+                        stats.getQuota().getLatestRemaining(), stats.getQuota().getLimit(),
+                        stats.getQuota().getBurnRatePerSecond()));
+            }
+            return summary.append(String.format("collapsed requests: %d of %d",
+                    inFlight.getCollapsed(), inFlight.getCollapsed() + inFlight.getExecuted())).toString();
+        });
+    }
+
+    public Optional<String> callGraphApi(String endpoint) throws Exception {
+        GraphApiResponse response = await(callGraphApiAsync(endpoint));
+        try {
+            if (response.getStatusCode() == 200) {
+                return Optional.of(response.getBody());
             }
+            failureLog.log(Level.SEVERE, () -> "Failed to call Graph API: " + response.getStatusCode());
+            return Optional.empty();
+        } finally {
+            // 오류 응답의 본문도 풀 버퍼에 있으므로 돌려준다
+            response.release();
         }
+    }
+
+    /**
+     * Asynchronous variant of {@link #callGraphApi(String)}. The returned future
+     * completes with the raw response, whatever its status code.
+     */
+    public CompletableFuture<GraphApiResponse> callGraphApiAsync(String endpoint) {
+        return callGraphApiAsync(endpoint, RequestPriority.NORMAL);
+    }
 
-        if (retries == 5) {
-            System.err.println("Exceeded maximum retries for waiting on rate limit reset.");
-            return null;
+    /**
+     * @param priority how {@link PriorityScheduler} ranks the GET against other
+     *                 calls; a collapsed read is sent with the priority of the
+     *                 caller that started it
+     */
+    public CompletableFuture<GraphApiResponse> callGraphApiAsync(String endpoint, RequestPriority priority) {
+        GraphResponseCache cache = responseCache;
+        if (cache == null) {
+            return collapseGet(endpoint, null, priority);
         }
+        return cache.fetch(requestKey(endpoint), etag -> collapseGet(endpoint, etag, priority));
+    }
 
-        if (connection.getResponseCode() == 200) {
-            System.out.println("Response 200 Total: " + reqCount);
-            String responseBody = new String(connection.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    private CompletableFuture<GraphApiResponse> collapseGet(String endpoint, String etag, RequestPriority priority) {
+        if (!requestCollapsing) {
+            return sendGet(endpoint, etag, priority);
+        }
+        // If-None-Match 가 다르면 다른 요청이다
+        // 호출자마다 본문 참조를 하나씩 받고, 마지막 release 에서 버퍼가 풀로 돌아간다
+        return inFlight.execute(requestKey(endpoint) + "|" + etag, () -> sendGet(endpoint, etag, priority),
+                GraphApiResponse::retain, GraphApiResponse::release);
+    }
 
-            // Post 일때는 항상 200 으로 옴
-            if (responseBody.contains(":429")) {
-                System.out.println("Response Body: " + responseBody);
-                printRateLimit(rateLimitInfos);
-                return null;
+    /**
+     * @param etag sent as {@code If-None-Match} unless {@code null}
+     */
+    private CompletableFuture<GraphApiResponse> sendGet(String endpoint, String etag, RequestPriority priority) {
+        BatchCoalescer batching = coalescer;
+        if (batching != null) {
+            Map<String, String> headers = etag == null ? Map.of() : Map.of("If-None-Match", etag);
+            return batching.submit("GET", endpoint, headers).thenApply(BatchResponseItem::toResponse);
+        }
+
+        GraphRequest request;
+        try {
+            request = graphGet(endpoint);
+            if (etag != null) {
+                request = request.withHeader("If-None-Match", etag);
             }
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return sendRead(request, apiType(endpoint), priority);
+    }
 
-            Map<String, List<String>> responseHeaders = connection.getHeaderFields();
-            return new GraphApiResponse(responseHeaders, responseBody);
-        } else {
-            System.err.println("Failed to call Graph API: " + connection.getResponseCode());
-            Map<String, List<String>> responseHeaders = connection.getHeaderFields();
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            System.out.println("Thread ID: " + threadId.orElse(-1));
-            System.err.println("Response Headers: " + gson.toJson(responseHeaders));
+    /**
+     * Items of the collection at {@code endpoint}, following {@code @odata.nextLink}
+     * lazily with two pages buffered ahead. Close the stream when stopping early.
+     */
+    public Stream<JsonNode> streamCollection(String endpoint) {
+        GraphPageIterator pages = iterateCollection(endpoint, 2);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(pages::close);
+    }
 
-            printRateLimit(rateLimitInfos);
+    /**
+     * @param maxBufferedPages pages read ahead of the caller at most
+     */
+    public GraphPageIterator iterateCollection(String endpoint, int maxBufferedPages) {
+        return new GraphPageIterator(this, graphBaseUrl + endpoint, maxBufferedPages);
+    }
 
-            return null;
+    /**
+     * Blocking variant of {@link #callGraphUrlAsync(String)} that waits out
+     * 429/503 responses, up to five attempts.
+     */
+    GraphApiResponse callGraphUrl(String url) throws Exception {
+        GraphApiResponse response = null;
+        for (int attempt = 1; attempt <= 5; attempt++) {
+            response = await(callGraphUrlAsync(url));
+            int status = response.getStatusCode();
+            if (status != 429 && status != 503) {
+                return response;
+            }
+            if (attempt == 5) {
+                break;
+            }
+            response.release();
+            int retryAfter = Math.max(1, response.getRateLimit().getRetryAfterSeconds());
+            logger.warning(String.format("Page request throttled (%d), retrying in %d seconds", status, retryAfter));
+            TimeUnit.SECONDS.sleep(retryAfter);
         }
+        return response;
+    }
+
+    /**
+     * GET an absolute URL handed out by Graph, such as {@code @odata.nextLink}
+     * or {@code @odata.deltaLink}. Not cached or collapsed.
+     */
+    public CompletableFuture<GraphApiResponse> callGraphUrlAsync(String url) {
+        String base = graphBaseUrl;
+        GraphRequest request;
+        try {
+            // 토큰이 다른 호스트로 새지 않도록 Graph 루트 아래의 URL 만 허용
+            if (!url.startsWith(base)) {
+                throw new IllegalArgumentException("URL is outside of " + base + ": " + url);
+            }
+            request = GraphRequest.get(url).withHeader("Authorization", "Bearer " + getAccessToken());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return sendRead(request, apiType(url.substring(base.length())), RequestPriority.NORMAL);
+    }
+
+    /**
+     * Identity of a read: cached and collapsed responses are only shared
+     * between callers of the same app and tenant.
+     */
+    private String requestKey(String endpoint) {
+        return tenantId + "|" + clientId + "|" + graphBaseUrl + endpoint;
     }
 
-    private void printRateLimit(Map<Integer, Map<String, Integer>> rateLimitInfos) {
-        System.out.println("//////////////////////////////////////////////////////");
-        rateLimitInfos.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach((entry) -> {
-            int id = entry.getKey();
-            System.out.println("{");
-            System.out.println("  \"threadId\": " + id + ",");
-            System.out.println("  \"rateLimitInfo\": {");
+    /**
+     * Send the given sub-requests as a single {@code $batch} call.
+     */
+    public CompletableFuture<List<BatchResponseItem>> executeBatchAsync(List<BatchRequestItem> items) {
+        return executeBatchAsync(items, RequestPriority.NORMAL);
+    }
 
-            Map<String, Integer> rateLimitInfo = entry.getValue();
-            rateLimitInfo.forEach((key, value) -> {
-                System.out.printf("    \"%s\": %d,%n", key, value);
+    public CompletableFuture<List<BatchResponseItem>> executeBatchAsync(List<BatchRequestItem> items,
+            RequestPriority priority) {
+        GraphRequest request;
+        try {
+            request = GraphRequest.post(graphBaseUrl + "$batch", "application/json", toBatchJson(items))
+                    .withHeader("Authorization", "Bearer " + getAccessToken());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CircuitBreaker breaker = circuitBreaker;
+        if (breaker != null) {
+            try {
+                breaker.acquire(BATCH_API_TYPE);
+            } catch (CircuitOpenException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        // 응답 본문 파싱은 블로킹 I/O 이므로 HttpClient 스레드가 아닌 가상 스레드에서 수행
+        long queued = System.nanoTime();
+        CompletableFuture<Void> admitted = scheduler.acquireAsync(BATCH_API_TYPE, priority);
+        if (breaker != null) {
+            // 보내지도 못한 호출은 결과 없이 반납해야 half-open 시험 호출이 풀린다
+            admitted.whenComplete((v, error) -> {
+                if (error != null) {
+                    breaker.release(BATCH_API_TYPE);
+                }
             });
-            System.out.println("  }");
-            System.out.println("}");
+        }
+        return admitted.thenCompose(v -> {
+            long start = System.nanoTime();
+            telemetry.recordWait(BATCH_API_TYPE, start - queued);
+            return transport.sendStreamingAsync(request)
+                    .whenComplete((response, error) -> {
+                        if (error != null) {
+                            recordBatchFailure(breaker, error);
+                        }
+                    })
+                    .thenApplyAsync(response -> {
+                        BatchOutcome outcome = new BatchOutcome(response);
+                        List<BatchResponseItem> results = new ArrayList<>();
+                        Throwable failure = null;
+                        try {
+                            readBatch(response, outcome.andThen(this::recordBatchItem).andThen(results::add));
+                        } catch (IOException e) {
+                            failure = e;
+                            throw new UncheckedIOException(e);
+                        } finally {
+                            outcome.record(breaker, failure);
+                            telemetry.recordRequest(BATCH_API_TYPE, System.nanoTime() - start, response.getRateLimit());
+                        }
+                        return results;
+                    }, BODY_EXECUTOR);
         });
     }
 
-    // Retry-After 값 추출: 대기 시간(초)
-    private int getRetryAfter(HttpURLConnection connection) {
-        String retryAfterValue = getHeaderValue(connection, "Retry-After");
-        return Integer.parseInt(retryAfterValue);
+    /**
+     * Send the given sub-requests as a single {@code $batch} call and hand each
+     * sub-response to {@code consumer} as soon as it has been parsed.
+     *
+     * @return status and headers of the {@code $batch} response itself; the
+     *         consumer is only called when that status is 200
+     */
+    public GraphApiResponse executeBatch(List<BatchRequestItem> items, Consumer<BatchResponseItem> consumer)
+            throws Exception {
+        return executeBatch(items, consumer, RequestPriority.NORMAL);
     }
 
-    // RateLimit-Limit 값 추출: 해당 API 가 허용하는 총 요청수
-    private int getRateLimitLimit(HttpURLConnection connection) {
-        String limitValue = getHeaderValue(connection, "RateLimit-Limit");
-        return Integer.parseInt(limitValue);
+    public GraphApiResponse executeBatch(List<BatchRequestItem> items, Consumer<BatchResponseItem> consumer,
+            RequestPriority priority) throws Exception {
+        GraphRequest request = GraphRequest.post(graphBaseUrl + "$batch", "application/json", toBatchJson(items))
+                .withHeader("Authorization", "Bearer " + getAccessToken());
+
+        CircuitBreaker breaker = circuitBreaker;
+        if (breaker != null) {
+            breaker.acquire(BATCH_API_TYPE);
+        }
+        long queued = System.nanoTime();
+        try {
+            scheduler.waitIfNeeded(BATCH_API_TYPE, priority);
+        } catch (Exception e) {
+            if (breaker != null) {
+                breaker.release(BATCH_API_TYPE);
+            }
+            throw e;
+        }
+        long start = System.nanoTime();
+        telemetry.recordWait(BATCH_API_TYPE, start - queued);
+        GraphStreamingResponse streaming;
+        try {
+            streaming = transport.sendStreaming(request);
+        } catch (Exception e) {
+            recordBatchFailure(breaker, e);
+            throw e;
+        }
+
+        try (GraphStreamingResponse response = streaming) {
+            rateLimiter.updateWindow(response.getRateLimit(), BATCH_API_TYPE);
+            BatchOutcome outcome = new BatchOutcome(response);
+            Throwable failure = null;
+            try {
+                if (response.getStatusCode() == 200) {
+                    BatchResponseParser.parse(response.getBody(),
+                            outcome.andThen(this::recordBatchItem).andThen(consumer));
+                }
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            } finally {
+                outcome.record(breaker, failure);
+                telemetry.recordRequest(BATCH_API_TYPE, System.nanoTime() - start, response.getRateLimit());
+            }
+            return new GraphApiResponse(response.getStatusCode(), response.getHeaders(), null);
+        }
     }
 
-    // RateLimit-Reset 값 추출: 다음 요청 가능 시간(초)
-    private int getRateLimitReset(HttpURLConnection connection) {
-        String resetValue = getHeaderValue(connection, "RateLimit-Reset");
-        return Integer.parseInt(resetValue);
+    /**
+     * Graph throttles the sub-requests of a {@code $batch}, not the envelope,
+     * so their statuses are counted too.
+     */
+    private void recordBatchItem(BatchResponseItem item) {
+        telemetry.recordBatchItem(BATCH_API_TYPE, item.getStatus());
     }
 
-    // RateLimit-Remaining 값 추출 : 현재 남은 요청 수
-    private int getRateLimitRemaining(HttpURLConnection connection) {
-        String remainingValue = getHeaderValue(connection, "RateLimit-Remaining");
-        return Integer.parseInt(remainingValue);
+    private static void recordBatchFailure(CircuitBreaker breaker, Throwable error) {
+        if (breaker != null) {
+            breaker.record(BATCH_API_TYPE, null, error);
+        }
     }
 
-    // 헤더에서 특정 값 추출
-    private String getHeaderValue(HttpURLConnection connection, String headerName) {
-        Map<String, List<String>> headers = connection.getHeaderFields();
-        List<String> values = headers.get(headerName);
+    /**
+     * Circuit breaker outcome of one {@code $batch} call. Graph throttles the
+     * sub-requests, not the envelope, so a 429 or 5xx sub-response fails the
+     * call too, and the longest {@code Retry-After} among them is kept.
+     */
+    private static final class BatchOutcome implements Consumer<BatchResponseItem> {
+        private int statusCode;
+        private int retryAfterSeconds;
 
-        if (headers.size() > 10) {
+        BatchOutcome(GraphStreamingResponse response) {
+            this.statusCode = response.getStatusCode();
+            this.retryAfterSeconds = response.getRateLimit().getRetryAfterSeconds();
+        }
 
-            if (values != null && !values.isEmpty()) {
-                return values.get(0); // 첫 번째 값 반환 (일반적으로 하나의 값만 있음)
+        @Override
+        public void accept(BatchResponseItem item) {
+            if (CircuitBreaker.isFailure(item.getStatus())) {
+                if (!CircuitBreaker.isFailure(statusCode)) {
+                    statusCode = item.getStatus();
+                }
+                retryAfterSeconds = Math.max(retryAfterSeconds, item.getRateLimit().getRetryAfterSeconds());
+            }
+        }
+
+        /**
+         * @param failure set when the body could not be read to the end
+         */
+        void record(CircuitBreaker breaker, Throwable failure) {
+            if (failure != null) {
+                recordBatchFailure(breaker, failure);
+            } else if (breaker != null) {
+                breaker.record(BATCH_API_TYPE, statusCode, retryAfterSeconds);
             }
         }
-        return "-1"; // 값이 없으면 기본값 -1 반환(null 로 간주)
     }
 
-    // RateLimit-Reset 값에 맞춰 대기하는 함수
-    private void waitForRateLimitReset(int resetTimeInSeconds) {
+    private void readBatch(GraphStreamingResponse response, Consumer<BatchResponseItem> consumer) throws IOException {
+        try (response) {
+            rateLimiter.updateWindow(response.getRateLimit(), BATCH_API_TYPE);
+            if (response.getStatusCode() != 200) {
+                throw new RuntimeException("Failed to call Graph batch API: " + response.getStatusCode());
+            }
+            BatchResponseParser.parse(response.getBody(), consumer);
+        }
+    }
+
+    static String toBatchJson(List<BatchRequestItem> items) throws Exception {
+        ObjectNode root = MAPPER.createObjectNode();
+        ArrayNode requests = root.putArray("requests");
+        for (BatchRequestItem item : items) {
+            ObjectNode node = requests.addObject();
+            node.put("id", item.getId());
+            node.put("method", item.getMethod());
+            node.put("url", item.getUrl());
+            if (!item.getHeaders().isEmpty()) {
+                ObjectNode headers = node.putObject("headers");
+                item.getHeaders().forEach(headers::put);
+            }
+            if (!item.getDependsOn().isEmpty()) {
+                ArrayNode dependsOn = node.putArray("dependsOn");
+                item.getDependsOn().forEach(dependsOn::add);
+            }
+        }
+        return MAPPER.writeValueAsString(root);
+    }
+
+    /**
+     * {@link #sendLimited} for idempotent GETs, hedged when a {@link RequestHedger} is set.
+     */
+    private CompletableFuture<GraphApiResponse> sendRead(GraphRequest request, String apiType,
+            RequestPriority priority) {
+        RequestHedger hedging = hedger;
+        if (hedging == null) {
+            return sendLimited(request, apiType, priority, () -> {
+            });
+        }
+        EndpointTelemetry stats = telemetry.getEndpoint(apiType);
+        return hedging.send(admitted -> sendLimited(request, apiType, priority, admitted),
+                stats == null ? null : stats.getLatency(), scheduler.getRateLimiter(), apiType);
+    }
+
+    /**
+     * Send once the circuit breaker and the rate limiter let it through, and
+     * feed the response headers back.
+     *
+     * @param admitted run once the rate limiter has let the request through,
+     *                 just before it is sent
+     */
+    private CompletableFuture<GraphApiResponse> sendLimited(GraphRequest request, String apiType,
+            RequestPriority priority, Runnable admitted) {
+        CircuitBreaker breaker = circuitBreaker;
+        if (breaker == null) {
+            return sendScheduled(request, apiType, priority, admitted);
+        }
         try {
-            System.out.println("Waiting for " + resetTimeInSeconds + " seconds before retrying...");
-            TimeUnit.SECONDS.sleep(resetTimeInSeconds); // 설정된 시간 동안 대기
-            System.out.println("Wait time over. You can now retry.");
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            System.err.println("Error while waiting for rate limit reset.");
+            // 열린 회로는 rate limiter 대기열에 들어가기 전에 거절
+            breaker.acquire(apiType);
+        } catch (CircuitOpenException e) {
+            return CompletableFuture.failedFuture(e);
         }
+        return sendScheduled(request, apiType, priority, admitted)
+                .whenComplete((response, error) -> breaker.record(apiType, response, error));
     }
 
-    public Optional<String> callGraphApi(String endpoint) throws Exception {
-        String accessToken = getAccessToken();
+    private CompletableFuture<GraphApiResponse> sendScheduled(GraphRequest request, String apiType,
+            RequestPriority priority, Runnable admitted) {
+        PriorityScheduler limits = scheduler;
+        RateLimiter limiter = limits.getRateLimiter();
+        long queued = System.nanoTime();
+        return limits.acquireAsync(apiType, priority)
+                .thenCompose(v -> {
+                    long start = System.nanoTime();
+                    telemetry.recordWait(apiType, start - queued);
+                    admitted.run();
+                    return transport.sendAsync(request).thenApply(response -> {
+                        telemetry.recordRequest(apiType, System.nanoTime() - start, response.getRateLimit());
+                        limiter.updateWindow(response.getRateLimit(), apiType);
+                        return response;
+                    });
+                });
+    }
 
-        URL url = new URL("https://graph.microsoft.com/v1.0/" + endpoint);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-        connection.setRequestProperty("Authorization", "Bearer " + accessToken);
+    /**
+     * Rate limits are tracked per workload, e.g. {@code sites/root} counts
+     * against "sites".
+     */
+    static String apiType(String endpoint) {
+        String path = endpoint.startsWith("/") ? endpoint.substring(1) : endpoint;
+        int end = path.length();
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/' || c == '?' || c == '(') {
+                end = i;
+                break;
+            }
+        }
+        return path.substring(0, end);
+    }
 
-        if (connection.getResponseCode() == 200) {
-            String response = new String(connection.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-            return Optional.of(response);
-        } else {
-            System.err.println("Failed to call Graph API: " + connection.getResponseCode());
-            return Optional.empty();
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
         }
     }
 
+    private GraphRequest graphGet(String endpoint) throws Exception {
+        return GraphRequest.get(graphBaseUrl + endpoint)
+                .withHeader("Authorization", "Bearer " + getAccessToken());
+    }
+
     /**
-     * Parse the access token from the JSON response.
+     * Parse the access token and its lifetime from the JSON response.
      */
-    private String parseAccessToken(String jsonResponse) {
-        // Simple parsing logic (use a JSON library like Jackson or Gson for production
-        // code)
-        int startIndex = jsonResponse.indexOf("\"access_token\":\"") + 16;
-        int endIndex = jsonResponse.indexOf("\"", startIndex);
-        return jsonResponse.substring(startIndex, endIndex);
+    private AccessToken parseAccessToken(String jsonResponse) throws Exception {
+        JsonNode json = MAPPER.readTree(jsonResponse);
+        String token = json.path("access_token").asText(null);
+        if (token == null) {
+            throw new RuntimeException("Token response does not contain an access_token");
+        }
+
+        // expires_in 이 없으면 보수적으로 5분만 캐시
+        long expiresIn = json.path("expires_in").asLong(300);
+        return new AccessToken(token, Instant.now().plus(Duration.ofSeconds(expiresIn)));
     }
 }
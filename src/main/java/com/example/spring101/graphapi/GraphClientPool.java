@@ -0,0 +1,170 @@
+package com.example.spring101.graphapi;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Spreads Graph calls over several app registrations.
+ *
+ * Every credential is a {@link GraphClientFactory} with its own token and
+ * {@link RateLimiter}, so each registration is throttled on its own quota.
+ * A call goes to the client with the most capacity left for its API type,
+ * as seen in the {@code RateLimit-*} headers; ties are taken in turn. A client
+ * that got a 429 is skipped until its {@code Retry-After} has passed. When all
+ * of them are cooling down, the call waits for the first one to recover.
+ * Closing the pool closes every client.
+ */
+public class GraphClientPool implements AutoCloseable {
+
+    public static final Logger logger = Logger.getLogger(GraphClientPool.class.getName());
+
+    private final List<Member> members;
+    private final AtomicInteger turn = new AtomicInteger();
+
+    public GraphClientPool(List<GraphClientFactory> clients) {
+        if (clients.isEmpty()) {
+            throw new IllegalArgumentException("A client pool needs at least one client");
+        }
+        this.members = clients.stream().map(Member::new).toList();
+    }
+
+    public List<GraphClientFactory> getClients() {
+        return members.stream().map(member -> member.client).toList();
+    }
+
+    /**
+     * Capacity of the best client for {@code apiType}, for
+     * {@link GraphWorkloadRunner}; 0 while all of them are cooling down.
+     */
+    public float getCapacityLeft(String apiType) {
+        long now = System.currentTimeMillis();
+        float best = 0;
+        for (Member member : members) {
+            if (member.coolUntil <= now) {
+                best = Math.max(best, member.client.getRateLimiter().getCapacityLeft(apiType));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Client the next call for {@code apiType} would be sent with.
+     */
+    public GraphClientFactory select(String apiType) {
+        return choose(apiType).client;
+    }
+
+    /**
+     * {@link GraphClientFactory#callGraphApiWithHeaders(String, Optional, RequestPriority)}
+     * on the client with the most capacity left.
+     */
+    public GraphApiResponse callGraphApiWithHeaders(String endpoint, Optional<Integer> threadId,
+            RequestPriority priority) throws Exception {
+        Member member = choose(GraphClientFactory.BATCH_API_TYPE);
+        long waitMillis = member.coolUntil - System.currentTimeMillis();
+        if (waitMillis > 0) {
+            TimeUnit.MILLISECONDS.sleep(waitMillis);
+        }
+
+        GraphApiResponse response = member.client.callGraphApiWithHeaders(endpoint, threadId, priority);
+        int coolSeconds = coolSeconds(response.getRateLimit());
+        for (BatchResponseItem item : response.getBatchResponses()) {
+            coolSeconds = Math.max(coolSeconds, coolSeconds(item.getRateLimit()));
+        }
+        member.coolFor(coolSeconds);
+        return response;
+    }
+
+    /**
+     * {@link GraphClientFactory#callGraphApiAsync(String, RequestPriority)} on the
+     * client with the most capacity left.
+     */
+    public CompletableFuture<GraphApiResponse> callGraphApiAsync(String endpoint, RequestPriority priority) {
+        Member member = choose(GraphClientFactory.apiType(endpoint));
+        long waitMillis = member.coolUntil - System.currentTimeMillis();
+        CompletableFuture<Void> ready = waitMillis <= 0 ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.runAsync(() -> {
+                }, CompletableFuture.delayedExecutor(waitMillis, TimeUnit.MILLISECONDS));
+        return ready.thenCompose(v -> member.client.callGraphApiAsync(endpoint, priority))
+                .thenApply(response -> {
+                    member.coolFor(coolSeconds(response.getRateLimit()));
+                    return response;
+                });
+    }
+
+    /**
+     * The client with the most capacity left among those not cooling down and
+     * with a closed circuit; if there is none, the one that recovers first.
+     */
+    private Member choose(String apiType) {
+        long now = System.currentTimeMillis();
+        int start = Math.floorMod(turn.getAndIncrement(), members.size());
+        Member best = null;
+        float bestCapacity = -1;
+        Member firstBack = null;
+
+        for (int i = 0; i < members.size(); i++) {
+            Member member = members.get((start + i) % members.size());
+            if (member.coolUntil > now) {
+                if (firstBack == null || member.coolUntil < firstBack.coolUntil) {
+                    firstBack = member;
+                }
+                continue;
+            }
+            CircuitBreaker breaker = member.client.getCircuitBreaker();
+            if (breaker != null && breaker.getState(apiType) == CircuitBreaker.State.OPEN) {
+                // 회로가 열린 클라이언트는 다른 곳이 모두 막혔을 때만 (바로 실패한다)
+                if (firstBack == null) {
+                    firstBack = member;
+                }
+                continue;
+            }
+            // 같은 값이면 먼저 본 것을 유지: 시작 위치를 돌려가며 고르게 나눈다
+            float capacity = member.client.getRateLimiter().getCapacityLeft(apiType);
+            if (capacity > bestCapacity) {
+                best = member;
+                bestCapacity = capacity;
+            }
+        }
+        return best != null ? best : firstBack;
+    }
+
+    @Override
+    public void close() {
+        members.forEach(member -> member.client.close());
+    }
+
+    /**
+     * @return seconds to skip the client for, 0 if the response was not throttled
+     */
+    private static int coolSeconds(RateLimitSnapshot snapshot) {
+        return snapshot.isThrottled() ? Math.max(1, snapshot.getRetryAfterSeconds()) : 0;
+    }
+
+    private static final class Member {
+        final GraphClientFactory client;
+        volatile long coolUntil; // epoch millis
+
+        Member(GraphClientFactory client) {
+            this.client = client;
+        }
+
+        void coolFor(int seconds) {
+            if (seconds <= 0) {
+                return;
+            }
+            long until = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(seconds);
+            synchronized (this) {
+                if (until > coolUntil) {
+                    coolUntil = until;
+                    logger.warning(String.format("Client %s throttled, skipping it for %d seconds",
+                            client.getClientId(), seconds));
+                }
+            }
+        }
+    }
+}
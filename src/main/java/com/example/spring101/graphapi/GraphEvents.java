@@ -0,0 +1,133 @@
+package com.example.spring101.graphapi;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for Graph calls.
+ *
+ * They cost next to nothing while no recording is running, so they can stay
+ * enabled in production; record with
+ * {@code -XX:StartFlightRecording:settings=profile} and open the file in JDK
+ * Mission Control, or filter with {@code jfr print --events 'graph.*'}.
+ */
+public final class GraphEvents {
+
+    private GraphEvents() {
+    }
+
+    /**
+     * Instant events for a {@code $batch} sub-response, plus {@link Throttled}
+     * when it was refused.
+     */
+    static void batchItem(BatchResponseItem item) {
+        BatchItem event = new BatchItem();
+        if (event.shouldCommit()) {
+            event.id = item.getId();
+            event.status = item.getStatus();
+            event.retryAfter = item.getRateLimit().getRetryAfterSeconds();
+            event.commit();
+        }
+        if (item.getRateLimit().isThrottled()) {
+            throttled("$batch item", item.getRateLimit());
+        }
+    }
+
+    static void throttled(String apiType, RateLimitSnapshot snapshot) {
+        Throttled event = new Throttled();
+        if (event.shouldCommit()) {
+            event.apiType = apiType;
+            event.status = snapshot.getStatusCode();
+            event.retryAfter = snapshot.getRetryAfterSeconds();
+            event.scope = snapshot.getThrottleScope();
+            event.commit();
+        }
+    }
+
+    @Name("graph.TokenFetch")
+    @Label("Token Fetch")
+    @Category({ "Graph API" })
+    @Description("Call to the token endpoint")
+    @StackTrace(false)
+    public static final class TokenFetch extends Event {
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name("graph.HttpExchange")
+    @Label("HTTP Exchange")
+    @Category({ "Graph API" })
+    @Description("Request from hand-off to the transport until the response headers arrived, including time waiting for a connection slot")
+    @StackTrace(false)
+    public static final class HttpExchange extends Event {
+        @Label("Method")
+        String method;
+
+        @Label("Host")
+        String host;
+
+        @Label("Path")
+        String path;
+
+        @Label("Status")
+        @Description("HTTP status, -1 if the request failed")
+        int status = -1;
+
+        @Label("Error")
+        String error;
+    }
+
+    @Name("graph.BatchItem")
+    @Label("Batch Sub-Response")
+    @Category({ "Graph API" })
+    @StackTrace(false)
+    public static final class BatchItem extends Event {
+        @Label("Id")
+        String id;
+
+        @Label("Status")
+        int status;
+
+        @Label("Retry-After (s)")
+        int retryAfter;
+    }
+
+    @Name("graph.LimiterWait")
+    @Label("Rate Limiter Wait")
+    @Category({ "Graph API" })
+    @Description("Time a request was held back by the rate limiter")
+    @StackTrace(false)
+    public static final class LimiterWait extends Event {
+        @Label("API Type")
+        String apiType;
+
+        @Label("Priority")
+        String priority;
+
+        @Label("Capacity Left (%)")
+        float capacityLeft;
+    }
+
+    @Name("graph.Throttled")
+    @Label("Throttled")
+    @Category({ "Graph API" })
+    @Description("Response refused with 429, or 503 with Retry-After")
+    @StackTrace(false)
+    public static final class Throttled extends Event {
+        @Label("API Type")
+        String apiType;
+
+        @Label("Status")
+        int status;
+
+        @Label("Retry-After (s)")
+        int retryAfter;
+
+        @Label("Throttle Scope")
+        String scope;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.spring101.graphapi;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Items of a Graph collection, read lazily page by page.
+ *
+ * A virtual thread follows {@code @odata.nextLink} and parks parsed pages in a
+ * queue of {@code maxBufferedPages}, so the next page is on its way while the
+ * caller works through the current one. When the queue is full the thread
+ * waits, which keeps memory bounded however large the collection is. Close
+ * the iterator when stopping early so the thread does not keep a page waiting.
+ */
+public class GraphPageIterator implements Iterator<JsonNode>, Closeable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final BlockingQueue<Page> pages;
+    private final Thread producer;
+    private volatile boolean readAheadBlocked;
+
+    private Iterator<JsonNode> current = Collections.emptyIterator();
+    private boolean finished;
+    private int pagesRead;
+    private String deltaLink;
+
+    GraphPageIterator(GraphClientFactory factory, String url, int maxBufferedPages) {
+        if (maxBufferedPages < 1) {
+            throw new IllegalArgumentException("maxBufferedPages must be at least 1");
+        }
+        this.pages = new ArrayBlockingQueue<>(maxBufferedPages);
+        this.producer = Thread.ofVirtual().name("graph-pages").start(() -> produce(factory, url));
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (finished) {
+                return false;
+            }
+
+            Page page;
+            try {
+                page = pages.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the next page", e);
+            }
+
+            if (page.error != null) {
+                finished = true;
+                throw new RuntimeException("Failed to read the next page: " + page.error.getMessage(), page.error);
+            }
+            pagesRead++;
+            current = page.items.iterator();
+            if (page.last) {
+                finished = true;
+                deltaLink = page.deltaLink;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public JsonNode next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    /**
+     * Pages handed to the caller so far.
+     */
+    public int getPagesRead() {
+        return pagesRead;
+    }
+
+    /**
+     * {@code @odata.deltaLink} of the last page once the iterator is exhausted,
+     * for delta queries; {@code null} otherwise.
+     */
+    public String getDeltaLink() {
+        return deltaLink;
+    }
+
+    /**
+     * True while the read-ahead is parked on a full buffer, waiting for the
+     * caller to take a page.
+     */
+    boolean isReadAheadBlocked() {
+        return readAheadBlocked;
+    }
+
+    @Override
+    public void close() {
+        producer.interrupt();
+    }
+
+    private void produce(GraphClientFactory factory, String url) {
+        try {
+            String next = url;
+            while (next != null) {
+                GraphApiResponse response = factory.callGraphUrl(next);
+                if (response.getStatusCode() != 200) {
+                    response.release();
+                    throw new RuntimeException("Failed to call Graph API: " + response.getStatusCode());
+                }
+
+                JsonNode page;
+                try (InputStream body = response.openBody()) {
+                    page = MAPPER.readTree(body);
+                } finally {
+                    response.release();
+                }
+                next = page.path("@odata.nextLink").asText(null);
+                Page read = new Page(page.path("value"), next == null, page.path("@odata.deltaLink").asText(null), null);
+                if (!pages.offer(read)) {
+                    readAheadBlocked = true;
+                    try {
+                        pages.put(read);
+                    } finally {
+                        readAheadBlocked = false;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // close() 호출: 더 읽지 않는다
+        } catch (Exception e) {
+            try {
+                pages.put(new Page(null, true, null, e));
+            } catch (InterruptedException interrupted) {
+                // 이미 닫힌 경우
+            }
+        }
+    }
+
+    private static final class Page {
+        final JsonNode items;
+        final boolean last;
+        final String deltaLink;
+        final Exception error;
+
+        Page(JsonNode items, boolean last, String deltaLink, Exception error) {
+            this.items = items;
+            this.last = last;
+            this.deltaLink = deltaLink;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.spring101.graphapi;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A single HTTP request sent through a {@link GraphTransport}.
+ */
+public class GraphRequest {
+    private final String method;
+    private final String url;
+    private final Map<String, String> headers;
+    private final String body;
+
+    public GraphRequest(String method, String url, Map<String, String> headers, String body) {
+        this.method = method;
+        this.url = url;
+        this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+        this.body = body;
+    }
+
+    public static GraphRequest get(String url) {
+        return new GraphRequest("GET", url, Map.of(), null);
+    }
+
+    public static GraphRequest post(String url, String contentType, String body) {
+        return new GraphRequest("POST", url, Map.of("Content-Type", contentType), body);
+    }
+
+    /**
+     * Return a copy of this request with the given header added or replaced.
+     */
+    public GraphRequest withHeader(String name, String value) {
+        Map<String, String> copy = new LinkedHashMap<>(headers);
+        copy.put(name, value);
+        return new GraphRequest(method, url, copy, body);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public String getBody() {
+        return body;
+    }
+}
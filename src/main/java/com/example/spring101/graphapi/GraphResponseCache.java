@@ -0,0 +1,242 @@
+package com.example.spring101.graphapi;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Bounded cache of Graph GET responses, revalidated with {@code If-None-Match}.
+ *
+ * Within {@code ttl} a cached response is returned without a request. After
+ * that the next read sends the stored ETag, and a 304 renews the entry. Entries
+ * are weighed by their estimated heap size and evicted by Caffeine's
+ * W-TinyLFU policy once {@code maximumBytes} is reached, or when unused for
+ * {@code retention}.
+ */
+@Component
+public class GraphResponseCache implements MeterBinder {
+
+    public static final long DEFAULT_MAXIMUM_BYTES = 64L * 1024 * 1024;
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+    public static final Duration DEFAULT_RETENTION = Duration.ofHours(1);
+
+    private final Cache<String, CachedResponse> cache;
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder revalidated = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public GraphResponseCache() {
+        this(DEFAULT_MAXIMUM_BYTES, DEFAULT_TTL, DEFAULT_RETENTION);
+    }
+
+    public GraphResponseCache(long maximumBytes, Duration ttl, Duration retention) {
+        this.ttlNanos = ttl.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((String key, CachedResponse value) -> value.weight)
+                .expireAfterAccess(retention)
+                .evictionListener((String key, CachedResponse value, RemovalCause cause) -> evictions.increment())
+                .build();
+    }
+
+    /**
+     * Serve {@code key} from the cache while it is fresh, otherwise call
+     * {@code send} with the stored ETag ({@code null} if there is none) and
+     * cache what comes back.
+     *
+     * A 304 is answered with the cached body as a 200, carrying the throttling
+     * headers of the 304 so rate limit values are current.
+     */
+    public CompletableFuture<GraphApiResponse> fetch(String key,
+            Function<String, CompletableFuture<GraphApiResponse>> send) {
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached != null && System.nanoTime() - cached.validatedAt < ttlNanos) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached.toResponse(Map.of()));
+        }
+
+        String etag = cached != null ? cached.etag : null;
+        return send.apply(etag).thenApply(response -> {
+            int status = response.getStatusCode();
+            if (status == 304 && cached != null) {
+                revalidated.increment();
+                // 그 사이 새 응답이 저장됐다면 덮어쓰지 않는다
+                cache.asMap().replace(key, cached, cached.renew());
+                return cached.toResponse(response.getHeaders());
+            }
+
+            misses.increment();
+            if (status == 200) {
+                cache.put(key, new CachedResponse(key, response));
+            } else if (status == 404 || status == 410) {
+                cache.invalidate(key);
+            }
+            return response;
+        });
+    }
+
+    public void invalidate(String key) {
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Reads answered by a 304 from the server.
+     */
+    public long getRevalidated() {
+        return revalidated.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Share of reads that did not need a full response body, 0 before the first read.
+     */
+    public double getHitRatio() {
+        long served = hits.sum() + revalidated.sum();
+        long total = served + misses.sum();
+        return total == 0 ? 0 : (double) served / total;
+    }
+
+    public long getEntries() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Estimated heap held by cached responses.
+     */
+    public long getEstimatedBytes() {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0))
+                .orElse(0L);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("graph.cache.requests", this, GraphResponseCache::getHits)
+                .tag("result", "hit")
+                .description("Graph GETs served from the response cache")
+                .register(registry);
+        FunctionCounter.builder("graph.cache.requests", this, GraphResponseCache::getRevalidated)
+                .tag("result", "revalidated")
+                .description("Graph GETs answered by a 304")
+                .register(registry);
+        FunctionCounter.builder("graph.cache.requests", this, GraphResponseCache::getMisses)
+                .tag("result", "miss")
+                .description("Graph GETs that needed a full response")
+                .register(registry);
+        FunctionCounter.builder("graph.cache.evictions", this, GraphResponseCache::getEvictions)
+                .description("Responses evicted for size or inactivity")
+                .register(registry);
+        Gauge.builder("graph.cache.hit.ratio", this, GraphResponseCache::getHitRatio)
+                .description("Share of reads served from the cache or by a 304")
+                .register(registry);
+        Gauge.builder("graph.cache.entries", this, GraphResponseCache::getEntries)
+                .description("Cached responses")
+                .register(registry);
+        Gauge.builder("graph.cache.memory", this, GraphResponseCache::getEstimatedBytes)
+                .baseUnit("bytes")
+                .description("Estimated heap held by cached responses")
+                .register(registry);
+    }
+
+    static String header(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey()) && !entry.getValue().isEmpty()) {
+                return entry.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cached body and headers; throttling headers are dropped because they
+     * describe the moment the response was received, not the cache hit.
+     */
+    private static final class CachedResponse {
+        final String etag;
+        final String body;
+        final Map<String, List<String>> headers;
+        final long validatedAt;
+        final int weight;
+
+        CachedResponse(String key, GraphApiResponse response) {
+            this.etag = header(response.getHeaders(), "ETag");
+            this.body = response.getBody();
+            this.headers = new LinkedHashMap<>();
+            int chars = key.length() + (body != null ? body.length() : 0) + (etag != null ? etag.length() : 0);
+            for (Map.Entry<String, List<String>> entry : response.getHeaders().entrySet()) {
+                String name = entry.getKey();
+                if (name == null || isThrottlingHeader(name)) {
+                    continue;
+                }
+                headers.put(name, entry.getValue());
+                chars += name.length();
+                for (String value : entry.getValue()) {
+                    chars += value.length();
+                }
+            }
+            this.validatedAt = System.nanoTime();
+            // 문자 2바이트 + 객체/맵 오버헤드 대략치
+            this.weight = (int) Math.min(Integer.MAX_VALUE, 2L * chars + 64L * (headers.size() + 2));
+        }
+
+        private CachedResponse(CachedResponse previous) {
+            this.etag = previous.etag;
+            this.body = previous.body;
+            this.headers = previous.headers;
+            this.weight = previous.weight;
+            this.validatedAt = System.nanoTime();
+        }
+
+        CachedResponse renew() {
+            return new CachedResponse(this);
+        }
+
+        GraphApiResponse toResponse(Map<String, List<String>> revalidation) {
+            Map<String, List<String>> merged = new LinkedHashMap<>(headers);
+            revalidation.forEach((name, value) -> {
+                if (name != null && isThrottlingHeader(name)) {
+                    merged.put(name, value);
+                }
+            });
+            return new GraphApiResponse(200, merged, body);
+        }
+
+        private static boolean isThrottlingHeader(String name) {
+            String lower = name.toLowerCase();
+            return lower.startsWith("ratelimit-") || lower.equals("retry-after") || lower.startsWith("x-ms-throttle-");
+        }
+    }
+}
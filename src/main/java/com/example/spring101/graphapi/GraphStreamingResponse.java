@@ -0,0 +1,53 @@
+package com.example.spring101.graphapi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A response whose body has not been read yet. It holds a connection slot
+ * until it is closed, so always close it, e.g. with try-with-resources.
+ */
+public class GraphStreamingResponse implements Closeable {
+    private final int statusCode;
+    private final Map<String, List<String>> headers;
+    private final InputStream body;
+    private final Runnable onClose;
+    private final RateLimitSnapshot rateLimit;
+
+    public GraphStreamingResponse(int statusCode, Map<String, List<String>> headers, InputStream body,
+            Runnable onClose) {
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.body = body;
+        this.onClose = onClose;
+        this.rateLimit = RateLimitSnapshot.of(statusCode, headers);
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    public InputStream getBody() {
+        return body;
+    }
+
+    public RateLimitSnapshot getRateLimit() {
+        return rateLimit;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            body.close();
+        } finally {
+            onClose.run();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.spring101.graphapi;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Thread-safe store of per-endpoint request, throttling and quota telemetry.
+ *
+ * Spring Boot binds it to the application's {@link MeterRegistry}; endpoints
+ * seen after binding get their meters registered on first use. The raw values
+ * are also served by {@link GraphTelemetryEndpoint}.
+ */
+@Component
+public class GraphTelemetry implements MeterBinder {
+
+    private static final int QUOTA_SAMPLES = 512;
+
+    private final Map<String, EndpointTelemetry> endpoints = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    public void recordRequest(String endpoint, long latencyNanos, RateLimitSnapshot rateLimit) {
+        EndpointTelemetry stats = endpoint(endpoint);
+        stats.recordRequest(latencyNanos, rateLimit.getStatusCode());
+        if (rateLimit.hasRateLimit()) {
+            stats.getQuota().record(Instant.now().getEpochSecond(), rateLimit.getRemaining(), rateLimit.getLimit());
+        }
+
+        Timer timer = timers.get(endpoint);
+        if (timer != null) {
+            timer.record(latencyNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Status of one {@code $batch} sub-response; a 429 or 5xx is counted as
+     * throttled or failed like a response of its own, but not as a request.
+     */
+    public void recordBatchItem(String endpoint, int statusCode) {
+        endpoint(endpoint).recordStatus(statusCode);
+    }
+
+    /**
+     * Time a request spent waiting for the rate limiter.
+     */
+    public void recordWait(String endpoint, long waitNanos) {
+        endpoint(endpoint).recordWait(waitNanos);
+    }
+
+    public long getTotalRequests() {
+        long total = 0;
+        for (EndpointTelemetry stats : endpoints.values()) {
+            total += stats.getRequests();
+        }
+        return total;
+    }
+
+    public Collection<EndpointTelemetry> getEndpoints() {
+        return endpoints.values();
+    }
+
+    public EndpointTelemetry getEndpoint(String endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        endpoints.values().forEach(stats -> register(registry, stats));
+    }
+
+    private EndpointTelemetry endpoint(String endpoint) {
+        EndpointTelemetry stats = endpoints.get(endpoint);
+        if (stats != null) {
+            return stats;
+        }
+        return endpoints.computeIfAbsent(endpoint, key -> {
+            EndpointTelemetry created = new EndpointTelemetry(key, QUOTA_SAMPLES);
+            MeterRegistry bound = registry;
+            if (bound != null) {
+                register(bound, created);
+            }
+            return created;
+        });
+    }
+
+    private void register(MeterRegistry registry, EndpointTelemetry stats) {
+        String endpoint = stats.getEndpoint();
+        FunctionCounter.builder("graph.requests", stats, EndpointTelemetry::getRequests)
+                .tag("endpoint", endpoint)
+                .description("Graph API requests sent")
+                .register(registry);
+        FunctionCounter.builder("graph.throttled", stats, EndpointTelemetry::getThrottled)
+                .tag("endpoint", endpoint)
+                .description("Graph API responses and $batch sub-responses with status 429")
+                .register(registry);
+        FunctionCounter.builder("graph.failures", stats, EndpointTelemetry::getFailures)
+                .tag("endpoint", endpoint)
+                .description("Graph API responses and $batch sub-responses with status 5xx")
+                .register(registry);
+        FunctionCounter.builder("graph.limiter.wait", stats, EndpointTelemetry::getWaitSeconds)
+                .tag("endpoint", endpoint)
+                .baseUnit("seconds")
+                .description("Time spent waiting for the rate limiter")
+                .register(registry);
+        Gauge.builder("graph.quota.remaining", stats, s -> s.getQuota().getLatestRemaining())
+                .tag("endpoint", endpoint)
+                .description("Last reported RateLimit-Remaining")
+                .register(registry);
+        Gauge.builder("graph.quota.limit", stats, s -> s.getQuota().getLimit())
+                .tag("endpoint", endpoint)
+                .description("Last reported RateLimit-Limit")
+                .register(registry);
+        Gauge.builder("graph.quota.burn.rate", stats, s -> s.getQuota().getBurnRatePerSecond())
+                .tag("endpoint", endpoint)
+                .description("Quota consumed per second over the recent samples")
+                .register(registry);
+        timers.put(endpoint, Timer.builder("graph.latency")
+                .tag("endpoint", endpoint)
+                .description("Graph API request latency")
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+}
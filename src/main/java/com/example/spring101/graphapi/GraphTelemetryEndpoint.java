@@ -0,0 +1,59 @@
+package com.example.spring101.graphapi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint {@code /actuator/graphtelemetry}. Expose it with
+ * {@code management.endpoints.web.exposure.include=health,metrics,graphtelemetry}.
+ */
+@Component
+@Endpoint(id = "graphtelemetry")
+public class GraphTelemetryEndpoint {
+
+    private final GraphTelemetry telemetry;
+
+    public GraphTelemetryEndpoint(GraphTelemetry telemetry) {
+        this.telemetry = telemetry;
+    }
+
+    @ReadOperation
+    public Map<String, Object> summary() {
+        Map<String, Object> result = new TreeMap<>();
+        telemetry.getEndpoints().forEach(stats -> result.put(stats.getEndpoint(), describe(stats, false)));
+        return result;
+    }
+
+    /**
+     * Same as {@link #summary()} for one endpoint, plus the remaining-quota series.
+     */
+    @ReadOperation
+    public Map<String, Object> endpoint(@Selector String name) {
+        EndpointTelemetry stats = telemetry.getEndpoint(name);
+        return stats == null ? Map.of() : describe(stats, true);
+    }
+
+    private static Map<String, Object> describe(EndpointTelemetry stats, boolean withSeries) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("requests", stats.getRequests());
+        result.put("throttled", stats.getThrottled());
+        result.put("failures", stats.getFailures());
+        result.put("limiterWaits", stats.getWaits());
+        result.put("limiterWaitSeconds", stats.getWaitSeconds());
+        result.put("latencyP50Millis", stats.getLatency().getPercentileMillis(50));
+        result.put("latencyP99Millis", stats.getLatency().getPercentileMillis(99));
+        result.put("quotaLimit", stats.getQuota().getLimit());
+        result.put("quotaRemaining", stats.getQuota().getLatestRemaining());
+        result.put("quotaBurnRatePerSecond", stats.getQuota().getBurnRatePerSecond());
+        if (withSeries) {
+            result.put("quotaRemainingSeries", stats.getQuota().toMap());
+        }
+        return result;
+    }
+}
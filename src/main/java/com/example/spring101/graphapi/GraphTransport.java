@@ -0,0 +1,47 @@
+package com.example.spring101.graphapi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Sends HTTP requests for {@link GraphClientFactory}. Both the token endpoint
+ * and the Graph endpoints go through the same transport so they share its
+ * connections.
+ */
+public interface GraphTransport extends AutoCloseable {
+
+    /**
+     * Send a request and block until the full response has been received.
+     */
+    GraphApiResponse send(GraphRequest request) throws Exception;
+
+    /**
+     * Send a request without blocking the calling thread.
+     */
+    CompletableFuture<GraphApiResponse> sendAsync(GraphRequest request);
+
+    /**
+     * Send a request and complete as soon as the status and headers are in. The
+     * body is read by the caller, who must close the response.
+     */
+    CompletableFuture<GraphStreamingResponse> sendStreamingAsync(GraphRequest request);
+
+    /**
+     * Blocking variant of {@link #sendStreamingAsync(GraphRequest)}.
+     */
+    default GraphStreamingResponse sendStreaming(GraphRequest request) throws Exception {
+        try {
+            return sendStreamingAsync(request).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    TransportMetrics getMetrics();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,204 @@
+package com.example.spring101.graphapi;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs many independent Graph calls under an {@link AdaptiveConcurrencyLimiter}.
+ *
+ * The limiter, not the executor, bounds concurrency: in {@link ExecutionMode#VIRTUAL}
+ * every call gets its own virtual thread, in {@link ExecutionMode#PLATFORM} calls
+ * share a fixed pool sized to the limiter's maximum. Throttled calls are retried
+ * once the limiter hands out a new slot. A call refused by an open
+ * {@link CircuitBreaker} waits for the circuit and is sent again; it is
+ * neither a failure nor an attempt.
+ */
+public class GraphWorkloadRunner implements AutoCloseable {
+
+    public static final Logger logger = Logger.getLogger(GraphWorkloadRunner.class.getName());
+
+    private static final long CIRCUIT_OPEN_PAUSE_MILLIS = 1000;
+
+    /**
+     * A single unit of work; returning {@code null}, a 429 or a {@code $batch}
+     * with a throttled sub-response counts as throttled, any other status
+     * outside 2xx or a failed sub-response as failed.
+     */
+    @FunctionalInterface
+    public interface GraphCall {
+        GraphApiResponse call(int index) throws Exception;
+    }
+
+    private final ExecutionMode mode;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final DoubleSupplier capacityLeft;
+    private final ExecutorService executor;
+
+    private int maxAttempts = 10;
+
+    /**
+     * @param capacityLeft remaining quota in percent, usually
+     *                     {@code () -> rateLimiter.getCapacityLeft(apiType)}
+     */
+    public GraphWorkloadRunner(ExecutionMode mode, AdaptiveConcurrencyLimiter limiter, DoubleSupplier capacityLeft) {
+        this.mode = mode;
+        this.limiter = limiter;
+        this.capacityLeft = capacityLeft;
+        this.executor = mode == ExecutionMode.VIRTUAL
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("graph-call-", 0).factory())
+                : Executors.newFixedThreadPool(limiter.getMaxLimit());
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Run {@code call} for every index in {@code [from, to)} and wait for all of them.
+     */
+    public WorkloadResult runAll(int from, int to, GraphCall call) throws InterruptedException {
+        return runAll(from, to, call, null, null);
+    }
+
+    /**
+     * Like {@link #runAll(int, int, GraphCall)}, but skips the indexes that
+     * {@code journal} has as done for {@code job} and records the ones that
+     * succeed, so a restarted run only does the rest.
+     */
+    public WorkloadResult runAll(int from, int to, GraphCall call, JobJournal journal, String job)
+            throws InterruptedException {
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger throttled = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        int skipped = 0;
+        CountDownLatch done = new CountDownLatch(to - from);
+        long start = System.nanoTime();
+
+        for (int i = from; i < to; i++) {
+            int index = i;
+            String itemId = job + ":" + index;
+            if (journal != null && journal.isDone(itemId)) {
+                skipped++;
+                done.countDown();
+                continue;
+            }
+            limiter.acquire();
+            executor.execute(() -> {
+                try {
+                    GraphApiResponse response = callWithBackoff(call, index);
+                    if (isThrottled(response)) {
+                        logger.log(Level.WARNING, "Giving up on task {0} after repeated throttling", index);
+                        throttled.incrementAndGet();
+                    } else if (!response.isSuccess()) {
+                        // 하위 응답 하나라도 실패했으면 끝난 것으로 기록하지 않아 다음 실행에서 다시 한다
+                        logger.log(Level.WARNING, "Task {0} got status {1} or failed sub-responses",
+                                new Object[] { index, response.getStatusCode() });
+                        failed.incrementAndGet();
+                    } else {
+                        completed.incrementAndGet();
+                        if (journal != null) {
+                            try {
+                                journal.markDone(itemId);
+                            } catch (IOException e) {
+                                // 호출은 성공: 기록만 못 했으므로 다음 실행에서 다시 한다
+                                logger.log(Level.SEVERE, "Could not journal task " + index, e);
+                            }
+                        }
+                    }
+                } catch (Exception e) {
+                    logger.log(Level.SEVERE, "Task " + index + " failed", e);
+                    failed.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        done.await();
+        return new WorkloadResult(completed.get(), throttled.get(), failed.get(), skipped, System.nanoTime() - start);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Runs with a concurrency slot already held; the slot is released on return.
+     */
+    private GraphApiResponse callWithBackoff(GraphCall call, int index) throws Exception {
+        for (int attempt = 1;; attempt++) {
+            long start = System.nanoTime();
+            GraphApiResponse response;
+            try {
+                response = call.call(index);
+            } catch (CircuitOpenException e) {
+                // 회로가 열린 동안은 슬롯을 쥔 채 기다렸다가 같은 작업을 다시 보낸다
+                logger.warning(e.getMessage());
+                try {
+                    TimeUnit.MILLISECONDS.sleep(Math.max(CIRCUIT_OPEN_PAUSE_MILLIS, e.getRetryInMillis()));
+                } catch (InterruptedException interrupted) {
+                    limiter.onDropped();
+                    throw interrupted;
+                }
+                attempt--;
+                continue;
+            } catch (Exception e) {
+                limiter.onDropped();
+                throw e;
+            }
+
+            if (!isThrottled(response)) {
+                limiter.onSuccess(System.nanoTime() - start, (float) capacityLeft.getAsDouble());
+                return response;
+            }
+
+            limiter.onThrottled(retryAfterSeconds(response));
+            if (attempt >= maxAttempts) {
+                return response;
+            }
+            limiter.acquire();
+        }
+    }
+
+    /**
+     * Graph answers a throttled {@code $batch} with 200 and puts the 429s,
+     * with their Retry-After, in the sub-responses.
+     */
+    private static boolean isThrottled(GraphApiResponse response) {
+        if (response == null || response.getStatusCode() == 429) {
+            return true;
+        }
+        for (BatchResponseItem item : response.getBatchResponses()) {
+            if (item.getStatus() == 429 || item.getRateLimit().getRetryAfterSeconds() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Longest Retry-After of the response and its sub-responses, 0 if none.
+     */
+    private static int retryAfterSeconds(GraphApiResponse response) {
+        if (response == null) {
+            return 0;
+        }
+        int seconds = response.getRateLimit().getRetryAfterSeconds();
+        for (BatchResponseItem item : response.getBatchResponses()) {
+            seconds = Math.max(seconds, item.getRateLimit().getRetryAfterSeconds());
+        }
+        return Math.max(0, seconds);
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.spring101.graphapi;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * {@link GraphTransport} backed by a shared {@link HttpClient}.
+ *
+ * The client keeps connections alive and multiplexes requests over HTTP/2 when
+ * the server supports it. Requests per host are capped by
+ * {@link TransportOptions#getMaxConnectionsPerHost()}; requests over the cap
+ * wait in a queue instead of opening more sockets.
+ */
+public class HttpClientTransport implements GraphTransport {
+
+    private final HttpClient client;
+    private final TransportOptions options;
+    private final TransportMetrics metrics = new TransportMetrics();
+    private final Map<String, HostPool> pools = new ConcurrentHashMap<>();
+    private final BufferPool bufferPool = new BufferPool();
+
+    public HttpClientTransport(TransportOptions options) {
+        this.options = options;
+        this.client = HttpClient.newBuilder()
+                .version(options.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(options.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    @Override
+    public GraphApiResponse send(GraphRequest request) throws Exception {
+        try {
+            return sendAsync(request).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<GraphApiResponse> sendAsync(GraphRequest request) {
+        // 본문은 풀 버퍼에 한 번만 복사하고, 문자열 디코딩은 필요할 때 한다
+        return exchange(request, info -> ResponseBody.subscriber(bufferPool,
+                info.headers().firstValueAsLong("Content-Length").orElse(-1)), (response, release) -> {
+            release.run();
+            return GraphApiResponse.withBody(response.statusCode(), response.headers().map(), response.body());
+        });
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    @Override
+    public CompletableFuture<GraphStreamingResponse> sendStreamingAsync(GraphRequest request) {
+        // 본문을 다 읽고 close() 할 때까지 연결 슬롯을 잡고 있는다
+        return exchange(request, HttpResponse.BodyHandlers.ofInputStream(), (response, release) ->
+                new GraphStreamingResponse(response.statusCode(), response.headers().map(), response.body(), release));
+    }
+
+    /**
+     * Send once the host has a free slot. {@code mapper} receives the response
+     * and the action that frees the slot again; it must run it exactly when the
+     * body is no longer being read.
+     */
+    private <B, R> CompletableFuture<R> exchange(GraphRequest request, HttpResponse.BodyHandler<B> handler,
+            BiFunction<HttpResponse<B>, Runnable, R> mapper) {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = toHttpRequest(request);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        String host = httpRequest.uri().getHost();
+        HostPool pool = pools.computeIfAbsent(host, h -> new HostPool(h, options.getMaxConnectionsPerHost()));
+
+        GraphEvents.HttpExchange event = new GraphEvents.HttpExchange();
+        event.begin();
+        CompletableFuture<R> result = new CompletableFuture<>();
+        pool.submit(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean released = new AtomicBoolean();
+            Runnable release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    pool.release();
+                }
+            };
+
+            try {
+                client.sendAsync(httpRequest, handler)
+                        .whenComplete((response, error) -> {
+                            metrics.recordCompleted(System.nanoTime() - start, error != null);
+                            record(event, httpRequest, response != null ? response.statusCode() : -1, error);
+                            if (error != null) {
+                                release.run();
+                                result.completeExceptionally(error);
+                                return;
+                            }
+                            try {
+                                result.complete(mapper.apply(response, release));
+                            } catch (RuntimeException e) {
+                                release.run();
+                                result.completeExceptionally(e);
+                            }
+                        });
+            } catch (RuntimeException e) {
+                release.run();
+                metrics.recordCompleted(System.nanoTime() - start, true);
+                record(event, httpRequest, -1, e);
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private static void record(GraphEvents.HttpExchange event, HttpRequest request, int status, Throwable error) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.method = request.method();
+            event.host = request.uri().getHost();
+            event.path = request.uri().getRawPath(); // 쿼리에는 skiptoken 등이 있어 제외
+            event.status = status;
+            event.error = error != null ? error.toString() : null;
+            event.commit();
+        }
+    }
+
+    @Override
+    public TransportMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void close() {
+        // 진행 중인 요청이 끝나길 기다린 뒤 연결과 selector 스레드를 정리한다
+        pools.clear();
+        client.close();
+    }
+
+    private HttpRequest toHttpRequest(GraphRequest request) {
+        HttpRequest.BodyPublisher body = request.getBody() == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(request.getBody());
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(request.getUrl()))
+                .timeout(options.getReadTimeout())
+                .method(request.getMethod(), body);
+        request.getHeaders().forEach(builder::header);
+        return builder.build();
+    }
+
+    /**
+     * Caps the number of concurrent requests to one host without blocking
+     * the submitting thread.
+     */
+    private class HostPool {
+        private final int maxConcurrent;
+        private final AtomicInteger active;
+        private final AtomicInteger queued;
+        private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+        HostPool(String host, int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+            this.active = metrics.active(host);
+            this.queued = metrics.queued(host);
+        }
+
+        void submit(Runnable start) {
+            queued.incrementAndGet();
+            waiting.add(start);
+            drain();
+        }
+
+        void release() {
+            active.decrementAndGet();
+            drain();
+        }
+
+        private void drain() {
+            while (!waiting.isEmpty()) {
+                int current = active.get();
+                if (current >= maxConcurrent) {
+                    return;
+                }
+                if (!active.compareAndSet(current, current + 1)) {
+                    continue;
+                }
+
+                Runnable next = waiting.poll();
+                if (next == null) {
+                    active.decrementAndGet();
+                    continue;
+                }
+                queued.decrementAndGet();
+                next.run();
+            }
+        }
+    }
+}
@@ -1,24 +1,23 @@
 package com.example.spring101.graphapi;
 
 import java.util.Map;
-import java.util.Optional;
+import java.util.TreeMap;
 
 public class HttpResponseWrapper {
     private final Map<String, String> headers;
 
     public HttpResponseWrapper(Map<String, String> headers) {
-        this.headers = headers;
+        // HTTP/2 는 헤더 이름을 소문자로 보내므로 대소문자 구분 없이 조회
+        this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        this.headers.putAll(headers);
     }
 
     public int getHeaderAsInt(String headerName, int defaultValue) {
-        return Optional.ofNullable(headers.get(headerName))
-                .map(value -> {
-                    try {
-                        return Integer.parseInt(value);
-                    } catch (NumberFormatException e) {
-                        return defaultValue;
-                    }
-                })
-                .orElse(defaultValue);
+        int value = RateLimitSnapshot.parseInt(headers.get(headerName));
+        return value < 0 ? defaultValue : value;
+    }
+
+    public RateLimitSnapshot toRateLimitSnapshot() {
+        return RateLimitSnapshot.ofSingleValued(-1, headers);
     }
 }
@@ -0,0 +1,264 @@
+package com.example.spring101.graphapi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of a long sweep, so a restarted job skips work that
+ * already succeeded instead of spending quota on it again.
+ *
+ * It records finished work items by id and named checkpoint cursors, e.g. the
+ * next page link of a crawl or the last batch sent; the last value per cursor
+ * wins. Records are buffered and written and forced to disk together, every
+ * {@code syncEvery} records or {@code syncInterval}, and on {@link #sync()}
+ * and {@link #close()}. A job that ends with an exception loses nothing as
+ * long as the journal is closed; a killed process or machine redoes at most
+ * one batch of items. On open the file is replayed and a torn record at the
+ * end is cut off, as in {@link DeltaTokenStore}.
+ *
+ * Record layout: {@code int length, int crc32, byte[] payload} where the
+ * payload is {@code byte type, short keyLength, key, value} in UTF-8. An empty
+ * checkpoint value removes the cursor.
+ */
+public class JobJournal implements Closeable {
+
+    public static final Logger logger = Logger.getLogger(JobJournal.class.getName());
+
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+    private static final byte DONE = 1;
+    private static final byte CHECKPOINT = 2;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int syncEvery;
+    private final long syncIntervalNanos;
+
+    private final Set<String> done = ConcurrentHashMap.newKeySet();
+    private final Map<String, String> checkpoints = new ConcurrentHashMap<>();
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024); // 아직 파일에 쓰지 않은 레코드
+    private int pending;
+    private long lastSync = System.nanoTime();
+
+    public JobJournal(Path file) throws IOException {
+        this(file, 256, Duration.ofSeconds(1));
+    }
+
+    /**
+     * @param syncEvery    records written per fsync at most
+     * @param syncInterval longest a record waits for its fsync while the job
+     *                     keeps writing
+     */
+    public JobJournal(Path file, int syncEvery, Duration syncInterval) throws IOException {
+        this.file = file;
+        this.syncEvery = Math.max(1, syncEvery);
+        this.syncIntervalNanos = syncInterval.toNanos();
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        replay();
+    }
+
+    public boolean isDone(String itemId) {
+        return done.contains(itemId);
+    }
+
+    /**
+     * Record that {@code itemId} succeeded; recording it again is a no-op.
+     */
+    public void markDone(String itemId) throws IOException {
+        if (done.add(itemId)) {
+            append(DONE, itemId, "");
+        }
+    }
+
+    public int getDoneCount() {
+        return done.size();
+    }
+
+    public Optional<String> getCheckpoint(String cursor) {
+        return Optional.ofNullable(checkpoints.get(cursor));
+    }
+
+    /**
+     * Move {@code cursor} to {@code value}, e.g. the next page link to fetch.
+     */
+    public synchronized void checkpoint(String cursor, String value) throws IOException {
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Checkpoint value must not be empty");
+        }
+        checkpoints.put(cursor, value);
+        append(CHECKPOINT, cursor, value);
+    }
+
+    public synchronized void clearCheckpoint(String cursor) throws IOException {
+        if (checkpoints.remove(cursor) != null) {
+            append(CHECKPOINT, cursor, "");
+        }
+    }
+
+    /**
+     * Write buffered records and force them to disk.
+     */
+    public synchronized void sync() throws IOException {
+        flushBuffer();
+        channel.force(false);
+        pending = 0;
+        lastSync = System.nanoTime();
+    }
+
+    /**
+     * Forget everything, once the whole job has finished and the next run
+     * should start from the beginning.
+     */
+    public synchronized void reset() throws IOException {
+        buffer.clear();
+        done.clear();
+        checkpoints.clear();
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(false);
+        pending = 0;
+    }
+
+    public synchronized long getFileSize() throws IOException {
+        return channel.size() + buffer.position();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private synchronized void append(byte type, String key, String value) throws IOException {
+        ByteBuffer record = encode(type, key, value);
+        if (record.remaining() > buffer.remaining()) {
+            flushBuffer();
+        }
+        if (record.remaining() > buffer.remaining()) {
+            write(record);
+        } else {
+            buffer.put(record);
+        }
+
+        // 레코드마다 fsync 하지 않고 모아서 한 번에
+        if (++pending >= syncEvery || System.nanoTime() - lastSync >= syncIntervalNanos) {
+            sync();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private void replay() throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        long position = 0;
+
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            int crc = header.getInt();
+            if (length < 3 || length > MAX_RECORD_BYTES || position + HEADER_BYTES + length > size) {
+                break;
+            }
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + HEADER_BYTES);
+            if (crc != checksum(payload.array(), length)) {
+                break;
+            }
+
+            payload.flip();
+            byte type = payload.get();
+            int keyLength = payload.getShort() & 0xFFFF;
+            if (keyLength > payload.remaining() || (type != DONE && type != CHECKPOINT)) {
+                break;
+            }
+            String key = new String(payload.array(), 3, keyLength, StandardCharsets.UTF_8);
+            String value = new String(payload.array(), 3 + keyLength, length - 3 - keyLength, StandardCharsets.UTF_8);
+            if (type == DONE) {
+                done.add(key);
+            } else if (value.isEmpty()) {
+                checkpoints.remove(key);
+            } else {
+                checkpoints.put(key, value);
+            }
+            position += HEADER_BYTES + length;
+        }
+
+        if (position < size) {
+            // 마지막 레코드가 쓰다 만 상태: 잘라내고 이어서 기록
+            logger.warning(String.format("Truncating %d bytes of incomplete records in %s", size - position, file));
+            channel.truncate(position);
+        }
+        channel.position(position);
+        if (!done.isEmpty() || !checkpoints.isEmpty()) {
+            logger.info(String.format("Resuming from %s: %d items done, %d checkpoints",
+                    file, done.size(), checkpoints.size()));
+        }
+    }
+
+    private void readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position + target.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of " + file);
+            }
+        }
+    }
+
+    private static ByteBuffer encode(byte type, String key, String value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > 0xFFFF || HEADER_BYTES + 3 + keyBytes.length + valueBytes.length > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("Journal record too large for " + key);
+        }
+        int length = 3 + keyBytes.length + valueBytes.length;
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        payload.put(type).putShort((short) keyBytes.length).put(keyBytes).put(valueBytes);
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + length);
+        record.putInt(length).putInt(checksum(payload.array(), length)).put(payload.array());
+        record.flip();
+        return record;
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.spring101.graphapi;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-bucket latency histogram. Recording is a single atomic increment, and
+ * memory use does not grow with the number of samples.
+ */
+public class LatencyHistogram {
+
+    // 버킷 상한 (ms). 마지막 버킷은 그 이상 전부
+    private static final long[] BOUNDS_MILLIS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000, 2_000, 5_000, 10_000, 30_000, 60_000 };
+
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS_MILLIS.length + 1);
+    private final AtomicLong maxMillis = new AtomicLong(-1);
+
+    public void record(long latencyNanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+        int bucket = 0;
+        while (bucket < BOUNDS_MILLIS.length && millis > BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+        if (bucket == BOUNDS_MILLIS.length) {
+            maxMillis.accumulateAndGet(millis, Math::max);
+        }
+    }
+
+    /**
+     * Upper bound (ms) of the last bucket; slower samples all share one bucket.
+     */
+    public static long getLastBoundMillis() {
+        return BOUNDS_MILLIS[BOUNDS_MILLIS.length - 1];
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Upper bound (ms) of the bucket holding the given percentile, or -1 when
+     * empty; a percentile above the last bound reports the slowest sample.
+     */
+    public long getPercentileMillis(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return i < BOUNDS_MILLIS.length ? BOUNDS_MILLIS[i] : overflowMillis();
+            }
+        }
+        return overflowMillis();
+    }
+
+    private long overflowMillis() {
+        // 기록과 조회가 겹쳐 최댓값이 아직 없으면 마지막 상한으로 답한다
+        return Math.max(maxMillis.get(), getLastBoundMillis());
+    }
+}
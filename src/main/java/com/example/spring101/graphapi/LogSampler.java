@@ -0,0 +1,40 @@
+package com.example.spring101.graphapi;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lets at most one message through per interval. The message is only built
+ * when it is actually logged; dropped messages are counted and reported with
+ * the next one.
+ */
+public class LogSampler {
+
+    private final Logger logger;
+    private final long intervalNanos;
+    private final AtomicLong nextAt = new AtomicLong(System.nanoTime());
+    private final LongAdder suppressed = new LongAdder();
+
+    public LogSampler(Logger logger, Duration interval) {
+        this.logger = logger;
+        this.intervalNanos = interval.toNanos();
+    }
+
+    public void log(Level level, Supplier<String> message) {
+        if (!logger.isLoggable(level)) {
+            return;
+        }
+        long now = System.nanoTime();
+        long due = nextAt.get();
+        if (now - due < 0 || !nextAt.compareAndSet(due, now + intervalNanos)) {
+            suppressed.increment();
+            return;
+        }
+        long dropped = suppressed.sumThenReset();
+        logger.log(level, dropped == 0 ? message.get() : message.get() + " (" + dropped + " more suppressed)");
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.spring101.graphapi;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Hands out {@link RateLimiter} tokens by {@link RequestPriority}.
+ *
+ * Each class keeps back its headroom on top of the limiter's reserve, so as
+ * the remaining quota shrinks LOW stops first, then NORMAL, while HIGH can use
+ * everything down to the limiter's reserve. Requests that cannot go right away
+ * are queued per class and released by weighted fair queuing: each gets a
+ * virtual finish tag of {@code 1 / weight} after its class's previous one, and
+ * the smallest tag among the classes that may proceed goes first.
+ */
+public class PriorityScheduler {
+
+    public static final Logger logger = Logger.getLogger(PriorityScheduler.class.getName());
+
+    private final RateLimiter rateLimiter;
+    private final Map<RequestPriority, ArrayDeque<Waiter>> queues = new EnumMap<>(RequestPriority.class);
+    private final Map<RequestPriority, Double> lastFinish = new EnumMap<>(RequestPriority.class);
+    private double virtualTime;
+    private long wakeAt = Long.MAX_VALUE; // 예약된 재시도 시각 (epoch millis)
+
+    public PriorityScheduler(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        for (RequestPriority priority : RequestPriority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+            lastFinish.put(priority, 0.0);
+        }
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Percentage of the limit that {@code priority} leaves untouched.
+     */
+    public int getCapacityLeft(RequestPriority priority) {
+        return Math.min(100, rateLimiter.getMinimumCapacityLeft() + priority.getHeadroom());
+    }
+
+    /**
+     * Future that completes once a token has been taken for {@code apiType}.
+     */
+    public CompletableFuture<Void> acquireAsync(String apiType, RequestPriority priority) {
+        List<Waiter> ready;
+        Waiter waiter;
+        synchronized (this) {
+            if (isIdle() && rateLimiter.acquire(apiType, getCapacityLeft(priority)) == 0) {
+                return CompletableFuture.completedFuture(null);
+            }
+            double finish = Math.max(virtualTime, lastFinish.get(priority)) + 1.0 / priority.getWeight();
+            lastFinish.put(priority, finish);
+            waiter = new Waiter(apiType, priority, finish);
+            queues.get(priority).add(waiter);
+            ready = dispatch();
+        }
+        complete(ready);
+        return waiter.future;
+    }
+
+    /**
+     * Blocking variant of {@link #acquireAsync(String, RequestPriority)}.
+     */
+    public void waitIfNeeded(String apiType, RequestPriority priority) throws InterruptedException {
+        CompletableFuture<Void> granted = acquireAsync(apiType, priority);
+        try {
+            granted.get();
+        } catch (InterruptedException e) {
+            granted.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    public synchronized int getQueued(RequestPriority priority) {
+        return queues.get(priority).size();
+    }
+
+    private boolean isIdle() {
+        for (ArrayDeque<Waiter> queue : queues.values()) {
+            if (!queue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Release queued requests in tag order while the limiter grants tokens. A
+     * class whose head is refused is skipped for the rest of the round, which
+     * lets higher classes pass a lower class that has hit its headroom.
+     */
+    private List<Waiter> dispatch() {
+        List<Waiter> ready = new ArrayList<>();
+        Map<RequestPriority, Boolean> blocked = new EnumMap<>(RequestPriority.class);
+        long retryMillis = Long.MAX_VALUE;
+
+        while (true) {
+            RequestPriority next = null;
+            Waiter head = null;
+            for (Map.Entry<RequestPriority, ArrayDeque<Waiter>> entry : queues.entrySet()) {
+                ArrayDeque<Waiter> queue = entry.getValue();
+                while (!queue.isEmpty() && queue.peek().future.isDone()) {
+                    queue.poll(); // 호출자가 취소함
+                }
+                Waiter candidate = queue.peek();
+                if (candidate != null && !blocked.containsKey(entry.getKey())
+                        && (head == null || candidate.finish < head.finish)) {
+                    next = entry.getKey();
+                    head = candidate;
+                }
+            }
+            if (head == null) {
+                break;
+            }
+
+            long delayMillis = rateLimiter.acquire(head.apiType, getCapacityLeft(next));
+            if (delayMillis == 0) {
+                queues.get(next).poll();
+                virtualTime = Math.max(virtualTime, head.finish);
+                ready.add(head);
+            } else {
+                blocked.put(next, true);
+                retryMillis = Math.min(retryMillis, delayMillis);
+            }
+        }
+
+        if (retryMillis != Long.MAX_VALUE) {
+            scheduleRetry(retryMillis);
+        }
+        return ready;
+    }
+
+    private void scheduleRetry(long delayMillis) {
+        long at = System.currentTimeMillis() + delayMillis;
+        if (at >= wakeAt) {
+            return; // 더 이른 재시도가 이미 예약됨
+        }
+        wakeAt = at;
+        logger.fine(() -> String.format("Holding %d queued requests for %d ms", queuedTotal(), delayMillis));
+        CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS).execute(() -> retry(at));
+    }
+
+    private void retry(long at) {
+        List<Waiter> ready;
+        synchronized (this) {
+            if (at == wakeAt) {
+                wakeAt = Long.MAX_VALUE;
+            }
+            ready = dispatch();
+        }
+        complete(ready);
+    }
+
+    private int queuedTotal() {
+        int total = 0;
+        for (ArrayDeque<Waiter> queue : queues.values()) {
+            total += queue.size();
+        }
+        return total;
+    }
+
+    /**
+     * Completed outside the lock: dependent stages run on this thread.
+     */
+    private void complete(List<Waiter> ready) {
+        for (Waiter waiter : ready) {
+            rateLimiter.recordWait(waiter.event, waiter.apiType, waiter.priority);
+            if (!waiter.future.complete(null)) {
+                logger.fine("Token granted to a cancelled request");
+            }
+        }
+    }
+
+    private static final class Waiter {
+        final String apiType;
+        final RequestPriority priority;
+        final double finish;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        final GraphEvents.LimiterWait event = new GraphEvents.LimiterWait();
+
+        Waiter(String apiType, RequestPriority priority, double finish) {
+            this.apiType = apiType;
+            this.priority = priority;
+            this.finish = finish;
+            event.begin();
+        }
+    }
+}
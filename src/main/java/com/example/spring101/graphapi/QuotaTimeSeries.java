@@ -0,0 +1,83 @@
+package com.example.spring101.graphapi;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ring buffer of the last {@code capacity} RateLimit-Remaining observations.
+ *
+ * Each sample packs the epoch second and the remaining count into one long,
+ * so writers never lock and readers never see half a sample.
+ */
+public class QuotaTimeSeries {
+
+    private final AtomicLongArray samples;
+    private final AtomicLong writes = new AtomicLong();
+    private volatile int limit = -1;
+
+    public QuotaTimeSeries(int capacity) {
+        this.samples = new AtomicLongArray(capacity);
+    }
+
+    public void record(long epochSecond, int remaining, int limit) {
+        this.limit = limit;
+        long index = writes.getAndIncrement();
+        samples.set((int) (index % samples.length()), (epochSecond << 32) | (remaining & 0xffffffffL));
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getLatestRemaining() {
+        long count = writes.get();
+        if (count == 0) {
+            return -1;
+        }
+        return (int) samples.get((int) ((count - 1) % samples.length()));
+    }
+
+    /**
+     * Quota consumed per second over the buffered window, ignoring resets.
+     */
+    public double getBurnRatePerSecond() {
+        List<long[]> points = snapshot();
+        if (points.size() < 2) {
+            return 0;
+        }
+
+        long consumed = 0;
+        for (int i = 1; i < points.size(); i++) {
+            long drop = points.get(i - 1)[1] - points.get(i)[1];
+            if (drop > 0) {
+                consumed += drop; // 값이 오르면 윈도우가 리셋된 것
+            }
+        }
+        long seconds = points.get(points.size() - 1)[0] - points.get(0)[0];
+        return seconds <= 0 ? consumed : consumed / (double) seconds;
+    }
+
+    /**
+     * Buffered samples oldest first, as {epochSecond, remaining} pairs.
+     */
+    public List<long[]> snapshot() {
+        long count = writes.get();
+        int size = (int) Math.min(count, samples.length());
+        List<long[]> points = new ArrayList<>(size);
+        for (long i = count - size; i < count; i++) {
+            long packed = samples.get((int) (i % samples.length()));
+            points.add(new long[] { packed >>> 32, (int) packed });
+        }
+        return points;
+    }
+
+    public Map<Long, Integer> toMap() {
+        Map<Long, Integer> series = new LinkedHashMap<>();
+        snapshot().forEach(point -> series.put(point[0], (int) point[1]));
+        return series;
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.spring101.graphapi;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Throttling-related values of one response, parsed once.
+ *
+ * Header names are matched case-insensitively (HTTP/2 sends them in lower
+ * case). Numeric values that are absent or not numbers are -1.
+ */
+public final class RateLimitSnapshot {
+
+    public static final RateLimitSnapshot NONE = new RateLimitSnapshot(-1, -1, -1, -1, -1, -1f, null, null);
+
+    private final int statusCode;
+    private final int retryAfterSeconds;
+    private final int limit;
+    private final int remaining;
+    private final int resetSeconds;
+    private final float throttleLimitPercentage;
+    private final String throttleScope;
+    private final String throttleInformation;
+
+    private RateLimitSnapshot(int statusCode, int retryAfterSeconds, int limit, int remaining, int resetSeconds,
+            float throttleLimitPercentage, String throttleScope, String throttleInformation) {
+        this.statusCode = statusCode;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.limit = limit;
+        this.remaining = remaining;
+        this.resetSeconds = resetSeconds;
+        this.throttleLimitPercentage = throttleLimitPercentage;
+        this.throttleScope = throttleScope;
+        this.throttleInformation = throttleInformation;
+    }
+
+    /**
+     * Snapshot of a top-level HTTP response.
+     */
+    public static RateLimitSnapshot of(int statusCode, Map<String, List<String>> headers) {
+        Parser parser = new Parser();
+        if (headers != null) {
+            headers.forEach((name, values) -> {
+                if (name != null && values != null && !values.isEmpty()) {
+                    parser.accept(name, values.get(0));
+                }
+            });
+        }
+        return parser.build(statusCode);
+    }
+
+    /**
+     * Snapshot of a {@code $batch} sub-response, whose headers are single-valued.
+     */
+    public static RateLimitSnapshot ofSingleValued(int statusCode, Map<String, String> headers) {
+        Parser parser = new Parser();
+        if (headers != null) {
+            headers.forEach(parser::accept);
+        }
+        return parser.build(statusCode);
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getRemaining() {
+        return remaining;
+    }
+
+    public int getResetSeconds() {
+        return resetSeconds;
+    }
+
+    /**
+     * Share of the limit in use as reported by {@code x-ms-throttle-limit-percentage}
+     * (0.8 to 1.8), or -1.
+     */
+    public float getThrottleLimitPercentage() {
+        return throttleLimitPercentage;
+    }
+
+    public String getThrottleScope() {
+        return throttleScope;
+    }
+
+    public String getThrottleInformation() {
+        return throttleInformation;
+    }
+
+    public boolean hasRateLimit() {
+        return limit > 0 && remaining >= 0;
+    }
+
+    public boolean isThrottled() {
+        return statusCode == 429 || (statusCode == 503 && retryAfterSeconds > 0);
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitSnapshot[status=" + statusCode + ", retryAfter=" + retryAfterSeconds + ", limit=" + limit
+                + ", remaining=" + remaining + ", reset=" + resetSeconds + "]";
+    }
+
+    private static final class Parser {
+        int retryAfter = -1;
+        int limit = -1;
+        int remaining = -1;
+        int reset = -1;
+        float throttleLimitPercentage = -1f;
+        String throttleScope;
+        String throttleInformation;
+
+        void accept(String name, String value) {
+            // 대부분의 헤더는 길이만으로 걸러진다
+            switch (name.length()) {
+                case 11 -> {
+                    if (name.equalsIgnoreCase("Retry-After")) {
+                        retryAfter = parseInt(value);
+                    }
+                }
+                case 15 -> {
+                    if (name.equalsIgnoreCase("RateLimit-Limit")) {
+                        limit = parseInt(value);
+                    } else if (name.equalsIgnoreCase("RateLimit-Reset")) {
+                        reset = parseInt(value);
+                    }
+                }
+                case 19 -> {
+                    if (name.equalsIgnoreCase("RateLimit-Remaining")) {
+                        remaining = parseInt(value);
+                    } else if (name.equalsIgnoreCase("x-ms-throttle-scope")) {
+                        throttleScope = value;
+                    }
+                }
+                case 25 -> {
+                    if (name.equalsIgnoreCase("x-ms-throttle-information")) {
+                        throttleInformation = value;
+                    }
+                }
+                case 30 -> {
+                    if (name.equalsIgnoreCase("x-ms-throttle-limit-percentage")) {
+                        throttleLimitPercentage = parseFloat(value);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        RateLimitSnapshot build(int statusCode) {
+            return new RateLimitSnapshot(statusCode, retryAfter, limit, remaining, reset, throttleLimitPercentage,
+                    throttleScope, throttleInformation);
+        }
+    }
+
+    /**
+     * Parse a non-negative integer without throwing; -1 if the value is not one.
+     */
+    static int parseInt(String value) {
+        if (value == null) {
+            return -1;
+        }
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (start == end || end - start > 9) {
+            return -1;
+        }
+
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1; // Retry-After 가 HTTP 날짜 형식인 경우 등
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static float parseFloat(String value) {
+        try {
+            return Float.parseFloat(value.trim());
+        } catch (NumberFormatException e) {
+            return -1f;
+        }
+    }
+}
@@ -2,92 +2,307 @@ package com.example.spring101.graphapi;
 
 
 
-import java.time.Instant;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.springframework.stereotype.Component;
 
 
+/**
+ * Token bucket per API type, seeded from the {@code RateLimit-*} response headers.
+ *
+ * Every request takes one token. Once only {@code minimumCapacityLeft} percent
+ * of the limit is left, callers are told to wait until the window resets.
+ * All state changes are compare-and-set, so callers never block each other.
+ * With a {@link SharedQuotaLedger} the buckets live in a file shared by every
+ * process on the host instead, so they pace against one budget.
+ */
 @Component
 public class RateLimiter {
 
     public static final Logger logger = Logger.getLogger(RateLimiter.class.getName());
 
-    private static final String RATELIMIT_LIMIT = "RateLimit-Limit";
-    private static final String RATELIMIT_REMAINING = "RateLimit-Remaining";
-    private static final String RATELIMIT_RESET = "RateLimit-Reset";
+    // 창 길이를 알기 전에 쓰는 값, Graph 의 스로틀링 창은 대부분 1분 단위
+    private static final long DEFAULT_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long UNKNOWN_RESET_BACKOFF_MILLIS = 1000;
 
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, AtomicReference<Bucket>> buckets = new ConcurrentHashMap<>();
+    private final LogSampler delayLog = new LogSampler(logger, Duration.ofSeconds(1));
 
-    private final AtomicInteger limit = new AtomicInteger(-1);
-    private final AtomicInteger reset = new AtomicInteger(-1);
-    private final AtomicInteger remaining = new AtomicInteger(-1);
-    private final AtomicLong nextReset = new AtomicLong(Instant.now().toEpochMilli());
-
-    private int minimumCapacityLeft = 10; // default 10%
+    private volatile int minimumCapacityLeft = 10; // default 10%
+    private volatile SharedQuotaLedger sharedLedger;
+    private volatile LongSupplier clock = System::currentTimeMillis;
 
     public void setMinimumCapacityLeft(int value) {
         this.minimumCapacityLeft = value;
     }
 
-    public void waitIfNeeded(String apiType) throws InterruptedException {
+    /**
+     * Pace against quota shared with other processes, or {@code null} to keep
+     * the buckets in this process only.
+     */
+    public void setSharedLedger(SharedQuotaLedger sharedLedger) {
+        this.sharedLedger = sharedLedger;
+    }
+
+    public SharedQuotaLedger getSharedLedger() {
+        return sharedLedger;
+    }
+
+    public int getMinimumCapacityLeft() {
+        return minimumCapacityLeft;
+    }
+
+    /**
+     * Epoch milliseconds the buckets are refilled by; tests replace it.
+     */
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Take a token for one request without blocking.
+     *
+     * @return 0 if the request may be sent now, otherwise the number of
+     *         milliseconds until the window resets; no token was taken then
+     */
+    public long acquire(String apiType) {
+        return acquire(apiType, minimumCapacityLeft);
+    }
+
+    /**
+     * Like {@link #acquire(String)}, but keeps {@code capacityLeft} percent of
+     * the limit back instead of {@code minimumCapacityLeft}, so callers of
+     * lower importance can stop earlier. Setting {@code minimumCapacityLeft}
+     * to 0 still turns limiting off.
+     */
+    public long acquire(String apiType, int capacityLeft) {
         if (minimumCapacityLeft == 0) {
-            return;
+            return 0;
         }
 
-        long delayMillis = 0;
-        float capacityLeft = 0f;
+        SharedQuotaLedger ledger = sharedLedger;
+        if (ledger != null) {
+            return ledger.acquire(apiType, capacityLeft);
+        }
+
+        AtomicReference<Bucket> ref = bucket(apiType);
+        while (true) {
+            Bucket current = ref.get();
+            long now = clock.getAsLong();
+            Bucket bucket = current.refill(now);
 
-        lock.readLock().lock();
-        try {
-            if (limit.get() > 0 && remaining.get() > 0) {
-                capacityLeft = Math.round(((float) remaining.get() / limit.get()) * 10000) / 100f;
+            if (bucket.limit <= 0) {
+                return 0; // 아직 헤더를 받은 적이 없으면 제한하지 않는다
+            }
 
-                if (capacityLeft <= minimumCapacityLeft) {
-                    delayMillis = nextReset.get() - Instant.now().toEpochMilli();
+            if (bucket.remaining > reserve(bucket.limit, capacityLeft)) {
+                if (ref.compareAndSet(current, bucket.take())) {
+                    return 0;
                 }
+                continue;
             }
-        } finally {
-            lock.readLock().unlock();
+
+            if (bucket != current) {
+                ref.compareAndSet(current, bucket);
+            }
+            // 리셋 시각을 모르면 0 대신 짧게 물러나 다음 응답 헤더를 기다린다
+            return bucket.resetAt > now ? bucket.resetAt - now : UNKNOWN_RESET_BACKOFF_MILLIS;
+        }
+    }
+
+    /**
+     * Future that completes once a token has been taken for {@code apiType}.
+     */
+    public CompletableFuture<Void> acquireAsync(String apiType) {
+        long delayMillis = acquire(apiType);
+        if (delayMillis == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        GraphEvents.LimiterWait event = new GraphEvents.LimiterWait();
+        event.begin();
+        return acquireAfter(apiType, delayMillis).thenRun(() -> recordWait(event, apiType, null));
+    }
+
+    private CompletableFuture<Void> acquireAfter(String apiType, long delayMillis) {
+        logDelay(apiType, delayMillis);
+        return CompletableFuture.runAsync(() -> {
+        }, CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS))
+                .thenCompose(v -> {
+                    long next = acquire(apiType);
+                    return next == 0 ? CompletableFuture.completedFuture(null) : acquireAfter(apiType, next);
+                });
+    }
+
+    /**
+     * Blocking variant of {@link #acquireAsync(String)}.
+     */
+    public void waitIfNeeded(String apiType) throws InterruptedException {
+        long delayMillis = acquire(apiType);
+        if (delayMillis == 0) {
+            return;
         }
 
-        if (delayMillis > 0) {
-            logger.warning(String.format("Delaying %s request for %d seconds, capacity left: %.2f%%", apiType, delayMillis / 1000, capacityLeft));
+        GraphEvents.LimiterWait event = new GraphEvents.LimiterWait();
+        event.begin();
+        while (delayMillis > 0) {
+            logDelay(apiType, delayMillis);
             TimeUnit.MILLISECONDS.sleep(delayMillis);
+            delayMillis = acquire(apiType);
         }
+        recordWait(event, apiType, null);
+    }
+
+    /**
+     * End a {@link GraphEvents.LimiterWait} started when the request was held back.
+     */
+    void recordWait(GraphEvents.LimiterWait event, String apiType, RequestPriority priority) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.apiType = apiType;
+            event.priority = priority != null ? priority.name() : null;
+            event.capacityLeft = getCapacityLeft(apiType);
+            event.commit();
+        }
+    }
+
+    /**
+     * Percentage of the limit still available for {@code apiType}, or 100 when
+     * no limit has been reported yet.
+     */
+    public float getCapacityLeft(String apiType) {
+        SharedQuotaLedger ledger = sharedLedger;
+        if (ledger != null) {
+            return ledger.getCapacityLeft(apiType);
+        }
+        Bucket bucket = bucket(apiType).get().refill(clock.getAsLong());
+        if (bucket.limit <= 0) {
+            return 100f;
+        }
+        return Math.round(((float) bucket.remaining / bucket.limit) * 10000) / 100f;
     }
 
     public void updateWindow(HttpResponseWrapper response, String apiType) {
+        if (response != null) {
+            updateWindow(response.toRateLimitSnapshot(), apiType);
+        }
+    }
+
+    public void updateWindow(RateLimitSnapshot snapshot, String apiType) {
+        if (snapshot != null && snapshot.isThrottled()) {
+            GraphEvents.throttled(apiType, snapshot);
+        }
         if (minimumCapacityLeft == 0) {
             return;
         }
 
-        if (response != null) {
-            int rateLimit = response.getHeaderAsInt(RATELIMIT_LIMIT, -1);
-            int rateRemaining = response.getHeaderAsInt(RATELIMIT_REMAINING, -1);
-            int rateReset = response.getHeaderAsInt(RATELIMIT_RESET, -1);
-
-            lock.writeLock().lock();
-            try {
-                limit.set(rateLimit);
-                remaining.set(rateRemaining);
-                reset.set(rateReset);
-
-                if (rateReset > -1) {
-                    nextReset.set(Instant.now().toEpochMilli() + TimeUnit.SECONDS.toMillis(rateReset));
-                }
-            } finally {
-                lock.writeLock().unlock();
+        if (snapshot != null) {
+            int rateLimit = snapshot.getLimit();
+            int rateRemaining = snapshot.getRemaining();
+            int rateReset = snapshot.getResetSeconds();
+
+            if (!snapshot.hasRateLimit()) {
+                return;
+            }
+
+            SharedQuotaLedger ledger = sharedLedger;
+            if (ledger != null) {
+                ledger.update(apiType, rateLimit, rateRemaining, rateReset);
+            } else {
+                AtomicReference<Bucket> ref = bucket(apiType);
+                long now = clock.getAsLong();
+                long resetAt = rateReset > -1 ? now + TimeUnit.SECONDS.toMillis(rateReset) : -1;
+                Bucket current;
+                Bucket next;
+                do {
+                    current = ref.get();
+                    next = current.merge(rateLimit, rateRemaining, resetAt, now);
+                } while (!ref.compareAndSet(current, next));
             }
 
+            // 응답마다 호출되므로 FINE 이 켜져 있을 때만 문자열을 만든다
             if (rateReset > -1) {
-                logger.info(String.format("%s request. RateLimit-Limit: %d, RateLimit-Remaining: %d, RateLimit-Reset: %d",
+                logger.fine(() -> String.format("%s request. RateLimit-Limit: %d, RateLimit-Remaining: %d, RateLimit-Reset: %d",
                         apiType, rateLimit, rateRemaining, rateReset));
             }
         }
     }
+
+    private AtomicReference<Bucket> bucket(String apiType) {
+        return buckets.computeIfAbsent(apiType, key -> new AtomicReference<>(Bucket.UNKNOWN));
+    }
+
+    private static int reserve(int limit, int capacityLeft) {
+        return (int) Math.ceil(limit * capacityLeft / 100.0);
+    }
+
+    private void logDelay(String apiType, long delayMillis) {
+        delayLog.log(Level.WARNING, () -> String.format("Delaying %s request for %d seconds, capacity left: %.2f%%",
+                apiType, delayMillis / 1000, getCapacityLeft(apiType)));
+    }
+
+    /**
+     * Immutable bucket state; replaced as a whole on every change.
+     */
+    private static final class Bucket {
+        static final Bucket UNKNOWN = new Bucket(-1, -1, -1, -1);
+
+        final int limit;
+        final int remaining;
+        final long resetAt; // epoch millis, -1 이면 알 수 없음
+        final long windowMillis; // 창 길이 추정치, -1 이면 알 수 없음
+
+        Bucket(int limit, int remaining, long resetAt, long windowMillis) {
+            this.limit = limit;
+            this.remaining = remaining;
+            this.resetAt = resetAt;
+            this.windowMillis = windowMillis;
+        }
+
+        Bucket take() {
+            return new Bucket(limit, remaining - 1, resetAt, windowMillis);
+        }
+
+        /**
+         * Once the window has reset, a full bucket whose window ends one window
+         * length after the previous one, until the server reports otherwise.
+         */
+        Bucket refill(long now) {
+            if (limit > 0 && resetAt > 0 && now >= resetAt) {
+                long window = windowMillis > 0 ? windowMillis : DEFAULT_WINDOW_MILLIS;
+                long nextResetAt = resetAt + ((now - resetAt) / window + 1) * window;
+                return new Bucket(limit, limit, nextResetAt, windowMillis);
+            }
+            return this;
+        }
+
+        /**
+         * Fold in values reported by the server. Within one window responses can
+         * arrive out of order, so the lower remaining count wins; a later reset
+         * time means a new window and the server value is taken as is.
+         */
+        Bucket merge(int serverLimit, int serverRemaining, long serverResetAt, long now) {
+            Bucket current = refill(now);
+            boolean newWindow = current.limit != serverLimit
+                    || current.resetAt < 0
+                    || (serverResetAt > 0 && serverResetAt > current.resetAt + 1000);
+            if (newWindow) {
+                // 창의 첫 응답이 가장 긴 남은 시간을 보여주므로 창 길이 추정치로 쓴다
+                long window = serverResetAt > now ? Math.max(current.windowMillis, serverResetAt - now)
+                        : current.windowMillis;
+                return new Bucket(serverLimit, serverRemaining, serverResetAt, window);
+            }
+            return new Bucket(serverLimit, Math.min(current.remaining, serverRemaining),
+                    serverResetAt > 0 ? Math.max(current.resetAt, serverResetAt) : current.resetAt,
+                    current.windowMillis);
+        }
+    }
 }
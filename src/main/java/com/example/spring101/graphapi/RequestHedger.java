@@ -0,0 +1,185 @@
+package com.example.spring101.graphapi;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * Hedged reads: when a GET has not answered within the endpoint's latency
+ * percentile, a second attempt is sent and whichever finishes first is used.
+ * The recorded latencies are network time only, so the wait starts once the
+ * rate limiter has let the first attempt through, not while it is queued.
+ *
+ * Only for idempotent requests. Every attempt goes through the rate limiter,
+ * so hedges are paid from the same quota as first attempts, and no hedge is
+ * sent while the endpoint has less than {@code minimumCapacityLeft} percent of
+ * its limit left. Until {@code minimumSamples} latencies have been recorded
+ * for an endpoint, its reads are not hedged. The slower response is released
+ * when it arrives.
+ */
+public class RequestHedger {
+
+    /**
+     * One attempt of a read through the rate limiter.
+     */
+    @FunctionalInterface
+    public interface Attempt {
+        /**
+         * @param admitted to run once the rate limiter lets the attempt through
+         */
+        CompletableFuture<GraphApiResponse> send(Runnable admitted);
+    }
+
+    private final double percentile;
+    private volatile long minimumSamples = 20;
+    private volatile float minimumCapacityLeft = 50;
+    private volatile Duration minimumDelay = Duration.ofMillis(10);
+    private volatile LongFunction<Executor> timer = millis -> CompletableFuture.delayedExecutor(millis,
+            TimeUnit.MILLISECONDS);
+
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+
+    /**
+     * @param percentile latency percentile after which a hedge is sent, e.g. 95
+     */
+    public RequestHedger(double percentile) {
+        if (percentile <= 0 || percentile >= 100) {
+            throw new IllegalArgumentException("Hedge percentile must be between 0 and 100: " + percentile);
+        }
+        this.percentile = percentile;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public long getMinimumSamples() {
+        return minimumSamples;
+    }
+
+    public void setMinimumSamples(long minimumSamples) {
+        this.minimumSamples = minimumSamples;
+    }
+
+    public float getMinimumCapacityLeft() {
+        return minimumCapacityLeft;
+    }
+
+    /**
+     * Percentage of the endpoint's limit that must be left to send a hedge;
+     * default 50.
+     */
+    public void setMinimumCapacityLeft(float minimumCapacityLeft) {
+        this.minimumCapacityLeft = minimumCapacityLeft;
+    }
+
+    public Duration getMinimumDelay() {
+        return minimumDelay;
+    }
+
+    public void setMinimumDelay(Duration minimumDelay) {
+        this.minimumDelay = minimumDelay;
+    }
+
+    /**
+     * Runs hedge checks after the given number of milliseconds; tests replace it.
+     */
+    void setTimer(LongFunction<Executor> timer) {
+        this.timer = timer;
+    }
+
+    /**
+     * Hedges sent.
+     */
+    public long getHedged() {
+        return hedged.sum();
+    }
+
+    /**
+     * Hedges that answered before the first attempt.
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * Hedges not sent because quota was low.
+     */
+    public long getSuppressed() {
+        return suppressed.sum();
+    }
+
+    /**
+     * How long to wait for the first attempt, or -1 to not hedge.
+     */
+    public long hedgeDelayMillis(LatencyHistogram latency) {
+        if (latency == null || latency.getCount() < minimumSamples) {
+            return -1;
+        }
+        long millis = latency.getPercentileMillis(percentile);
+        // 마지막 버킷을 넘는 지연은 헤지해도 의미가 없다
+        return millis > LatencyHistogram.getLastBoundMillis() ? -1 : Math.max(millis, minimumDelay.toMillis());
+    }
+
+    /**
+     * @param attempt sends one attempt through the rate limiter
+     * @param latency latencies seen for the endpoint, {@code null} if none yet
+     */
+    public CompletableFuture<GraphApiResponse> send(Attempt attempt, LatencyHistogram latency, RateLimiter limiter,
+            String apiType) {
+        long delay = hedgeDelayMillis(latency);
+        if (delay < 0) {
+            return attempt.send(() -> {
+            });
+        }
+
+        CompletableFuture<GraphApiResponse> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        // 대기열에서 기다린 시간은 지연 분포에 없으므로 허가받은 뒤부터 잰다
+        LongFunction<Executor> delays = timer;
+        attempt.send(() -> delays.apply(delay).execute(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (limiter.getCapacityLeft(apiType) < minimumCapacityLeft) {
+                suppressed.increment();
+                return;
+            }
+            hedged.increment();
+            pending.incrementAndGet();
+            attempt.send(() -> {
+            }).whenComplete((response, error) -> complete(result, pending, response, error, true));
+        })).whenComplete((response, error) -> complete(result, pending, response, error, false));
+        return result;
+    }
+
+    /**
+     * The first response wins; an error only fails the read once no other
+     * attempt is still running.
+     */
+    private void complete(CompletableFuture<GraphApiResponse> result, AtomicInteger pending,
+            GraphApiResponse response, Throwable error, boolean hedge) {
+        int left = pending.decrementAndGet();
+        if (response != null) {
+            // 호출자가 결과를 받기 전에 집계되도록 완료 전에 센다
+            synchronized (result) {
+                if (result.isDone()) {
+                    response.release();
+                    return;
+                }
+                if (hedge) {
+                    hedgeWins.increment();
+                }
+                result.complete(response);
+            }
+        } else if (left == 0) {
+            result.completeExceptionally(error);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.spring101.graphapi;
+
+import java.util.Locale;
+
+/**
+ * Importance of a Graph call, used by {@link PriorityScheduler}.
+ *
+ * The weight sets the class's share while requests are queued. The headroom is
+ * the percentage of the limit, on top of the rate limiter's own reserve, that
+ * the class leaves for the classes above it.
+ */
+public enum RequestPriority {
+    /** User-facing lookups; only held back by the rate limiter's reserve. */
+    HIGH(8, 0),
+    /** Regular work. */
+    NORMAL(4, 10),
+    /** Background crawls and syncs; the first to yield as quota runs low. */
+    LOW(1, 25);
+
+    private final int weight;
+    private final int headroom;
+
+    RequestPriority(int weight, int headroom) {
+        this.weight = weight;
+        this.headroom = headroom;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public int getHeadroom() {
+        return headroom;
+    }
+
+    public static RequestPriority from(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.spring101.graphapi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Response bytes held in buffers borrowed from a {@link BufferPool}.
+ *
+ * The bytes are copied once from the HTTP client into the pooled buffers and
+ * decoded to a String only if {@link #asString()} is called. Readers such as a
+ * Jackson parser can take them through {@link #newInputStream()} instead.
+ * The body is reference counted: {@link #retain()} adds a holder and the
+ * buffers go back to the pool when the last holder calls {@link #release()};
+ * after that only an already decoded String is still available. When the
+ * length is known up front, a short body, or the short tail of a long one, is
+ * kept in an exactly sized buffer instead of a pooled one.
+ */
+public final class ResponseBody {
+
+    private final BufferPool pool;
+    private final List<ByteBuffer> buffers; // 읽기 모드, 읽을 때는 duplicate() 사용
+    private final int length;
+    private final AtomicInteger references = new AtomicInteger(1);
+    private volatile String text;
+
+    private ResponseBody(BufferPool pool, List<ByteBuffer> buffers, int length) {
+        this.pool = pool;
+        this.buffers = buffers;
+        this.length = length;
+    }
+
+    /**
+     * Body subscriber for {@link java.net.http.HttpClient} that collects the
+     * response into buffers from {@code pool}.
+     */
+    public static HttpResponse.BodySubscriber<ResponseBody> subscriber(BufferPool pool) {
+        return subscriber(pool, -1);
+    }
+
+    /**
+     * @param expectedLength the {@code Content-Length}, or -1 if unknown
+     */
+    public static HttpResponse.BodySubscriber<ResponseBody> subscriber(BufferPool pool, long expectedLength) {
+        return new PooledSubscriber(pool, expectedLength);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * The body decoded as UTF-8; decoded on first use and kept.
+     */
+    public String asString() {
+        String decoded = text;
+        if (decoded != null) {
+            return decoded;
+        }
+        synchronized (this) {
+            if (text == null) {
+                checkNotReleased();
+                text = decode();
+            }
+            return text;
+        }
+    }
+
+    /**
+     * A stream over the bytes; several streams may be open at once.
+     */
+    public InputStream newInputStream() {
+        checkNotReleased();
+        return new BuffersInputStream(buffers);
+    }
+
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        checkNotReleased();
+        for (ByteBuffer buffer : buffers) {
+            ByteBuffer view = buffer.duplicate();
+            while (view.hasRemaining()) {
+                channel.write(view);
+            }
+        }
+    }
+
+    /**
+     * Add a holder; each holder calls {@link #release()} once.
+     *
+     * @throws IllegalStateException if the buffers were already returned
+     */
+    public ResponseBody retain() {
+        while (true) {
+            int count = references.get();
+            if (count == 0) {
+                throw new IllegalStateException("Response body was already released");
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Drop a holder; the last one returns the buffers to the pool. Releasing a
+     * body that is already back in the pool does nothing.
+     */
+    public void release() {
+        while (true) {
+            int count = references.get();
+            if (count == 0) {
+                return;
+            }
+            if (references.compareAndSet(count, count - 1)) {
+                if (count == 1) {
+                    buffers.forEach(pool::release);
+                }
+                return;
+            }
+        }
+    }
+
+    public boolean isReleased() {
+        return references.get() == 0;
+    }
+
+    private void checkNotReleased() {
+        if (isReleased()) {
+            throw new IllegalStateException("Response body was already released");
+        }
+    }
+
+    private String decode() {
+        if (buffers.size() == 1) {
+            ByteBuffer buffer = buffers.get(0);
+            return new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(),
+                    StandardCharsets.UTF_8);
+        }
+        // 버퍼 경계에서 멀티바이트 문자가 잘릴 수 있어 한 번에 디코딩
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        for (ByteBuffer buffer : buffers) {
+            ByteBuffer view = buffer.duplicate();
+            int count = view.remaining();
+            view.get(bytes, offset, count);
+            offset += count;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class BuffersInputStream extends InputStream {
+        private final List<ByteBuffer> buffers;
+        private int index = -1;
+        private ByteBuffer current = ByteBuffer.allocate(0);
+
+        BuffersInputStream(List<ByteBuffer> buffers) {
+            this.buffers = buffers;
+        }
+
+        @Override
+        public int read() {
+            if (!advance()) {
+                return -1;
+            }
+            return current.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int count) {
+            if (count == 0) {
+                return 0;
+            }
+            if (!advance()) {
+                return -1;
+            }
+            int read = Math.min(count, current.remaining());
+            current.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return current.remaining();
+        }
+
+        private boolean advance() {
+            while (!current.hasRemaining()) {
+                if (++index >= buffers.size()) {
+                    return false;
+                }
+                current = buffers.get(index).duplicate();
+            }
+            return true;
+        }
+    }
+
+    private static final class PooledSubscriber implements HttpResponse.BodySubscriber<ResponseBody> {
+        private final BufferPool pool;
+        private final long expectedLength;
+        private final List<ByteBuffer> filled = new ArrayList<>();
+        private final CompletableFuture<ResponseBody> result = new CompletableFuture<>();
+        private ByteBuffer current;
+        private int length;
+        private int written;
+
+        PooledSubscriber(BufferPool pool, long expectedLength) {
+            this.pool = pool;
+            this.expectedLength = expectedLength;
+        }
+
+        @Override
+        public CompletionStage<ResponseBody> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            for (ByteBuffer item : items) {
+                length += item.remaining();
+                while (item.hasRemaining()) {
+                    if (current == null || !current.hasRemaining()) {
+                        current = nextBuffer();
+                        filled.add(current);
+                    }
+                    int count = Math.min(item.remaining(), current.remaining());
+                    current.put(current.position(), item, item.position(), count);
+                    current.position(current.position() + count);
+                    item.position(item.position() + count);
+                    written += count;
+                }
+            }
+        }
+
+        /**
+         * A pooled buffer, or an exactly sized one for the last few bytes of
+         * a body whose length is known, so a short body does not pin a
+         * whole pooled buffer.
+         */
+        private ByteBuffer nextBuffer() {
+            long left = expectedLength - written;
+            if (left > 0 && left <= pool.getBufferSize() / 4) {
+                return ByteBuffer.allocate((int) left);
+            }
+            return pool.acquire();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            filled.forEach(pool::release);
+            result.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            filled.forEach(ByteBuffer::flip);
+            result.complete(new ResponseBody(pool, filled, length));
+        }
+    }
+}
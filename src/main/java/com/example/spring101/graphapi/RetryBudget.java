@@ -0,0 +1,50 @@
+package com.example.spring101.graphapi;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps retries to a fraction of first attempts so that a throttling storm is
+ * not made worse by the client.
+ *
+ * Every first attempt deposits {@code ratio} tokens, every retry withdraws one.
+ * The balance never exceeds {@code maxTokens}.
+ */
+public class RetryBudget {
+
+    private static final long SCALE = 1000; // 소수 단위 토큰을 정수로 저장
+
+    private final long depositPerRequest;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    public RetryBudget(double ratio, int initialTokens, int maxTokens) {
+        this.depositPerRequest = Math.round(ratio * SCALE);
+        this.maxBalance = maxTokens * SCALE;
+        this.balance = new AtomicLong(Math.min(initialTokens, maxTokens) * SCALE);
+    }
+
+    public void recordRequests(int count) {
+        long deposit = depositPerRequest * count;
+        balance.accumulateAndGet(deposit, (current, add) -> Math.min(maxBalance, current + add));
+    }
+
+    /**
+     * Take tokens for {@code count} retries, all or nothing.
+     */
+    public boolean tryWithdraw(int count) {
+        long cost = count * SCALE;
+        while (true) {
+            long current = balance.get();
+            if (current < cost) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - cost)) {
+                return true;
+            }
+        }
+    }
+
+    public double getAvailable() {
+        return balance.get() / (double) SCALE;
+    }
+}
@@ -0,0 +1,515 @@
+package com.example.spring101.graphapi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Quota buckets shared by every process on a host through a memory-mapped file.
+ *
+ * Each API type has a bucket holding the remaining quota and the window reset
+ * time, packed into one long so it can be updated with a single compare-and-set
+ * that is atomic across processes. To keep that shared counter cool, a process
+ * takes tokens in leases of {@code leaseSize} and spends them locally. A lease
+ * records its owner and a heartbeat; leases whose owner has not been seen for
+ * {@code leaseTtl} (a crashed worker) are reclaimed and their unspent tokens go
+ * back to the bucket. A background thread sends the heartbeats, so an idle but
+ * live process keeps its leases.
+ *
+ * When a window ends the bucket is refilled and its reset time moves on by the
+ * window length, estimated from the longest time-to-reset Graph reported, until
+ * Graph reports the new window.
+ *
+ * Layout: a 64 byte header, {@value #BUCKETS} buckets of 64 bytes
+ * ({@code key, state, limit, window seconds}) and {@value #LEASES} leases of
+ * 32 bytes ({@code owner, heartbeat, bucket and window, held}).
+ */
+public class SharedQuotaLedger implements Closeable {
+
+    public static final Logger logger = Logger.getLogger(SharedQuotaLedger.class.getName());
+
+    static final int BUCKETS = 64;
+    static final int LEASES = 256;
+
+    private static final long MAGIC = 0x4752415048514C31L; // "GRAPHQL1"
+    private static final int HEADER_BYTES = 64;
+    private static final int BUCKET_BYTES = 64;
+    private static final int LEASE_BYTES = 32;
+    private static final int LEASES_OFFSET = HEADER_BYTES + BUCKETS * BUCKET_BYTES;
+    private static final int FILE_BYTES = LEASES_OFFSET + LEASES * LEASE_BYTES;
+
+    private static final int KEY = 0;
+    private static final int STATE = 8;
+    private static final int LIMIT = 16;
+    private static final int WINDOW = 24;
+
+    private static final int OWNER = 0;
+    private static final int HEARTBEAT = 8;
+    private static final int SCOPE = 16;
+    private static final int HELD = 24;
+
+    private static final long RECLAIMING = -1;
+    // 창 길이를 알기 전에 쓰는 값과, 리셋 시각을 모를 때 물러나는 시간
+    private static final long DEFAULT_WINDOW_SECONDS = 60;
+    private static final long UNKNOWN_RESET_BACKOFF_MILLIS = 1000;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int leaseSize;
+    private final long leaseTtlMillis;
+    private final long ownerId;
+    private final Map<Integer, Integer> leases = new ConcurrentHashMap<>(); // 버킷 -> 이 프로세스의 lease
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "quota-ledger-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile LongSupplier clock = System::currentTimeMillis;
+
+    public SharedQuotaLedger(Path file) throws IOException {
+        this(file, 10, Duration.ofSeconds(30));
+    }
+
+    /**
+     * @param leaseSize tokens taken from the shared bucket at a time
+     * @param leaseTtl  how long a lease survives without a heartbeat
+     */
+    public SharedQuotaLedger(Path file, int leaseSize, Duration leaseTtl) throws IOException {
+        if (leaseSize < 1) {
+            throw new IllegalArgumentException("leaseSize must be at least 1");
+        }
+        this.file = file;
+        this.leaseSize = leaseSize;
+        this.leaseTtlMillis = leaseTtl.toMillis();
+        // 같은 JVM 안에서 여러 인스턴스를 열어도 서로 다른 소유자로 구분
+        this.ownerId = (ProcessHandle.current().pid() << 20) | (INSTANCES.incrementAndGet() & 0xFFFFF);
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            if (raf.length() < FILE_BYTES) {
+                raf.setLength(FILE_BYTES);
+            }
+            this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_BYTES);
+        }
+
+        long magic = (long) LONGS.getVolatile(buffer, 0);
+        if (magic == 0) {
+            LONGS.compareAndSet(buffer, 0, 0L, MAGIC);
+        } else if (magic != MAGIC) {
+            throw new IOException(file + " is not a quota ledger");
+        }
+
+        long interval = Math.max(1, leaseTtlMillis / 3);
+        heartbeats.scheduleWithFixedDelay(this::heartbeatLeases, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Take one token for {@code apiType}.
+     *
+     * @param minimumCapacityLeft percentage of the limit the pool keeps back
+     * @return 0 if the request may be sent now, otherwise milliseconds until the
+     *         window resets
+     */
+    public long acquire(String apiType, int minimumCapacityLeft) {
+        int bucket = bucket(apiType);
+        if (takeFromLease(bucket)) {
+            return 0;
+        }
+
+        boolean reclaimed = false;
+        while (true) {
+            int offset = bucketOffset(bucket);
+            long limit = (long) LONGS.getVolatile(buffer, offset + LIMIT);
+            long state = (long) LONGS.getVolatile(buffer, offset + STATE);
+            long nowMillis = clock.getAsLong();
+            long resetAt = resetAt(state);
+            int remaining = remaining(state);
+
+            if (limit <= 0) {
+                return 0; // 아직 헤더를 받은 적이 없으면 제한하지 않는다
+            }
+            if (resetAt > 0 && nowMillis / 1000 >= resetAt) {
+                LONGS.compareAndSet(buffer, offset + STATE, state,
+                        pack(nextResetAt(offset, resetAt, nowMillis / 1000), (int) limit));
+                continue;
+            }
+
+            int reserve = (int) Math.ceil(limit * minimumCapacityLeft / 100.0);
+            int available = remaining - reserve;
+            if (available <= 0) {
+                if (!reclaimed) {
+                    reclaimed = true;
+                    if (reclaimExpired(bucket) > 0) {
+                        continue;
+                    }
+                }
+                // 리셋 시각을 모르면 0 대신 짧게 물러나 다음 응답 헤더를 기다린다
+                return resetAt > 0 ? Math.max(1, resetAt * 1000 - nowMillis) : UNKNOWN_RESET_BACKOFF_MILLIS;
+            }
+
+            int granted = Math.min(leaseSize, available);
+            if (LONGS.compareAndSet(buffer, offset + STATE, state, pack(resetAt, remaining - granted))) {
+                if (granted > 1) {
+                    addToLease(bucket, resetAt, granted - 1);
+                }
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Fold in the values reported by Graph, which count the requests of every
+     * process. Tokens still held in leases of the current window are not spent
+     * yet, so they are subtracted from the reported remaining count.
+     */
+    public void update(String apiType, int limit, int remaining, int resetSeconds) {
+        if (limit <= 0 || remaining < 0) {
+            return;
+        }
+        int bucket = bucket(apiType);
+        int offset = bucketOffset(bucket);
+        long serverResetAt = resetSeconds >= 0 ? clock.getAsLong() / 1000 + resetSeconds : 0;
+
+        long previousLimit = (long) LONGS.getAndSet(buffer, offset + LIMIT, (long) limit);
+        if (resetSeconds > 0) {
+            // 창의 첫 응답이 가장 긴 남은 시간을 보여주므로 창 길이 추정치로 쓴다
+            long window;
+            do {
+                window = (long) LONGS.getVolatile(buffer, offset + WINDOW);
+            } while (resetSeconds > window
+                    && !LONGS.compareAndSet(buffer, offset + WINDOW, window, (long) resetSeconds));
+        }
+        while (true) {
+            long state = (long) LONGS.getVolatile(buffer, offset + STATE);
+            long resetAt = resetAt(state);
+            boolean newWindow = previousLimit != limit
+                    || resetAt == 0
+                    || clock.getAsLong() / 1000 >= resetAt
+                    || (serverResetAt > 0 && serverResetAt > resetAt + 1);
+
+            long next;
+            if (newWindow) {
+                next = pack(serverResetAt, remaining);
+            } else {
+                int unspent = heldInWindow(bucket, resetAt);
+                next = pack(serverResetAt > 0 ? Math.max(resetAt, serverResetAt) : resetAt,
+                        Math.min(remaining(state), Math.max(0, remaining - unspent)));
+            }
+            if (LONGS.compareAndSet(buffer, offset + STATE, state, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Percentage of the shared limit still available, or 100 when unknown.
+     */
+    public float getCapacityLeft(String apiType) {
+        int offset = bucketOffset(bucket(apiType));
+        long limit = (long) LONGS.getVolatile(buffer, offset + LIMIT);
+        long state = (long) LONGS.getVolatile(buffer, offset + STATE);
+        if (limit <= 0) {
+            return 100f;
+        }
+        long resetAt = resetAt(state);
+        if (resetAt > 0 && clock.getAsLong() / 1000 >= resetAt) {
+            return 100f;
+        }
+        return Math.round(((float) remaining(state) / limit) * 10000) / 100f;
+    }
+
+    /**
+     * Remaining tokens in the shared bucket, not counting tokens held in leases.
+     */
+    public int getRemaining(String apiType) {
+        return remaining((long) LONGS.getVolatile(buffer, bucketOffset(bucket(apiType)) + STATE));
+    }
+
+    /**
+     * Hand unspent tokens back and release this process's leases.
+     */
+    @Override
+    public void close() {
+        heartbeats.shutdownNow();
+        for (Map.Entry<Integer, Integer> entry : leases.entrySet()) {
+            int lease = leaseOffset(entry.getValue());
+            if ((long) LONGS.getVolatile(buffer, lease + OWNER) == ownerId) {
+                release(lease);
+            }
+        }
+        leases.clear();
+        buffer.force();
+    }
+
+    private boolean takeFromLease(int bucket) {
+        Integer index = leases.get(bucket);
+        if (index == null) {
+            return false;
+        }
+        int lease = leaseOffset(index);
+        if (!ownsLease(lease)) {
+            leases.remove(bucket, index); // 만료되어 회수됨
+            return false;
+        }
+
+        long currentWindow = resetAt((long) LONGS.getVolatile(buffer, bucketOffset(bucket) + STATE));
+        if (window((long) LONGS.getVolatile(buffer, lease + SCOPE)) != currentWindow) {
+            LONGS.setVolatile(buffer, lease + HELD, 0L); // 지난 창의 토큰은 무효
+            return false;
+        }
+
+        while (true) {
+            long held = (long) LONGS.getVolatile(buffer, lease + HELD);
+            if (held <= 0) {
+                return false;
+            }
+            if (LONGS.compareAndSet(buffer, lease + HELD, held, held - 1)) {
+                heartbeat(lease);
+                return true;
+            }
+        }
+    }
+
+    private void addToLease(int bucket, long window, int tokens) {
+        Integer index = leases.get(bucket);
+        if (index == null || !ownsLease(leaseOffset(index))) {
+            index = claimLease();
+            if (index < 0) {
+                // lease 테이블이 가득 차면 남는 토큰을 돌려준다
+                returnToBucket(bucket, window, tokens);
+                return;
+            }
+            leases.put(bucket, index);
+        }
+
+        int lease = leaseOffset(index);
+        long scope = (long) LONGS.getVolatile(buffer, lease + SCOPE);
+        if (window(scope) != window || bucketOf(scope) != bucket) {
+            LONGS.setVolatile(buffer, lease + SCOPE, ((long) bucket << 32) | window);
+            LONGS.setVolatile(buffer, lease + HELD, 0L);
+        }
+        LONGS.getAndAdd(buffer, lease + HELD, (long) tokens);
+        heartbeat(lease);
+    }
+
+    private int claimLease() {
+        long now = clock.getAsLong();
+        for (int i = 0; i < LEASES; i++) {
+            int lease = leaseOffset(i);
+            if (LONGS.compareAndSet(buffer, lease + OWNER, 0L, ownerId)) {
+                LONGS.setVolatile(buffer, lease + HELD, 0L);
+                LONGS.setVolatile(buffer, lease + SCOPE, -1L);
+                LONGS.setVolatile(buffer, lease + HEARTBEAT, now);
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean ownsLease(int lease) {
+        return (long) LONGS.getVolatile(buffer, lease + OWNER) == ownerId
+                && (long) LONGS.getVolatile(buffer, lease + HEARTBEAT) != RECLAIMING;
+    }
+
+    /**
+     * Epoch milliseconds used for windows and heartbeats; tests replace it.
+     */
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Stop sending heartbeats without releasing anything, as if the process
+     * had died.
+     */
+    void stopHeartbeats() {
+        heartbeats.shutdownNow();
+    }
+
+    /**
+     * Refresh the heartbeat of every lease this process holds; runs on the
+     * heartbeat thread.
+     */
+    void heartbeatLeases() {
+        for (Integer index : leases.values()) {
+            int lease = leaseOffset(index);
+            if (ownsLease(lease)) {
+                heartbeat(lease);
+            }
+        }
+    }
+
+    private void heartbeat(int lease) {
+        long seen = (long) LONGS.getVolatile(buffer, lease + HEARTBEAT);
+        if (seen != RECLAIMING) {
+            LONGS.compareAndSet(buffer, lease + HEARTBEAT, seen, clock.getAsLong());
+        }
+    }
+
+    /**
+     * Return the tokens of leases on {@code bucket} whose owner stopped sending
+     * heartbeats.
+     *
+     * @return tokens put back into the bucket
+     */
+    private int reclaimExpired(int bucket) {
+        long now = clock.getAsLong();
+        int reclaimed = 0;
+        for (int i = 0; i < LEASES; i++) {
+            int lease = leaseOffset(i);
+            long owner = (long) LONGS.getVolatile(buffer, lease + OWNER);
+            long heartbeat = (long) LONGS.getVolatile(buffer, lease + HEARTBEAT);
+            if (owner == 0 || owner == ownerId || heartbeat == RECLAIMING || now - heartbeat < leaseTtlMillis) {
+                continue;
+            }
+            // heartbeat 를 먼저 선점한 프로세스만 회수한다
+            if (!LONGS.compareAndSet(buffer, lease + HEARTBEAT, heartbeat, RECLAIMING)) {
+                continue;
+            }
+            long scope = (long) LONGS.getVolatile(buffer, lease + SCOPE);
+            long held = (long) LONGS.getAndSet(buffer, lease + HELD, 0L);
+            if (held > 0 && bucketOf(scope) == bucket) {
+                reclaimed += returnToBucket(bucket, window(scope), (int) held);
+            } else if (held > 0 && bucketOf(scope) >= 0) {
+                returnToBucket(bucketOf(scope), window(scope), (int) held);
+            }
+            LONGS.setVolatile(buffer, lease + OWNER, 0L);
+            logger.warning(String.format("Reclaimed lease of owner %d (pid %d) holding %d tokens",
+                    owner, owner >>> 20, held));
+        }
+        return reclaimed;
+    }
+
+    private void release(int lease) {
+        long scope = (long) LONGS.getVolatile(buffer, lease + SCOPE);
+        long held = (long) LONGS.getAndSet(buffer, lease + HELD, 0L);
+        if (held > 0 && bucketOf(scope) >= 0) {
+            returnToBucket(bucketOf(scope), window(scope), (int) held);
+        }
+        LONGS.setVolatile(buffer, lease + OWNER, 0L);
+    }
+
+    /**
+     * @return tokens returned; none if the window they were taken from is over
+     */
+    private int returnToBucket(int bucket, long window, int tokens) {
+        int offset = bucketOffset(bucket);
+        while (true) {
+            long state = (long) LONGS.getVolatile(buffer, offset + STATE);
+            if (resetAt(state) != window) {
+                return 0;
+            }
+            if (LONGS.compareAndSet(buffer, offset + STATE, state, pack(window, remaining(state) + tokens))) {
+                return tokens;
+            }
+        }
+    }
+
+    private int heldInWindow(int bucket, long window) {
+        int held = 0;
+        for (int i = 0; i < LEASES; i++) {
+            int lease = leaseOffset(i);
+            if ((long) LONGS.getVolatile(buffer, lease + OWNER) == 0) {
+                continue;
+            }
+            long scope = (long) LONGS.getVolatile(buffer, lease + SCOPE);
+            if (bucketOf(scope) == bucket && window(scope) == window) {
+                held += (int) (long) LONGS.getVolatile(buffer, lease + HELD);
+            }
+        }
+        return held;
+    }
+
+    /**
+     * Find or claim the bucket of {@code apiType} by open addressing on a
+     * 64-bit hash of its name.
+     */
+    private int bucket(String apiType) {
+        long key = hash(apiType);
+        int start = (int) Long.remainderUnsigned(key, BUCKETS);
+        for (int i = 0; i < BUCKETS; i++) {
+            int index = (start + i) % BUCKETS;
+            int offset = bucketOffset(index);
+            long current = (long) LONGS.getVolatile(buffer, offset + KEY);
+            if (current == key) {
+                return index;
+            }
+            if (current == 0 && LONGS.compareAndSet(buffer, offset + KEY, 0L, key)) {
+                return index;
+            }
+            if ((long) LONGS.getVolatile(buffer, offset + KEY) == key) {
+                return index; // 다른 프로세스가 같은 키로 먼저 선점
+            }
+        }
+        throw new IllegalStateException("No free quota bucket left in " + file + " for " + apiType);
+    }
+
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L; // FNV-1a
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * End of the window following the one that ended at {@code resetAt}.
+     */
+    private long nextResetAt(int offset, long resetAt, long nowSeconds) {
+        long window = (long) LONGS.getVolatile(buffer, offset + WINDOW);
+        if (window <= 0) {
+            window = DEFAULT_WINDOW_SECONDS;
+        }
+        return resetAt + ((nowSeconds - resetAt) / window + 1) * window;
+    }
+
+    private static int bucketOffset(int index) {
+        return HEADER_BYTES + index * BUCKET_BYTES;
+    }
+
+    private static int leaseOffset(int index) {
+        return LEASES_OFFSET + index * LEASE_BYTES;
+    }
+
+    private static long pack(long resetAtSeconds, int remaining) {
+        return (resetAtSeconds << 32) | (remaining & 0xFFFFFFFFL);
+    }
+
+    private static long resetAt(long state) {
+        return state >>> 32;
+    }
+
+    private static int remaining(long state) {
+        return (int) state;
+    }
+
+    private static int bucketOf(long scope) {
+        return scope == -1 ? -1 : (int) (scope >>> 32);
+    }
+
+    private static long window(long scope) {
+        return scope == -1 ? -1 : scope & 0xFFFFFFFFL;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.spring101.graphapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Collapses concurrent calls with the same key into one execution.
+ *
+ * The first caller for a key runs the call; callers that arrive while it is in
+ * flight get its result. The key is forgotten as soon as the call completes,
+ * so nothing is cached: the next caller runs the call again.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Map<K, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+
+    /**
+     * Run {@code call} on the calling thread unless the same key is already in
+     * flight, in which case wait for that call instead.
+     */
+    public V call(K key, Callable<V> call) throws Exception {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            collapsed.increment();
+            try {
+                return existing.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        executed.increment();
+        V value;
+        try {
+            value = call.call();
+        } catch (Exception | Error e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+        inFlight.remove(key, created);
+        created.complete(value);
+        return value;
+    }
+
+    /**
+     * Asynchronous variant of {@link #call(Object, Callable)}. Every caller gets
+     * its own copy of the shared future, so completing or cancelling it does
+     * not affect the others.
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        return execute(key, call, UnaryOperator.identity(), value -> {
+        });
+    }
+
+    /**
+     * Like {@link #execute(Object, Supplier)} for results that hold a
+     * resource: every caller gets {@code share.apply(result)}, its own handle
+     * to release, and {@code close} is called on the result itself once all
+     * callers have theirs. A handle whose caller already cancelled is closed.
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call, UnaryOperator<V> share,
+            Consumer<V> close) {
+        while (true) {
+            Flight<V> created = new Flight<>();
+            Flight<V> existing = flights.putIfAbsent(key, created);
+            if (existing == null) {
+                executed.increment();
+                CompletableFuture<V> caller = created.join();
+                run(key, created, call, share, close);
+                return caller;
+            }
+
+            CompletableFuture<V> caller = existing.join();
+            if (caller != null) {
+                collapsed.increment();
+                return caller;
+            }
+            // 방금 끝난 호출이라 합류할 수 없으면 새로 실행한다
+        }
+    }
+
+    private void run(K key, Flight<V> flight, Supplier<CompletableFuture<V>> call, UnaryOperator<V> share,
+            Consumer<V> close) {
+        CompletableFuture<V> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, error) -> {
+            flights.remove(key, flight);
+            List<CompletableFuture<V>> callers = flight.finish();
+            if (error != null) {
+                callers.forEach(caller -> caller.completeExceptionally(error));
+                return;
+            }
+            try {
+                for (CompletableFuture<V> caller : callers) {
+                    V handle = share.apply(value);
+                    if (!caller.complete(handle)) {
+                        close.accept(handle);
+                    }
+                }
+            } finally {
+                close.accept(value);
+            }
+        });
+    }
+
+    /**
+     * Calls that were actually run.
+     */
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    /**
+     * Calls that shared the result of one already in flight.
+     */
+    public long getCollapsed() {
+        return collapsed.sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.size() + flights.size();
+    }
+
+    /**
+     * Callers waiting on one execution; none can join once it has finished.
+     */
+    private static final class Flight<V> {
+        private final List<CompletableFuture<V>> callers = new ArrayList<>();
+        private boolean finished;
+
+        /**
+         * @return the caller's own future, or {@code null} if already finished
+         */
+        synchronized CompletableFuture<V> join() {
+            if (finished) {
+                return null;
+            }
+            CompletableFuture<V> caller = new CompletableFuture<>();
+            callers.add(caller);
+            return caller;
+        }
+
+        synchronized List<CompletableFuture<V>> finish() {
+            finished = true;
+            return callers;
+        }
+    }
+}
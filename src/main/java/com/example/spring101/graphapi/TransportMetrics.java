@@ -0,0 +1,67 @@
+package com.example.spring101.graphapi;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request and connection-pool counters for a {@link GraphTransport}.
+ */
+public class TransportMetrics {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+
+    private final Map<String, AtomicInteger> activePerHost = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> queuedPerHost = new ConcurrentHashMap<>();
+
+    void recordCompleted(long latencyNanos, boolean failed) {
+        requests.increment();
+        totalLatencyNanos.add(latencyNanos);
+        if (failed) {
+            failures.increment();
+        }
+    }
+
+    AtomicInteger active(String host) {
+        return activePerHost.computeIfAbsent(host, h -> new AtomicInteger());
+    }
+
+    AtomicInteger queued(String host) {
+        return queuedPerHost.computeIfAbsent(host, h -> new AtomicInteger());
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public double getAverageLatencyMillis() {
+        long count = requests.sum();
+        return count == 0 ? 0 : totalLatencyNanos.sum() / 1_000_000.0 / count;
+    }
+
+    /**
+     * Requests currently holding a connection slot, per host.
+     */
+    public Map<String, Integer> getActivePerHost() {
+        Map<String, Integer> snapshot = new TreeMap<>();
+        activePerHost.forEach((host, count) -> snapshot.put(host, count.get()));
+        return snapshot;
+    }
+
+    /**
+     * Requests waiting for a connection slot, per host.
+     */
+    public Map<String, Integer> getQueuedPerHost() {
+        Map<String, Integer> snapshot = new TreeMap<>();
+        queuedPerHost.forEach((host, count) -> snapshot.put(host, count.get()));
+        return snapshot;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.spring101.graphapi;
+
+/**
+ * Outcome counts of one {@link GraphWorkloadRunner#runAll} call.
+ */
+public class WorkloadResult {
+    private final int completed;
+    private final int throttled;
+    private final int failed;
+    private final int skipped;
+    private final long elapsedNanos;
+
+    public WorkloadResult(int completed, int throttled, int failed, long elapsedNanos) {
+        this(completed, throttled, failed, 0, elapsedNanos);
+    }
+
+    public WorkloadResult(int completed, int throttled, int failed, int skipped, long elapsedNanos) {
+        this.completed = completed;
+        this.throttled = throttled;
+        this.failed = failed;
+        this.skipped = skipped;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Items still throttled after the last attempt.
+     */
+    public int getThrottled() {
+        return throttled;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * Items not run because the {@link JobJournal} had them as done.
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getThroughputPerSecond() {
+        return elapsedNanos == 0 ? 0 : completed * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("completed=%d, throttled=%d, failed=%d, skipped=%d, elapsed=%dms, throughput=%.1f/s",
+                completed, throttled, failed, skipped, elapsedNanos / 1_000_000, getThroughputPerSecond());
+    }
+}
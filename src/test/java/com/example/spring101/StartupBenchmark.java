@@ -0,0 +1,74 @@
+package com.example.spring101;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup time of the application jar with and without the fast-start options.
+ *
+ * Each configuration is launched {@code runs} times in a fresh JVM with
+ * {@code spring.context.exit=onRefresh}, so the process ends once the context
+ * has been refreshed and before any runner calls Graph; its wall time is the
+ * startup cost of one scheduled job. Run with {@code ./gradlew startupBenchmark},
+ * which builds the AOT jar and the CDS archive first.
+ *
+ * Arguments: the directory the boot jar was extracted to, the jar name, the CDS
+ * archive and optionally the number of runs.
+ */
+public class StartupBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		Path directory = Path.of(args[0]);
+		String jar = args[1];
+		String archive = args[2];
+		int runs = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+		String exit = "-Dspring.context.exit=onRefresh";
+		String runner = "--spring.profiles.active=runner";
+		String aot = "-Dspring.aot.enabled=true";
+
+		System.out.printf("%-22s %8s %8s %8s%n", "configuration", "min", "median", "max");
+		// 기존 실행 방식 (웹 컨텍스트 포함) 과 단계별로 비교
+		measure("web context", directory, runs, exit, "-jar", jar);
+		measure("runner profile", directory, runs, exit, "-jar", jar, runner);
+		measure("runner + AOT", directory, runs, exit, aot, "-jar", jar, runner);
+		if (Files.exists(directory.resolve(archive))) {
+			measure("runner + AOT + CDS", directory, runs, exit, aot, "-XX:SharedArchiveFile=" + archive,
+					"-Xshare:auto", "-jar", jar, runner);
+		} else {
+			System.out.println("No CDS archive at " + directory.resolve(archive) + ", run cdsTrainingRun first");
+		}
+	}
+
+	private static void measure(String name, Path directory, int runs, String... options) throws Exception {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		List<String> command = new ArrayList<>(List.of(java));
+		command.addAll(List.of(options));
+
+		long[] millis = new long[runs];
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+			Process process = new ProcessBuilder(command)
+					.directory(directory.toFile())
+					.redirectErrorStream(true)
+					.redirectOutput(ProcessBuilder.Redirect.DISCARD)
+					.start();
+			if (!process.waitFor(2, TimeUnit.MINUTES)) {
+				process.destroyForcibly();
+				throw new IllegalStateException(name + " did not exit after its context was refreshed");
+			}
+			millis[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			if (process.exitValue() != 0) {
+				throw new IllegalStateException(name + " exited with " + process.exitValue() + ": " + command);
+			}
+		}
+
+		Arrays.sort(millis);
+		System.out.printf("%-22s %6d ms %6d ms %6d ms%n", name, millis[0], millis[runs / 2], millis[runs - 1]);
+	}
+}
@@ -0,0 +1,100 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class AccessTokenCacheTests {
+
+	@Test
+	void concurrentCallersShareOneFetch() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		AccessTokenCache cache = new AccessTokenCache(() -> {
+			calls.incrementAndGet();
+			release.await();
+			return new AccessToken("token", Instant.now().plus(Duration.ofHours(1)));
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			CompletableFuture<?>[] futures = IntStream.range(0, 16)
+					.mapToObj(x -> CompletableFuture.supplyAsync(() -> {
+						try {
+							return cache.getToken();
+						} catch (Exception e) {
+							throw new RuntimeException(e);
+						}
+					}, executor))
+					.toArray(CompletableFuture[]::new);
+
+			// 모든 호출이 캐시를 놓치고 진행 중인 요청에 붙은 뒤에 응답을 돌려준다
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (cache.getMissCount() < 16 && System.nanoTime() < deadline) {
+				TimeUnit.MILLISECONDS.sleep(5);
+			}
+			assertEquals(16, cache.getMissCount());
+			release.countDown();
+			CompletableFuture.allOf(futures).join();
+		} finally {
+			executor.shutdown();
+			cache.shutdown();
+		}
+
+		assertEquals(1, calls.get());
+		assertEquals(1, cache.getRefreshCount());
+	}
+
+	@Test
+	void cachedTokenIsReusedUntilExpiry() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		AccessTokenCache cache = new AccessTokenCache(() -> new AccessToken("token-" + calls.incrementAndGet(),
+				Instant.now().plus(Duration.ofHours(1))));
+
+		assertEquals("token-1", cache.getToken());
+		assertEquals("token-1", cache.getToken());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		cache.invalidate();
+		assertEquals("token-2", cache.getToken());
+		cache.shutdown();
+	}
+
+	@Test
+	void shortLivedTokenIsNotRefreshedInALoop() throws Exception {
+		AtomicReference<Instant> now = new AtomicReference<>(Instant.parse("2026-01-01T00:00:00Z"));
+		AccessTokenCache cache = new AccessTokenCache(() -> new AccessToken("token",
+				now.get().plus(Duration.ofSeconds(300))));
+		cache.setClock(now::get);
+		try {
+			// 수명(5분)이 refreshAhead 와 같아도 바로 다시 받지 않고 수명의 절반 뒤에 갱신한다
+			cache.getToken();
+			long delay = cache.getRefreshDelayMillis();
+			assertTrue(delay > TimeUnit.SECONDS.toMillis(140) && delay <= TimeUnit.SECONDS.toMillis(150),
+					"delay " + delay);
+
+			now.set(now.get().plusSeconds(150));
+			cache.refreshInBackground();
+			assertEquals(2, cache.getRefreshCount());
+			delay = cache.getRefreshDelayMillis();
+			assertTrue(delay > TimeUnit.SECONDS.toMillis(140) && delay <= TimeUnit.SECONDS.toMillis(150),
+					"delay " + delay);
+		} finally {
+			cache.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimiterTests {
+
+	private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(10);
+
+	@Test
+	void halvesTheLimitAndPausesOnThrottle() throws Exception {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 16);
+		limiter.acquire();
+		limiter.onSuccess(TimeUnit.SECONDS.toNanos(1), 100f);
+		limiter.acquire();
+		limiter.acquire();
+
+		limiter.onThrottled(0);
+		// 응답 시간(1초) 안에 연달아 온 429 는 같은 과부하로 보고 한 번만 반영한다
+		limiter.onThrottled(0);
+
+		assertEquals(4, limiter.getLimit());
+		assertEquals(0, limiter.getInFlight());
+		assertFalse(limiter.tryAcquire());
+	}
+
+	@Test
+	void growsBackOnSuccessAfterThrottle() throws Exception {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 16);
+		limiter.acquire();
+		// 일시 정지는 onThrottled 안에서 시작되고 로그를 남기는 시간도 포함되므로 그 전부터 잰다
+		long start = System.nanoTime();
+		limiter.onThrottled(0);
+		assertEquals(2, limiter.getLimit());
+
+		// 일시 정지(기본 1초)가 끝나야 다시 들어간다
+		limiter.acquire();
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+		limiter.onSuccess(LATENCY, 100f);
+
+		for (int round = 0; round < 20; round++) {
+			int slots = 0;
+			while (limiter.tryAcquire()) {
+				slots++;
+			}
+			for (int i = 0; i < slots; i++) {
+				limiter.onSuccess(LATENCY, 100f);
+			}
+		}
+		assertTrue(limiter.getLimit() > 4, "limit " + limiter.getLimit());
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	void doesNotGrowWhileQuotaIsLow() throws Exception {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 16);
+		for (int i = 0; i < 10; i++) {
+			limiter.acquire();
+		}
+		for (int i = 0; i < 10; i++) {
+			limiter.onSuccess(LATENCY, 5f);
+		}
+
+		assertTrue(limiter.getLimit() < 10, "limit " + limiter.getLimit());
+	}
+
+	@Test
+	void neverDropsBelowTheMinimum() throws Exception {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 2, 4);
+		limiter.acquire();
+		limiter.onThrottled(0);
+
+		assertEquals(2, limiter.getLimit());
+	}
+
+	@Test
+	void runnerBacksOffOnThrottledSubResponses() throws Exception {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 16);
+		// 봉투는 200 이고 하위 응답 하나만 429 인 batch
+		GraphApiResponse batch = new GraphApiResponse(200, Map.of(), null, List.of(
+				new BatchResponseItem("1", 200, Map.of(), "{}"),
+				new BatchResponseItem("2", 429, Map.of("Retry-After", "30"), "{}")));
+
+		try (GraphWorkloadRunner runner = new GraphWorkloadRunner(ExecutionMode.VIRTUAL, limiter, () -> 100)) {
+			runner.setMaxAttempts(1);
+			WorkloadResult result = runner.runAll(0, 1, index -> batch);
+
+			assertEquals(1, result.getThrottled());
+			assertEquals(0, result.getFailed());
+		}
+		assertEquals(4, limiter.getLimit());
+		// Retry-After 30초 동안 새 호출을 내보내지 않는다
+		assertFalse(limiter.tryAcquire());
+	}
+}
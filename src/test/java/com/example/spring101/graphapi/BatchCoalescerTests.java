@@ -0,0 +1,101 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+class BatchCoalescerTests {
+
+	@Test
+	void flushesAsSoonAsTheBatchIsFull() throws Exception {
+		List<List<BatchRequestItem>> batches = new CopyOnWriteArrayList<>();
+		BatchCoalescer coalescer = new BatchCoalescer(echo(batches), 3, Duration.ofMinutes(1));
+
+		List<CompletableFuture<BatchResponseItem>> futures = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			futures.add(coalescer.submit("GET", "/users/" + i, Map.of()));
+		}
+
+		// 대기 시간이 1분이어도 세 번째 요청에서 바로 보낸다
+		CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(1, TimeUnit.SECONDS);
+		assertEquals(1, batches.size());
+		assertEquals(3, batches.get(0).size());
+		coalescer.shutdown();
+	}
+
+	@Test
+	void flushesAPartialBatchAfterTheLinger() throws Exception {
+		List<List<BatchRequestItem>> batches = new CopyOnWriteArrayList<>();
+		BatchCoalescer coalescer = new BatchCoalescer(echo(batches), 20, Duration.ofMillis(50));
+
+		CompletableFuture<BatchResponseItem> first = coalescer.submit("GET", "/users/1", Map.of());
+		CompletableFuture<BatchResponseItem> second = coalescer.submit("GET", "/users/2", Map.of());
+		assertFalse(first.isDone());
+
+		first.get(1, TimeUnit.SECONDS);
+		second.get(1, TimeUnit.SECONDS);
+		assertEquals(1, batches.size());
+		assertEquals(2, batches.get(0).size());
+		coalescer.shutdown();
+	}
+
+	@Test
+	void completesEachCallerWithItsOwnSubResponse() throws Exception {
+		// 응답 순서가 요청 순서와 달라도 id 로 짝을 맞춘다
+		BatchCoalescer coalescer = new BatchCoalescer(items -> {
+			List<BatchResponseItem> responses = new ArrayList<>();
+			for (BatchRequestItem item : items.reversed()) {
+				if (!item.getUrl().endsWith("/lost")) {
+					responses.add(new BatchResponseItem(item.getId(), 200, Map.of(), "\"" + item.getUrl() + "\""));
+				}
+			}
+			return CompletableFuture.completedFuture(responses);
+		}, 3, Duration.ofMinutes(1));
+
+		CompletableFuture<BatchResponseItem> a = coalescer.submit("GET", "/users/a", Map.of());
+		CompletableFuture<BatchResponseItem> b = coalescer.submit("GET", "/users/b", Map.of());
+		CompletableFuture<BatchResponseItem> lost = coalescer.submit("GET", "/users/lost", Map.of());
+
+		assertEquals("\"/users/a\"", a.get(1, TimeUnit.SECONDS).getBody());
+		assertEquals("\"/users/b\"", b.get(1, TimeUnit.SECONDS).getBody());
+		ExecutionException error = assertThrows(ExecutionException.class, () -> lost.get(1, TimeUnit.SECONDS));
+		assertTrue(error.getCause().getMessage().contains("/users/lost"));
+		coalescer.shutdown();
+	}
+
+	@Test
+	void failsEveryCallerWhenTheBatchFails() throws Exception {
+		BatchCoalescer coalescer = new BatchCoalescer(
+				items -> CompletableFuture.failedFuture(new RuntimeException("batch failed")), 2, Duration.ofMinutes(1));
+
+		CompletableFuture<BatchResponseItem> a = coalescer.submit("GET", "/users/a", Map.of());
+		CompletableFuture<BatchResponseItem> b = coalescer.submit("GET", "/users/b", Map.of());
+
+		assertThrows(ExecutionException.class, () -> a.get(1, TimeUnit.SECONDS));
+		assertThrows(ExecutionException.class, () -> b.get(1, TimeUnit.SECONDS));
+		coalescer.shutdown();
+	}
+
+	private static Function<List<BatchRequestItem>, CompletableFuture<List<BatchResponseItem>>> echo(
+			List<List<BatchRequestItem>> batches) {
+		return items -> {
+			batches.add(items);
+			return CompletableFuture.completedFuture(items.stream()
+					.map(item -> new BatchResponseItem(item.getId(), 200, Map.of(), "{}"))
+					.toList());
+		};
+	}
+}
@@ -0,0 +1,93 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class BatchPlannerTests {
+
+	@Test
+	void independentRequestsRunInOneRound() {
+		List<BatchRequestItem> items = new ArrayList<>();
+		for (int i = 1; i <= 10; i++) {
+			items.add(BatchRequestItem.get(String.valueOf(i), "sites/root"));
+		}
+
+		List<List<BatchRequestItem>> plan = BatchPlanner.plan(items, 20);
+		assertEquals(1, plan.size());
+		assertEquals(10, plan.get(0).size());
+		assertTrue(plan.get(0).stream().allMatch(item -> item.getDependsOn().isEmpty()));
+	}
+
+	@Test
+	void chainsStayInOneRound() {
+		List<BatchRequestItem> items = new ArrayList<>();
+		chain(items, "a", 12);
+		for (int i = 0; i < 13; i++) {
+			items.add(BatchRequestItem.get("s" + i, "users/" + i));
+		}
+		chain(items, "b", 12);
+		chain(items, "c", 8);
+
+		List<List<BatchRequestItem>> plan = BatchPlanner.plan(items, 20);
+		assertEquals(3, plan.size());
+
+		Map<String, Integer> roundOf = roundOf(plan);
+		for (String chain : List.of("a", "b", "c")) {
+			int round = roundOf.get(chain + "0");
+			assertTrue(items.stream().filter(item -> item.getId().startsWith(chain))
+					.allMatch(item -> roundOf.get(item.getId()) == round), chain);
+		}
+		plan.forEach(round -> assertTrue(round.size() <= 20));
+		assertEquals(List.of("a10"), find(plan, "a11").getDependsOn());
+	}
+
+	@Test
+	void longChainIsCutInDependencyOrder() {
+		List<BatchRequestItem> items = new ArrayList<>();
+		chain(items, "x", 30);
+
+		List<List<BatchRequestItem>> plan = BatchPlanner.plan(items, 20);
+		assertEquals(2, plan.size());
+		assertEquals(20, plan.get(0).size());
+		// 앞 라운드에서 끝난 의존은 dependsOn 에서 빠진다
+		assertEquals(List.of(), find(plan, "x20").getDependsOn());
+		assertEquals(List.of("x20"), find(plan, "x21").getDependsOn());
+	}
+
+	@Test
+	void rejectsCycles() {
+		List<BatchRequestItem> items = List.of(
+				new BatchRequestItem("1", "GET", "me", Map.of(), List.of("2")),
+				new BatchRequestItem("2", "GET", "me", Map.of(), List.of("1")));
+		assertThrows(IllegalArgumentException.class, () -> BatchPlanner.plan(items, 20));
+	}
+
+	private static void chain(List<BatchRequestItem> items, String prefix, int length) {
+		for (int i = 0; i < length; i++) {
+			List<String> dependsOn = i == 0 ? List.of() : List.of(prefix + (i - 1));
+			items.add(new BatchRequestItem(prefix + i, "GET", "sites/" + prefix + i, Map.of(), dependsOn));
+		}
+	}
+
+	private static Map<String, Integer> roundOf(List<List<BatchRequestItem>> plan) {
+		Map<String, Integer> rounds = new HashMap<>();
+		for (int i = 0; i < plan.size(); i++) {
+			for (BatchRequestItem item : plan.get(i)) {
+				rounds.put(item.getId(), i);
+			}
+		}
+		return rounds;
+	}
+
+	private static BatchRequestItem find(List<List<BatchRequestItem>> plan, String id) {
+		return plan.stream().flatMap(List::stream).filter(item -> item.getId().equals(id)).findFirst().orElseThrow();
+	}
+}
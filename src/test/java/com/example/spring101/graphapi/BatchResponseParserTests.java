@@ -0,0 +1,56 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class BatchResponseParserTests {
+
+	@Test
+	void parsesEachSubResponseWithItsOwnStatus() throws Exception {
+		String json = """
+				{
+				  "responses": [
+				    { "id": "1", "status": 200, "headers": { "Content-Type": "application/json" },
+				      "body": { "displayName": "Status :429 site", "nested": [1, 2] } },
+				    { "id": "2", "status": 429, "headers": { "Retry-After": "7" },
+				      "body": { "error": { "code": "TooManyRequests" } } },
+				    { "id": "3", "status": 204, "body": null }
+				  ]
+				}""";
+
+		List<BatchResponseItem> items = new ArrayList<>();
+		int count = BatchResponseParser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+				items::add);
+
+		assertEquals(3, count);
+		assertEquals("1", items.get(0).getId());
+		assertEquals(200, items.get(0).getStatus());
+		assertEquals("{\"displayName\":\"Status :429 site\",\"nested\":[1,2]}", items.get(0).getBody());
+
+		assertEquals(429, items.get(1).getStatus());
+		assertEquals("7", items.get(1).getHeaders().get("retry-after"));
+
+		assertEquals(204, items.get(2).getStatus());
+		assertNull(items.get(2).getBody());
+	}
+
+	@Test
+	void skipsUnknownTopLevelFields() throws Exception {
+		String json = """
+				{ "@odata.context": "x", "extra": { "a": [1] }, "responses": [ { "id": "a", "status": 200 } ] }""";
+
+		List<BatchResponseItem> items = new ArrayList<>();
+		BatchResponseParser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), items::add);
+
+		assertEquals(1, items.size());
+		assertEquals("a", items.get(0).getId());
+	}
+
+}
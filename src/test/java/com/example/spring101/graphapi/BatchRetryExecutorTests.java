@@ -0,0 +1,113 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class BatchRetryExecutorTests {
+
+	@Test
+	void resendsOnlyThrottledItemsAndTheirDependents() throws Exception {
+		List<BatchRequestItem> items = List.of(
+				BatchRequestItem.get("1", "/sites/root"),
+				BatchRequestItem.get("2", "/users"),
+				new BatchRequestItem("3", "GET", "/users/delta", Map.of(), List.of("2")));
+
+		List<List<BatchRequestItem>> rounds = new ArrayList<>();
+		BatchRetryExecutor executor = new BatchRetryExecutor(new RetryBudget(0.2, 10, 10));
+		executor.setBaseBackoff(Duration.ofMillis(1));
+
+		GraphApiResponse response = executor.execute(items, round -> {
+			rounds.add(round);
+			List<BatchResponseItem> results = new ArrayList<>();
+			for (BatchRequestItem item : round) {
+				int status = 200;
+				if (rounds.size() == 1 && item.getId().equals("2")) {
+					status = 429;
+				} else if (rounds.size() == 1 && item.getId().equals("3")) {
+					status = 424;
+				}
+				results.add(new BatchResponseItem(item.getId(), status, Map.of("Retry-After", "0"), "{}"));
+			}
+			return new GraphApiResponse(200, Map.of(), null, results);
+		});
+
+		assertEquals(2, rounds.size());
+		assertEquals(List.of("2", "3"), rounds.get(1).stream().map(BatchRequestItem::getId).toList());
+		assertEquals(List.of("2"), rounds.get(1).get(1).getDependsOn());
+
+		assertEquals(List.of("1", "2", "3"), response.getBatchResponses().stream().map(BatchResponseItem::getId).toList());
+		response.getBatchResponses().forEach(item -> assertEquals(200, item.getStatus()));
+	}
+
+	@Test
+	void failsDependentsOfAPermanentFailureWithoutResending() throws Exception {
+		List<BatchRequestItem> items = List.of(
+				BatchRequestItem.get("A", "/users/missing"),
+				new BatchRequestItem("B", "GET", "/users/missing/manager", Map.of(), List.of("A")),
+				new BatchRequestItem("C", "GET", "/users/missing/photo", Map.of(), List.of("B")));
+
+		List<List<BatchRequestItem>> rounds = new ArrayList<>();
+		BatchRetryExecutor executor = new BatchRetryExecutor(new RetryBudget(0.2, 10, 10));
+
+		GraphApiResponse response = executor.execute(items, round -> {
+			rounds.add(round);
+			List<BatchResponseItem> results = new ArrayList<>();
+			for (BatchRequestItem item : round) {
+				results.add(new BatchResponseItem(item.getId(), item.getId().equals("A") ? 404 : 424, Map.of(), "{}"));
+			}
+			return new GraphApiResponse(200, Map.of(), null, results);
+		});
+
+		assertEquals(1, rounds.size());
+		assertEquals(List.of(404, 404, 404),
+				response.getBatchResponses().stream().map(BatchResponseItem::getStatus).toList());
+	}
+
+	@Test
+	void resendsDependentsOnceTheirDependencyFailsForGood() throws Exception {
+		List<BatchRequestItem> items = List.of(
+				BatchRequestItem.get("A", "/users/missing"),
+				new BatchRequestItem("B", "GET", "/users/missing/manager", Map.of(), List.of("A")));
+
+		List<List<BatchRequestItem>> rounds = new ArrayList<>();
+		BatchRetryExecutor executor = new BatchRetryExecutor(new RetryBudget(0.2, 10, 10));
+
+		GraphApiResponse response = executor.execute(items, round -> {
+			rounds.add(round);
+			List<BatchResponseItem> results = new ArrayList<>();
+			for (BatchRequestItem item : round) {
+				int status = !item.getId().equals("A") ? 424 : rounds.size() == 1 ? 429 : 403;
+				results.add(new BatchResponseItem(item.getId(), status, Map.of("Retry-After", "0"), "{}"));
+			}
+			return new GraphApiResponse(200, Map.of(), null, results);
+		});
+
+		// 두 번째 라운드에서 A 가 403 으로 끝나면 B 는 세 번째 라운드로 가지 않는다
+		assertEquals(2, rounds.size());
+		assertEquals(List.of("A"), rounds.get(1).get(1).getDependsOn());
+		assertEquals(List.of(403, 403),
+				response.getBatchResponses().stream().map(BatchResponseItem::getStatus).toList());
+	}
+
+	@Test
+	void stopsWhenRetryBudgetIsExhausted() throws Exception {
+		BatchRetryExecutor executor = new BatchRetryExecutor(new RetryBudget(0, 0, 0));
+		List<Integer> calls = new ArrayList<>();
+
+		GraphApiResponse response = executor.execute(List.of(BatchRequestItem.get("1", "/me")), round -> {
+			calls.add(round.size());
+			return new GraphApiResponse(200, Map.of(), null,
+					List.of(new BatchResponseItem("1", 429, Map.of("Retry-After", "0"), null)));
+		});
+
+		assertEquals(1, calls.size());
+		assertEquals(429, response.getBatchResponses().get(0).getStatus());
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTests {
+
+	private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+	@Test
+	void opensOnSustainedFailuresAndClosesAfterAProbe() {
+		CircuitBreaker breaker = new CircuitBreaker(10, 0.5, Duration.ofMillis(100));
+		breaker.setClock(now::get);
+		breaker.setMinimumCalls(4);
+
+		for (int status : new int[] { 200, 503, 429 }) {
+			breaker.acquire("sites");
+			breaker.record("sites", status, 0);
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState("sites"));
+		breaker.acquire("sites");
+		breaker.record("sites", 500, 0);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState("sites"));
+		assertThrows(CircuitOpenException.class, () -> breaker.acquire("sites"));
+		// 다른 엔드포인트에는 영향이 없다
+		breaker.acquire("users");
+
+		now.addAndGet(99);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState("sites"));
+		now.addAndGet(1);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState("sites"));
+		breaker.acquire("sites");
+		assertThrows(CircuitOpenException.class, () -> breaker.acquire("sites"));
+		breaker.record("sites", 200, 0);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState("sites"));
+	}
+
+	@Test
+	void staysOpenForRetryAfter() {
+		CircuitBreaker breaker = new CircuitBreaker(4, 0.5, Duration.ofMillis(10));
+		breaker.setClock(now::get);
+		breaker.setMinimumCalls(1);
+
+		breaker.acquire("batch");
+		breaker.record("batch", 429, 30);
+		CircuitOpenException open = assertThrows(CircuitOpenException.class, () -> breaker.acquire("batch"));
+		assertEquals(TimeUnit.SECONDS.toMillis(30), open.getRetryInMillis());
+	}
+
+	@Test
+	void factoryFailsFastWhileOpen() throws Exception {
+		try (GraphApiSimulator simulator = new GraphApiSimulator(2, Duration.ofMinutes(1))) {
+			simulator.setLatency(Duration.ZERO, Duration.ZERO);
+			GraphClientFactory factory = new GraphClientFactory("tenant", "client", "secret", simulator.getAuthority());
+			factory.setGraphBaseUrl(simulator.getGraphBaseUrl());
+			factory.getRateLimiter().setMinimumCapacityLeft(0);
+			CircuitBreaker breaker = new CircuitBreaker(4, 0.5, Duration.ofMinutes(1));
+			breaker.setMinimumCalls(4);
+			factory.setCircuitBreaker(breaker);
+
+			for (int i = 0; i < 4; i++) {
+				factory.callGraphApiAsync("sites/root").get();
+			}
+			ExecutionException failed = assertThrows(ExecutionException.class,
+					() -> factory.callGraphApiAsync("sites/root").get());
+			assertTrue(failed.getCause() instanceof CircuitOpenException);
+			// 회로가 열린 뒤에는 서버로 가지 않는다
+			assertEquals(2, simulator.getThrottledRequests());
+			assertEquals(CircuitBreaker.State.OPEN, breaker.getState("sites"));
+		}
+	}
+
+	@Test
+	void releasedProbeLetsTheNextCallProbe() {
+		CircuitBreaker breaker = new CircuitBreaker(4, 0.5, Duration.ofMillis(50));
+		breaker.setClock(now::get);
+		breaker.setMinimumCalls(1);
+		breaker.acquire("batch");
+		breaker.record("batch", 503, 0);
+
+		now.addAndGet(50);
+		breaker.acquire("batch");
+		// 시험 호출이 보내지지 못하고 반납되면 다음 호출이 시험 호출이 된다
+		breaker.release("batch");
+		breaker.acquire("batch");
+		breaker.record("batch", 200, 0);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState("batch"));
+	}
+
+	@Test
+	void throttledBatchSubResponsesOpenTheCircuit() throws Exception {
+		try (GraphApiSimulator simulator = new GraphApiSimulator(2, Duration.ofMinutes(1))) {
+			simulator.setLatency(Duration.ZERO, Duration.ZERO);
+			GraphClientFactory factory = new GraphClientFactory("tenant", "client", "secret", simulator.getAuthority());
+			factory.setGraphBaseUrl(simulator.getGraphBaseUrl());
+			factory.getRateLimiter().setMinimumCapacityLeft(0);
+			CircuitBreaker breaker = new CircuitBreaker(4, 0.5, Duration.ofMillis(10));
+			breaker.setMinimumCalls(1);
+			factory.setCircuitBreaker(breaker);
+
+			List<BatchRequestItem> items = new ArrayList<>();
+			for (int i = 1; i <= 4; i++) {
+				items.add(BatchRequestItem.get(String.valueOf(i), "sites/root"));
+			}
+			factory.executeBatchAsync(items).get();
+
+			// 봉투는 200 이어도 하위 응답의 429 와 그 Retry-After 로 열린다
+			assertEquals(CircuitBreaker.State.OPEN, breaker.getState(GraphClientFactory.BATCH_API_TYPE));
+			CircuitOpenException open = assertThrows(CircuitOpenException.class,
+					() -> breaker.acquire(GraphClientFactory.BATCH_API_TYPE));
+			assertTrue(open.getRetryInMillis() > TimeUnit.SECONDS.toMillis(1), "retry in " + open.getRetryInMillis());
+		}
+	}
+}
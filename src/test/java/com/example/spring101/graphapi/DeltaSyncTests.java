@@ -0,0 +1,96 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+class DeltaSyncTests {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void laterSyncsOnlyReturnChanges() throws Exception {
+		Path file = directory.resolve("links.bin");
+		try (GraphApiSimulator simulator = new GraphApiSimulator(1000, Duration.ofMinutes(1))) {
+			simulator.setLatency(Duration.ZERO, Duration.ZERO);
+			simulator.setDeltaPageSize(3);
+			for (int i = 0; i < 10; i++) {
+				simulator.putItem("user-" + i);
+			}
+			GraphClientFactory factory = new GraphClientFactory("tenant", "client", "secret", simulator.getAuthority());
+			factory.setGraphBaseUrl(simulator.getGraphBaseUrl());
+
+			try (DeltaTokenStore store = new DeltaTokenStore(file)) {
+				DeltaSyncResult first = new DeltaSync(factory, store).sync("users/delta", item -> {
+				});
+				assertTrue(first.isFullSync());
+				assertEquals(10, first.getChanges());
+				assertEquals(4, first.getPages());
+			}
+
+			simulator.putItem("user-3");
+			simulator.removeItem("user-7");
+
+			// 다시 열어도 저장된 deltaLink 부터 이어서 동기화
+			try (DeltaTokenStore store = new DeltaTokenStore(file)) {
+				List<JsonNode> changes = new ArrayList<>();
+				DeltaSyncResult second = new DeltaSync(factory, store).sync("users/delta", changes::add);
+				assertFalse(second.isFullSync());
+				assertEquals(2, second.getChanges());
+				assertEquals("user-3", changes.get(0).path("id").asText());
+				assertTrue(changes.get(1).has("@removed"));
+
+				simulator.expireDeltaTokens();
+				DeltaSyncResult third = new DeltaSync(factory, store).sync("users/delta", item -> {
+				});
+				assertTrue(third.isFullSync());
+				assertEquals(9, third.getChanges());
+			}
+		}
+	}
+
+	@Test
+	void storeKeepsTheLastLinkAndSurvivesATornTail() throws Exception {
+		Path file = directory.resolve("links.bin");
+		try (DeltaTokenStore store = new DeltaTokenStore(file, 2)) {
+			for (int i = 0; i < 500; i++) {
+				store.put("users/delta", "https://graph.microsoft.com/v1.0/users/delta?$deltatoken=" + i);
+			}
+			store.put("groups/delta", "https://graph.microsoft.com/v1.0/groups/delta?$deltatoken=1");
+			store.remove("groups/delta");
+			// 오래된 레코드는 압축되어 파일이 계속 커지지 않는다
+			assertTrue(store.getFileSize() < 4096 * 2);
+		}
+
+		// 쓰다 만 레코드 흉내
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 40, 1, 2 }));
+		}
+
+		try (DeltaTokenStore store = new DeltaTokenStore(file)) {
+			assertEquals("https://graph.microsoft.com/v1.0/users/delta?$deltatoken=499",
+					store.get("users/delta").orElseThrow());
+			assertFalse(store.get("groups/delta").isPresent());
+			assertEquals(1, store.size());
+			store.put("groups/delta", "https://graph.microsoft.com/v1.0/groups/delta?$deltatoken=2");
+		}
+
+		try (DeltaTokenStore store = new DeltaTokenStore(file)) {
+			assertEquals(2, store.size());
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.example.spring101.graphapi;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Side-by-side throughput and memory comparison of {@link ExecutionMode}s.
+ *
+ * Each mode runs in its own JVM so peak RSS is not shared between them. Graph
+ * calls are simulated by a blocking sleep of {@code latencyMillis}. Run with
+ * {@code ./gradlew compareExecutionModes}.
+ */
+public class ExecutionModeComparison {
+
+	private static final int TASKS = 20_000;
+	private static final long LATENCY_MILLIS = 50;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 2) {
+			runOne(ExecutionMode.from(args[0]), Integer.parseInt(args[1]));
+			return;
+		}
+
+		System.out.printf("%-9s %11s %10s %12s %14s %11s %10s%n",
+				"mode", "concurrency", "elapsed", "throughput", "peak threads", "peak heap", "peak RSS");
+		// 현재 고정 풀(100 스레드)과 가상 스레드(동시 실행 수 제한만 다름)를 비교
+		fork(ExecutionMode.PLATFORM, 100);
+		fork(ExecutionMode.VIRTUAL, 100);
+		fork(ExecutionMode.PLATFORM, 1000);
+		fork(ExecutionMode.VIRTUAL, 1000);
+	}
+
+	private static void fork(ExecutionMode mode, int concurrency) throws Exception {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process process = new ProcessBuilder(java, "-Xmx512m", "-cp", System.getProperty("java.class.path"),
+				ExecutionModeComparison.class.getName(), mode.name(), String.valueOf(concurrency))
+				.redirectErrorStream(true)
+				.start();
+		System.out.print(new String(process.getInputStream().readAllBytes()));
+		process.waitFor();
+	}
+
+	private static void runOne(ExecutionMode mode, int concurrency) throws Exception {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		AtomicLong peakHeap = new AtomicLong();
+
+		Thread sampler = Thread.ofPlatform().daemon().start(() -> {
+			while (true) {
+				peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+				try {
+					TimeUnit.MILLISECONDS.sleep(10);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		});
+
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(concurrency, 1, concurrency);
+		WorkloadResult result;
+		try (GraphWorkloadRunner runner = new GraphWorkloadRunner(mode, limiter, () -> 100)) {
+			result = runner.runAll(0, TASKS, index -> {
+				long jitter = ThreadLocalRandom.current().nextLong(LATENCY_MILLIS / 5);
+				TimeUnit.MILLISECONDS.sleep(LATENCY_MILLIS + jitter);
+				return new GraphApiResponse(200, Map.of(), null);
+			});
+		}
+		sampler.interrupt();
+
+		System.out.printf("%-9s %11d %8dms %10.0f/s %14d %9dMB %8dMB%n",
+				mode, concurrency, result.getElapsedNanos() / 1_000_000, result.getThroughputPerSecond(),
+				threads.getPeakThreadCount(), peakHeap.get() / (1024 * 1024), peakRssKilobytes() / 1024);
+	}
+
+	private static long peakRssKilobytes() throws Exception {
+		Path status = Path.of("/proc/self/status");
+		if (!Files.exists(status)) {
+			return -1;
+		}
+		List<String> lines = Files.readAllLines(status);
+		for (String line : lines) {
+			if (line.startsWith("VmHWM:")) {
+				return Long.parseLong(line.replaceAll("[^0-9]", ""));
+			}
+		}
+		return -1;
+	}
+}
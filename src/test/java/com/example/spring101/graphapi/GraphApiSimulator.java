@@ -0,0 +1,474 @@
+package com.example.spring101.graphapi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for the Azure AD token endpoint and Microsoft Graph.
+ *
+ * Serves {@code POST /{tenant}/oauth2/v2.0/token}, {@code GET /v1.0/**} and
+ * {@code POST /v1.0/$batch}. Every Graph request, and every sub-request of a
+ * batch, takes one unit from a fixed-window quota. Once the quota is spent the
+ * request gets a 429 with {@code Retry-After}; inside a batch only the affected
+ * sub-responses are 429 and the envelope stays 200, as on the real service.
+ * {@code RateLimit-*} headers are only sent once {@code rateLimitHeaderThreshold}
+ * of the window has been used, which is also how Graph behaves. Resources carry
+ * an ETag and a matching {@code If-None-Match} is answered with 304; the ETags
+ * change when {@link #updateResources()} is called. Paths ending in
+ * {@code /delta} serve a delta query over one simulated collection, see
+ * {@link #putItem(String)}. Paths passed to {@link #setNotFound(String)}
+ * answer 404.
+ */
+public class GraphApiSimulator implements Closeable {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	static {
+		// 헤더와 본문을 따로 쓰므로 Nagle 이 켜져 있으면 응답마다 지연 ACK 만큼 늦어진다
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final QuotaWindow quota;
+
+	private volatile Duration latency = Duration.ofMillis(20);
+	private volatile Duration latencyJitter = Duration.ofMillis(10);
+	private volatile double rateLimitHeaderThreshold = 0.8;
+
+	private final AtomicLong tokenRequests = new AtomicLong();
+	private final AtomicLong graphRequests = new AtomicLong();
+	private final AtomicLong throttledRequests = new AtomicLong();
+	private final AtomicLong notModifiedResponses = new AtomicLong();
+	private final AtomicLong resourceVersion = new AtomicLong();
+	private final Set<String> notFound = ConcurrentHashMap.newKeySet();
+
+	// 델타 쿼리용 컬렉션: id -> 마지막 변경 버전, 음수면 삭제됨
+	private final Map<String, Long> deltaItems = new TreeMap<>();
+	private long deltaVersion;
+	private long oldestDeltaToken;
+	private volatile int deltaPageSize = 100;
+
+	/**
+	 * @param limit  requests allowed per window
+	 * @param window length of the quota window
+	 */
+	public GraphApiSimulator(int limit, Duration window) throws IOException {
+		this.quota = new QuotaWindow(limit, window.toMillis());
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.server.setExecutor(executor);
+		this.server.createContext("/v1.0/", this::handleGraph);
+		this.server.createContext("/", this::handleToken);
+		this.server.start();
+	}
+
+	/**
+	 * Use as the {@code authority} of a {@link GraphClientFactory}.
+	 */
+	public String getAuthority() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Use as the Graph base URL of a {@link GraphClientFactory}.
+	 */
+	public String getGraphBaseUrl() {
+		return getAuthority() + "/v1.0/";
+	}
+
+	/**
+	 * Simulated server time per request: {@code latency} plus a uniform random
+	 * share of {@code jitter}.
+	 */
+	public void setLatency(Duration latency, Duration jitter) {
+		this.latency = latency;
+		this.latencyJitter = jitter;
+	}
+
+	public void setRateLimitHeaderThreshold(double rateLimitHeaderThreshold) {
+		this.rateLimitHeaderThreshold = rateLimitHeaderThreshold;
+	}
+
+	public long getTokenRequests() {
+		return tokenRequests.get();
+	}
+
+	/**
+	 * Graph requests served, counting each sub-request of a batch.
+	 */
+	public long getGraphRequests() {
+		return graphRequests.get();
+	}
+
+	public long getThrottledRequests() {
+		return throttledRequests.get();
+	}
+
+	/**
+	 * Graph requests answered with 304; also counted in {@link #getGraphRequests()}.
+	 */
+	public long getNotModifiedResponses() {
+		return notModifiedResponses.get();
+	}
+
+	/**
+	 * Create or change an item of the delta collection.
+	 */
+	public synchronized void putItem(String id) {
+		deltaItems.put(id, ++deltaVersion);
+	}
+
+	public synchronized void removeItem(String id) {
+		deltaItems.put(id, -(++deltaVersion));
+	}
+
+	/**
+	 * Make every delta token issued so far invalid, as Graph does after a while.
+	 */
+	public synchronized void expireDeltaTokens() {
+		oldestDeltaToken = deltaVersion + 1;
+	}
+
+	public void setDeltaPageSize(int deltaPageSize) {
+		this.deltaPageSize = deltaPageSize;
+	}
+
+	/**
+	 * Answer 404 for {@code path}, e.g. {@code /users/missing}; the request
+	 * still takes its unit of quota.
+	 */
+	public void setNotFound(String path) {
+		notFound.add(path(path));
+	}
+
+	/**
+	 * Change every resource, so cached ETags no longer match.
+	 */
+	public void updateResources() {
+		resourceVersion.incrementAndGet();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handleToken(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (!"POST".equals(exchange.getRequestMethod())
+					|| !exchange.getRequestURI().getPath().endsWith("/oauth2/v2.0/token")) {
+				send(exchange, 404, null);
+				return;
+			}
+			exchange.getRequestBody().readAllBytes();
+
+			ObjectNode body = MAPPER.createObjectNode();
+			body.put("token_type", "Bearer");
+			body.put("expires_in", 3599);
+			body.put("access_token", "simulated-" + tokenRequests.incrementAndGet());
+			send(exchange, 200, body);
+		}
+	}
+
+	private void handleGraph(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			String auth = exchange.getRequestHeaders().getFirst("Authorization");
+			if (auth == null || !auth.startsWith("Bearer ")) {
+				send(exchange, 401, error("InvalidAuthenticationToken", "Access token is empty."));
+				return;
+			}
+
+			simulateLatency();
+
+			String path = exchange.getRequestURI().getRawPath().substring("/v1.0".length());
+			if ("POST".equals(exchange.getRequestMethod()) && "/$batch".equals(path)) {
+				handleBatch(exchange);
+			} else if ("GET".equals(exchange.getRequestMethod())) {
+				exchange.getRequestBody().readAllBytes();
+				long now = System.currentTimeMillis();
+				QuotaWindow.Decision decision = quota.take(now);
+				applyRateLimitHeaders(exchange, decision, now);
+				String etag = etag(path);
+				if (decision.granted() && path.endsWith("/delta")) {
+					graphRequests.incrementAndGet();
+					handleDelta(exchange, path, exchange.getRequestURI().getRawQuery());
+				} else if (decision.granted() && notFound.contains(path)) {
+					graphRequests.incrementAndGet();
+					send(exchange, 404, error("Request_ResourceNotFound", "Resource does not exist."));
+				} else if (decision.granted() && etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+					graphRequests.incrementAndGet();
+					notModifiedResponses.incrementAndGet();
+					exchange.getResponseHeaders().set("ETag", etag);
+					send(exchange, 304, null);
+				} else {
+					if (decision.granted()) {
+						exchange.getResponseHeaders().set("ETag", etag);
+					}
+					send(exchange, decision.granted() ? 200 : 429, resourceOrThrottle(path, decision, now));
+				}
+			} else {
+				send(exchange, 405, error("BadRequest", "Unsupported method"));
+			}
+		}
+	}
+
+	/**
+	 * Query parameters: {@code $deltatoken} (changes after this version, full
+	 * listing without it), {@code upto} (version the round was started at) and
+	 * {@code $skiptoken} (offset within the round).
+	 */
+	private void handleDelta(HttpExchange exchange, String path, String query) throws IOException {
+		Map<String, String> params = new HashMap<>();
+		if (query != null) {
+			for (String pair : query.split("&")) {
+				int eq = pair.indexOf('=');
+				if (eq > 0) {
+					params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8), pair.substring(eq + 1));
+				}
+			}
+		}
+
+		long since = Long.parseLong(params.getOrDefault("$deltatoken", "-1"));
+		int skip = Integer.parseInt(params.getOrDefault("$skiptoken", "0"));
+		List<Map.Entry<String, Long>> changes = new ArrayList<>();
+		long upto;
+		synchronized (this) {
+			if (since >= 0 && since < oldestDeltaToken) {
+				send(exchange, 410, error("resyncRequired", "The delta token is expired, a full sync is required."));
+				return;
+			}
+			upto = Long.parseLong(params.getOrDefault("upto", String.valueOf(deltaVersion)));
+			for (Map.Entry<String, Long> item : deltaItems.entrySet()) {
+				long version = Math.abs(item.getValue());
+				boolean removed = item.getValue() < 0;
+				if (version > since && version <= upto && !(since < 0 && removed)) {
+					changes.add(Map.entry(item.getKey(), item.getValue()));
+				}
+			}
+		}
+
+		ObjectNode page = MAPPER.createObjectNode();
+		ArrayNode value = page.putArray("value");
+		int end = Math.min(changes.size(), skip + deltaPageSize);
+		for (Map.Entry<String, Long> item : changes.subList(Math.min(skip, end), end)) {
+			ObjectNode node = value.addObject();
+			node.put("id", item.getKey());
+			if (item.getValue() < 0) {
+				node.putObject("@removed").put("reason", "deleted");
+			} else {
+				node.put("displayName", "Item " + item.getKey() + " v" + item.getValue());
+			}
+		}
+
+		String link = getGraphBaseUrl() + path.substring(1);
+		if (end < changes.size()) {
+			page.put("@odata.nextLink", link + "?$deltatoken=" + since + "&upto=" + upto + "&$skiptoken=" + end);
+		} else {
+			page.put("@odata.deltaLink", link + "?$deltatoken=" + upto);
+		}
+		send(exchange, 200, page);
+	}
+
+	private void handleBatch(HttpExchange exchange) throws IOException {
+		JsonNode request;
+		try (InputStream in = exchange.getRequestBody()) {
+			request = MAPPER.readTree(in);
+		}
+		JsonNode requests = request.path("requests");
+		if (!requests.isArray() || requests.size() == 0 || requests.size() > BatchCoalescer.MAX_BATCH_SIZE) {
+			send(exchange, 400, error("BadRequest", "Invalid batch payload, batch must have 1 to 20 requests."));
+			return;
+		}
+
+		ObjectNode envelope = MAPPER.createObjectNode();
+		ArrayNode responses = envelope.putArray("responses");
+		Map<String, Integer> statusById = new HashMap<>();
+		QuotaWindow.Decision last = null;
+		long now = System.currentTimeMillis();
+
+		for (JsonNode item : requests) {
+			String id = item.path("id").asText();
+			ObjectNode response = responses.addObject();
+			response.put("id", id);
+
+			boolean dependencyFailed = false;
+			for (JsonNode dependency : item.path("dependsOn")) {
+				Integer status = statusById.get(dependency.asText());
+				dependencyFailed |= status == null || status >= 400;
+			}
+			if (dependencyFailed) {
+				statusById.put(id, 424);
+				response.put("status", 424);
+				response.set("body", error("FailedDependency", "Dependent request failed."));
+				continue;
+			}
+
+			last = quota.take(now);
+			String url = item.path("url").asText();
+			if (last.granted() && notFound.contains(path(url))) {
+				graphRequests.incrementAndGet();
+				statusById.put(id, 404);
+				response.put("status", 404);
+				response.set("body", error("Request_ResourceNotFound", "Resource does not exist."));
+				continue;
+			}
+			String etag = etag(url);
+			boolean notModified = last.granted() && etag.equals(item.path("headers").path("If-None-Match").asText(null));
+			int status = !last.granted() ? 429 : notModified ? 304 : 200;
+			statusById.put(id, status == 304 ? 200 : status);
+			response.put("status", status);
+			ObjectNode headers = response.putObject("headers");
+			if (!last.granted()) {
+				headers.put("Retry-After", String.valueOf(last.retryAfterSeconds(now)));
+			} else {
+				headers.put("ETag", etag);
+			}
+			if (notModified) {
+				graphRequests.incrementAndGet();
+				notModifiedResponses.incrementAndGet();
+			} else {
+				headers.put("Content-Type", "application/json");
+				response.set("body", resourceOrThrottle(url, last, now));
+			}
+		}
+
+		if (last != null) {
+			applyRateLimitHeaders(exchange, last, now);
+		}
+		send(exchange, 200, envelope);
+	}
+
+	private String etag(String url) {
+		return "W/\"" + Integer.toHexString((path(url) + "#" + resourceVersion.get()).hashCode()) + "\"";
+	}
+
+	private static String path(String url) {
+		int query = url.indexOf('?');
+		String path = query < 0 ? url : url.substring(0, query);
+		return path.startsWith("/") ? path : "/" + path;
+	}
+
+	private JsonNode resourceOrThrottle(String path, QuotaWindow.Decision decision, long now) {
+		if (!decision.granted()) {
+			throttledRequests.incrementAndGet();
+			return error("TooManyRequests", "Too many requests, retry after "
+					+ decision.retryAfterSeconds(now) + " seconds.");
+		}
+		graphRequests.incrementAndGet();
+		ObjectNode body = MAPPER.createObjectNode();
+		body.put("@odata.context", "https://graph.microsoft.com/v1.0/$metadata#sites/$entity");
+		body.put("id", "contoso.sharepoint.com," + Integer.toHexString(path.hashCode()));
+		body.put("displayName", "Simulated " + path);
+		body.put("webUrl", "https://contoso.sharepoint.com" + (path.startsWith("/") ? path : "/" + path));
+		return body;
+	}
+
+	private void applyRateLimitHeaders(HttpExchange exchange, QuotaWindow.Decision decision, long now) {
+		if (!decision.granted()) {
+			exchange.getResponseHeaders().set("Retry-After", String.valueOf(decision.retryAfterSeconds(now)));
+		}
+		double used = 1 - (double) decision.remaining() / decision.limit();
+		if (used >= rateLimitHeaderThreshold) {
+			exchange.getResponseHeaders().set("RateLimit-Limit", String.valueOf(decision.limit()));
+			exchange.getResponseHeaders().set("RateLimit-Remaining", String.valueOf(decision.remaining()));
+			exchange.getResponseHeaders().set("RateLimit-Reset", String.valueOf(decision.retryAfterSeconds(now)));
+		}
+	}
+
+	private void simulateLatency() {
+		long millis = latency.toMillis();
+		long jitter = latencyJitter.toMillis();
+		if (jitter > 0) {
+			millis += ThreadLocalRandom.current().nextLong(jitter + 1);
+		}
+		if (millis <= 0) {
+			return;
+		}
+		try {
+			TimeUnit.MILLISECONDS.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static ObjectNode error(String code, String message) {
+		ObjectNode body = MAPPER.createObjectNode();
+		ObjectNode error = body.putObject("error");
+		error.put("code", code);
+		error.put("message", message);
+		return body;
+	}
+
+	private static void send(HttpExchange exchange, int status, JsonNode body) throws IOException {
+		if (body == null) {
+			exchange.sendResponseHeaders(status, -1);
+			return;
+		}
+		byte[] bytes = MAPPER.writeValueAsString(body).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Fixed-window quota shared by all routes.
+	 */
+	static final class QuotaWindow {
+
+		record Decision(boolean granted, int limit, int remaining, long resetAt) {
+			int retryAfterSeconds(long now) {
+				return (int) Math.max(1, (resetAt - now + 999) / 1000);
+			}
+		}
+
+		private final int limit;
+		private final long windowMillis;
+		private long windowStart = -1;
+		private int used;
+
+		QuotaWindow(int limit, long windowMillis) {
+			this.limit = limit;
+			this.windowMillis = windowMillis;
+		}
+
+		synchronized Decision take(long now) {
+			if (windowStart < 0 || now - windowStart >= windowMillis) {
+				windowStart = now;
+				used = 0;
+			}
+			boolean granted = used < limit;
+			if (granted) {
+				used++;
+			}
+			return new Decision(granted, limit, limit - used, windowStart + windowMillis);
+		}
+	}
+}
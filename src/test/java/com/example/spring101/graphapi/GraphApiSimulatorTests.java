@@ -0,0 +1,92 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class GraphApiSimulatorTests {
+
+	@Test
+	void throttlesOnceTheWindowIsSpent() throws Exception {
+		try (GraphApiSimulator simulator = new GraphApiSimulator(5, Duration.ofMinutes(1))) {
+			simulator.setLatency(Duration.ZERO, Duration.ZERO);
+			GraphClientFactory factory = factory(simulator);
+
+			GraphApiResponse last = null;
+			for (int i = 0; i < 5; i++) {
+				last = factory.callGraphApiAsync("sites/root").get();
+				assertEquals(200, last.getStatusCode());
+			}
+			// 80% 이상 사용하면 RateLimit 헤더가 붙는다
+			assertEquals(5, last.getRateLimit().getLimit());
+			assertEquals(0, last.getRateLimit().getRemaining());
+
+			GraphApiResponse throttled = factory.callGraphApiAsync("sites/root").get();
+			assertEquals(429, throttled.getStatusCode());
+			assertTrue(throttled.getRateLimit().getRetryAfterSeconds() > 0);
+			assertEquals(1, simulator.getTokenRequests());
+		}
+	}
+
+	@Test
+	void throttlesBatchItemsIndividually() throws Exception {
+		try (GraphApiSimulator simulator = new GraphApiSimulator(3, Duration.ofMinutes(1))) {
+			simulator.setLatency(Duration.ZERO, Duration.ZERO);
+			GraphClientFactory factory = factory(simulator);
+
+			List<BatchRequestItem> items = new ArrayList<>();
+			for (int i = 1; i <= 5; i++) {
+				items.add(BatchRequestItem.get(String.valueOf(i), "sites/root"));
+			}
+			items.add(new BatchRequestItem("6", "GET", "sites/root", Map.of(), List.of("5")));
+
+			List<BatchResponseItem> responses = factory.executeBatchAsync(items).get();
+
+			assertEquals(6, responses.size());
+			assertEquals(List.of(200, 200, 200, 429, 429, 424),
+					responses.stream().map(BatchResponseItem::getStatus).toList());
+			assertTrue(responses.get(3).getRateLimit().getRetryAfterSeconds() > 0);
+			assertEquals(3, simulator.getGraphRequests());
+			assertEquals(2, simulator.getThrottledRequests());
+		}
+	}
+
+	@Test
+	void plannedRoundsSkipDependentsOfAFailedRequest() throws Exception {
+		try (GraphApiSimulator simulator = new GraphApiSimulator(100, Duration.ofMinutes(1))) {
+			simulator.setLatency(Duration.ZERO, Duration.ZERO);
+			simulator.setNotFound("/users/missing");
+			GraphClientFactory factory = factory(simulator);
+
+			// 21개짜리 사슬은 두 라운드로 나뉘고, 마지막 항목만 두 번째 라운드로 간다
+			List<BatchRequestItem> items = new ArrayList<>();
+			items.add(BatchRequestItem.get("0", "users/missing"));
+			for (int i = 1; i <= BatchCoalescer.MAX_BATCH_SIZE; i++) {
+				items.add(new BatchRequestItem(String.valueOf(i), "GET", "sites/root", Map.of(),
+						List.of(String.valueOf(i - 1))));
+			}
+
+			List<BatchResponseItem> responses = factory.executePlanned(items, RequestPriority.NORMAL);
+
+			assertEquals(404, responses.get(0).getStatus());
+			assertEquals(424, responses.get(BatchCoalescer.MAX_BATCH_SIZE).getStatus());
+			responses.subList(1, BatchCoalescer.MAX_BATCH_SIZE).forEach(item -> assertEquals(404, item.getStatus()));
+			// 실패한 항목만 서버에 닿았고, 두 번째 라운드의 의존 항목은 다시 보내지 않았다
+			assertEquals(1, simulator.getGraphRequests());
+		}
+	}
+
+	private static GraphClientFactory factory(GraphApiSimulator simulator) {
+		GraphClientFactory factory = new GraphClientFactory("tenant", "client", "secret", simulator.getAuthority());
+		factory.setGraphBaseUrl(simulator.getGraphBaseUrl());
+		// 클라이언트 쪽 RateLimiter 는 끄고 서버의 스로틀링을 그대로 확인
+		factory.getRateLimiter().setMinimumCapacityLeft(0);
+		return factory;
+	}
+}
@@ -0,0 +1,88 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class GraphClientPoolTests {
+
+	@Test
+	void sendsToTheClientWithMostCapacityLeft() throws Exception {
+		try (GraphApiSimulator busy = new GraphApiSimulator(10, Duration.ofMinutes(1));
+				GraphApiSimulator idle = new GraphApiSimulator(10, Duration.ofMinutes(1))) {
+			busy.setRateLimitHeaderThreshold(0);
+			GraphClientFactory first = factory(busy, "first");
+			GraphClientFactory second = factory(idle, "second");
+			// 용량을 추적하도록 RateLimiter 를 켠다
+			first.getRateLimiter().setMinimumCapacityLeft(10);
+			second.getRateLimiter().setMinimumCapacityLeft(10);
+			GraphClientPool pool = new GraphClientPool(List.of(first, second));
+
+			for (int i = 0; i < 8; i++) {
+				first.callGraphApiAsync("sites/root").get();
+			}
+			assertEquals(20f, first.getRateLimiter().getCapacityLeft("sites"));
+			for (int i = 0; i < 4; i++) {
+				assertSame(second, pool.select("sites"));
+			}
+			assertEquals(100f, pool.getCapacityLeft("sites"));
+		}
+	}
+
+	@Test
+	void skipsThrottledClientUntilRetryAfter() throws Exception {
+		try (GraphApiSimulator small = new GraphApiSimulator(1, Duration.ofMinutes(1));
+				GraphApiSimulator large = new GraphApiSimulator(100, Duration.ofMinutes(1))) {
+			// RateLimit 헤더 없이 바로 429 를 받는 경우
+			small.setRateLimitHeaderThreshold(2);
+			large.setRateLimitHeaderThreshold(2);
+			GraphClientPool pool = new GraphClientPool(List.of(factory(small, "small"), factory(large, "large")));
+
+			int throttled = 0;
+			for (int i = 0; i < 10; i++) {
+				if (pool.callGraphApiAsync("sites/root", RequestPriority.NORMAL).get().getStatusCode() == 429) {
+					throttled++;
+				}
+			}
+			assertEquals(1, throttled);
+			assertEquals(1, small.getThrottledRequests());
+			assertEquals(1, small.getGraphRequests());
+			assertEquals(8, large.getGraphRequests());
+		}
+	}
+
+	@Test
+	void closingThePoolStopsEveryTokenRefresh() throws Exception {
+		try (GraphApiSimulator simulator = new GraphApiSimulator(10, Duration.ofMinutes(1))) {
+			GraphClientFactory first = factory(simulator, "first");
+			GraphClientFactory second = factory(simulator, "second");
+			GraphClientPool pool = new GraphClientPool(List.of(first, second));
+			first.getAccessToken();
+			second.getAccessToken();
+
+			pool.close();
+			// 앱 등록마다 있던 토큰 갱신 스레드가 남지 않는다
+			assertTrue(first.getTokenCache().isShutdown());
+			assertTrue(second.getTokenCache().isShutdown());
+		}
+	}
+
+	@Test
+	void needsAClient() {
+		assertThrows(IllegalArgumentException.class, () -> new GraphClientPool(List.of()));
+	}
+
+	private static GraphClientFactory factory(GraphApiSimulator simulator, String clientId) {
+		simulator.setLatency(Duration.ZERO, Duration.ZERO);
+		GraphClientFactory factory = new GraphClientFactory("tenant", clientId, "secret", simulator.getAuthority());
+		factory.setGraphBaseUrl(simulator.getGraphBaseUrl());
+		factory.getRateLimiter().setMinimumCapacityLeft(0);
+		return factory;
+	}
+}
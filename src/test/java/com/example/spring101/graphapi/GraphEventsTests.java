@@ -0,0 +1,67 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+class GraphEventsTests {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void recordsCallsAndThrottling() throws Exception {
+		Path file = directory.resolve("graph.jfr");
+		try (GraphApiSimulator simulator = new GraphApiSimulator(3, Duration.ofMinutes(1));
+				Recording recording = new Recording()) {
+			simulator.setLatency(Duration.ZERO, Duration.ZERO);
+			for (String event : List.of("graph.TokenFetch", "graph.HttpExchange", "graph.BatchItem", "graph.Throttled")) {
+				recording.enable(event).withThreshold(Duration.ZERO);
+			}
+			recording.start();
+
+			GraphClientFactory factory = new GraphClientFactory("tenant", "client", "secret", simulator.getAuthority());
+			factory.setGraphBaseUrl(simulator.getGraphBaseUrl());
+			factory.getRateLimiter().setMinimumCapacityLeft(0);
+
+			List<BatchRequestItem> items = new ArrayList<>();
+			for (int i = 1; i <= 5; i++) {
+				items.add(BatchRequestItem.get(String.valueOf(i), "sites/root"));
+			}
+			factory.executeBatchAsync(items).get();
+			assertEquals(429, factory.callGraphApiAsync("sites/root").get().getStatusCode());
+
+			recording.stop();
+			recording.dump(file);
+		}
+
+		Map<String, Integer> counts = new TreeMap<>();
+		List<RecordedEvent> throttled = new ArrayList<>();
+		for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+			counts.merge(event.getEventType().getName(), 1, Integer::sum);
+			if (event.getEventType().getName().equals("graph.Throttled")) {
+				throttled.add(event);
+			}
+		}
+		assertEquals(1, (int) counts.getOrDefault("graph.TokenFetch", 0));
+		// 토큰 요청, $batch, GET
+		assertEquals(3, (int) counts.getOrDefault("graph.HttpExchange", 0));
+		assertEquals(5, (int) counts.getOrDefault("graph.BatchItem", 0));
+		// 하위 요청 2개와 GET 1개
+		assertEquals(3, throttled.size());
+		assertTrue(throttled.stream().allMatch(event -> event.getInt("retryAfter") > 0));
+	}
+}
@@ -0,0 +1,195 @@
+package com.example.spring101.graphapi;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Load driver for {@link GraphClientFactory} against a local {@link GraphApiSimulator}.
+ *
+ * Reports throughput, status counts and end-to-end latency percentiles. Latency
+ * is measured per call from submission to completion, so time spent waiting on
+ * the {@link RateLimiter} is included. Run with
+ * {@code ./gradlew loadTest -Pargs="mode=batch concurrency=500"}; every option
+ * is {@code key=value}:
+ * <ul>
+ * <li>{@code mode} get (one GET per call) or batch (20 GETs per $batch), default get</li>
+ * <li>{@code requests} Graph requests to send, default 20000</li>
+ * <li>{@code warmup} requests sent first and left out of the report, default 2000</li>
+ * <li>{@code concurrency} calls in flight, default 200</li>
+ * <li>{@code limit} and {@code windowSeconds} simulator quota, default 2000 per 10s</li>
+ * <li>{@code latencyMillis} and {@code jitterMillis} simulator latency, default 20 and 10</li>
+ * <li>{@code cacheTtlMillis} use a {@link GraphResponseCache} with this TTL in get mode, default off</li>
+ * </ul>
+ */
+public class GraphLoadTest {
+
+	private static final String ENDPOINT = "sites/root";
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			if (eq < 0) {
+				throw new IllegalArgumentException("Expected key=value but got " + arg);
+			}
+			options.put(arg.substring(0, eq), arg.substring(eq + 1));
+		}
+
+		boolean batch = "batch".equals(options.getOrDefault("mode", "get"));
+		int requests = intOption(options, "requests", 20_000);
+		int warmup = intOption(options, "warmup", 2_000);
+		int concurrency = intOption(options, "concurrency", 200);
+		int limit = intOption(options, "limit", 2_000);
+		int windowSeconds = intOption(options, "windowSeconds", 10);
+
+		try (GraphApiSimulator simulator = new GraphApiSimulator(limit, Duration.ofSeconds(windowSeconds))) {
+			simulator.setLatency(Duration.ofMillis(intOption(options, "latencyMillis", 20)),
+					Duration.ofMillis(intOption(options, "jitterMillis", 10)));
+
+			GraphClientFactory factory = new GraphClientFactory("simulated-tenant", "simulated-client", "secret",
+					simulator.getAuthority());
+			factory.setGraphBaseUrl(simulator.getGraphBaseUrl());
+			int cacheTtlMillis = intOption(options, "cacheTtlMillis", -1);
+			if (cacheTtlMillis >= 0) {
+				factory.setResponseCache(new GraphResponseCache(GraphResponseCache.DEFAULT_MAXIMUM_BYTES,
+						Duration.ofMillis(cacheTtlMillis), GraphResponseCache.DEFAULT_RETENTION));
+			}
+			// 로그 대신 결과 요약만 출력
+			RateLimiter.logger.setLevel(Level.SEVERE);
+
+			try {
+				factory.getAccessToken(); // 토큰 발급은 측정에서 제외
+				if (warmup > 0) {
+					run(factory, batch, warmup, concurrency);
+				}
+				long served = simulator.getGraphRequests();
+				long throttled = simulator.getThrottledRequests();
+				LoadResult result = run(factory, batch, requests, concurrency);
+
+				System.out.printf("mode=%s requests=%d concurrency=%d quota=%d/%ds%n",
+						batch ? "batch" : "get", requests, concurrency, limit, windowSeconds);
+				result.print();
+				System.out.printf("simulator: served=%d throttled=%d tokens=%d%n",
+						simulator.getGraphRequests() - served, simulator.getThrottledRequests() - throttled,
+						simulator.getTokenRequests());
+				GraphResponseCache cache = factory.getResponseCache();
+				if (cache != null) {
+					System.out.printf("cache: hits=%d revalidated=%d misses=%d ratio=%.3f memory=%dB%n",
+							cache.getHits(), cache.getRevalidated(), cache.getMisses(), cache.getHitRatio(),
+							cache.getEstimatedBytes());
+				}
+			} finally {
+				factory.getTokenCache().shutdown();
+				factory.getTransport().close();
+			}
+		}
+	}
+
+	private static LoadResult run(GraphClientFactory factory, boolean batch, int requests, int concurrency)
+			throws Exception {
+		return batch ? runBatch(factory, requests, concurrency) : runGet(factory, requests, concurrency);
+	}
+
+	private static LoadResult runGet(GraphClientFactory factory, int requests, int concurrency) throws Exception {
+		LoadResult result = new LoadResult(requests);
+		Semaphore inFlight = new Semaphore(concurrency);
+		List<CompletableFuture<?>> calls = new ArrayList<>(requests);
+
+		for (int i = 0; i < requests; i++) {
+			inFlight.acquire();
+			long start = System.nanoTime();
+			calls.add(factory.callGraphApiAsync(ENDPOINT).whenComplete((response, error) -> {
+				inFlight.release();
+				result.record(start, error != null ? -1 : response.getStatusCode());
+			}));
+		}
+		CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+		return result.finish();
+	}
+
+	private static LoadResult runBatch(GraphClientFactory factory, int requests, int concurrency) throws Exception {
+		LoadResult result = new LoadResult(requests);
+		Semaphore inFlight = new Semaphore(concurrency);
+		List<CompletableFuture<?>> calls = new ArrayList<>();
+
+		int id = 0;
+		for (int sent = 0; sent < requests; sent += BatchCoalescer.MAX_BATCH_SIZE) {
+			List<BatchRequestItem> items = new ArrayList<>();
+			for (int i = 0; i < Math.min(BatchCoalescer.MAX_BATCH_SIZE, requests - sent); i++) {
+				items.add(BatchRequestItem.get(String.valueOf(++id), ENDPOINT));
+			}
+
+			inFlight.acquire();
+			long start = System.nanoTime();
+			calls.add(factory.executeBatchAsync(items).whenComplete((responses, error) -> {
+				inFlight.release();
+				if (error != null) {
+					items.forEach(item -> result.record(start, -1));
+				} else {
+					// 하위 요청은 모두 같은 왕복에 포함되므로 지연 시간도 같다
+					responses.forEach(item -> result.record(start, item.getStatus()));
+				}
+			}));
+		}
+		CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+		return result.finish();
+	}
+
+	private static int intOption(Map<String, String> options, String key, int defaultValue) {
+		String value = options.get(key);
+		return value == null ? defaultValue : Integer.parseInt(value);
+	}
+
+	/**
+	 * Latency in microseconds and status counts; status -1 means the call failed.
+	 */
+	private static final class LoadResult {
+		private final Histogram latency = new ConcurrentHistogram(3);
+		private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+		private final int requests;
+		private final long started = System.nanoTime();
+		private long elapsedNanos;
+
+		LoadResult(int requests) {
+			this.requests = requests;
+		}
+
+		void record(long startNanos, int status) {
+			latency.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+			statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+		}
+
+		LoadResult finish() {
+			elapsedNanos = System.nanoTime() - started;
+			return this;
+		}
+
+		void print() {
+			double seconds = elapsedNanos / 1e9;
+			System.out.printf("elapsed=%.2fs throughput=%.0f req/s statuses=%s%n",
+					seconds, requests / seconds, new TreeMap<>(statuses));
+			System.out.printf("latency ms: p50=%.2f p90=%.2f p99=%.2f p999=%.2f max=%.2f mean=%.2f%n",
+					millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(90)),
+					millis(latency.getValueAtPercentile(99)), millis(latency.getValueAtPercentile(99.9)),
+					millis(latency.getMaxValue()), latency.getMean() / 1000);
+			latency.outputPercentileDistribution(System.out, 1000.0);
+		}
+
+		private static double millis(long micros) {
+			return micros / 1000.0;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+class GraphPageIteratorTests {
+
+	@Test
+	void streamsEveryItemAcrossPages() throws Exception {
+		try (GraphApiSimulator simulator = simulator(25)) {
+			GraphClientFactory factory = factory(simulator);
+
+			try (Stream<JsonNode> items = factory.streamCollection("users/delta")) {
+				List<String> ids = items.map(item -> item.path("id").asText()).toList();
+				assertEquals(25, ids.size());
+				assertEquals("user-00", ids.get(0));
+				assertEquals("user-24", ids.get(24));
+			}
+			assertEquals(9, simulator.getGraphRequests());
+		}
+	}
+
+	@Test
+	void readsAheadNoMoreThanTheBufferAllows() throws Exception {
+		try (GraphApiSimulator simulator = simulator(30)) {
+			GraphClientFactory factory = factory(simulator);
+
+			try (GraphPageIterator pages = factory.iterateCollection("users/delta", 1)) {
+				pages.next();
+				long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+				while (!pages.isReadAheadBlocked() && System.nanoTime() < deadline) {
+					TimeUnit.MILLISECONDS.sleep(5);
+				}
+				assertTrue(pages.isReadAheadBlocked());
+				// 읽고 있는 페이지 + 큐에 1개 + 큐가 비기를 기다리는 1개
+				assertEquals(3, simulator.getGraphRequests());
+
+				int count = 1;
+				while (pages.hasNext()) {
+					pages.next();
+					count++;
+				}
+				assertEquals(30, count);
+				assertEquals(10, pages.getPagesRead());
+				assertNotNull(pages.getDeltaLink());
+				assertTrue(pages.getDeltaLink().contains("$deltatoken="));
+			}
+		}
+	}
+
+	private static GraphApiSimulator simulator(int items) throws Exception {
+		GraphApiSimulator simulator = new GraphApiSimulator(1000, Duration.ofMinutes(1));
+		simulator.setLatency(Duration.ZERO, Duration.ZERO);
+		simulator.setDeltaPageSize(3);
+		for (int i = 0; i < items; i++) {
+			simulator.putItem(String.format("user-%02d", i));
+		}
+		return simulator;
+	}
+
+	private static GraphClientFactory factory(GraphApiSimulator simulator) {
+		GraphClientFactory factory = new GraphClientFactory("tenant", "client", "secret", simulator.getAuthority());
+		factory.setGraphBaseUrl(simulator.getGraphBaseUrl());
+		return factory;
+	}
+}
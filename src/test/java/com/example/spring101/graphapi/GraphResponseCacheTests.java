@@ -0,0 +1,74 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+class GraphResponseCacheTests {
+
+	@Test
+	void servesFreshEntriesWithoutARequest() throws Exception {
+		try (GraphApiSimulator simulator = new GraphApiSimulator(100, Duration.ofMinutes(1))) {
+			GraphResponseCache cache = new GraphResponseCache(1024 * 1024, Duration.ofMinutes(5), Duration.ofHours(1));
+			GraphClientFactory factory = factory(simulator, cache);
+
+			String first = factory.callGraphApi("sites/root").orElseThrow();
+			String second = factory.callGraphApi("sites/root").orElseThrow();
+
+			assertEquals(first, second);
+			assertEquals(1, simulator.getGraphRequests());
+			assertEquals(1, cache.getHits());
+			assertEquals(1, cache.getMisses());
+			assertEquals(0.5, cache.getHitRatio());
+		}
+	}
+
+	@Test
+	void revalidatesStaleEntriesWithIfNoneMatch() throws Exception {
+		try (GraphApiSimulator simulator = new GraphApiSimulator(100, Duration.ofMinutes(1))) {
+			GraphResponseCache cache = new GraphResponseCache(1024 * 1024, Duration.ZERO, Duration.ofHours(1));
+			GraphClientFactory factory = factory(simulator, cache);
+
+			String first = factory.callGraphApi("sites/root").orElseThrow();
+			GraphApiResponse revalidated = factory.callGraphApiAsync("sites/root").get();
+
+			assertEquals(200, revalidated.getStatusCode());
+			assertEquals(first, revalidated.getBody());
+			assertEquals(1, simulator.getNotModifiedResponses());
+			assertEquals(1, cache.getRevalidated());
+
+			// 리소스가 바뀌면 ETag 가 달라져 본문을 새로 받는다
+			simulator.updateResources();
+			factory.callGraphApi("sites/root").orElseThrow();
+			assertEquals(1, simulator.getNotModifiedResponses());
+			assertEquals(2, cache.getMisses());
+		}
+	}
+
+	@Test
+	void revalidatesThroughCoalescedBatches() throws Exception {
+		try (GraphApiSimulator simulator = new GraphApiSimulator(100, Duration.ofMinutes(1))) {
+			GraphResponseCache cache = new GraphResponseCache(1024 * 1024, Duration.ZERO, Duration.ofHours(1));
+			GraphClientFactory factory = factory(simulator, cache);
+			factory.enableBatching(20, Duration.ofMillis(1));
+
+			String first = factory.callGraphApi("sites/root").orElseThrow();
+			String second = factory.callGraphApi("sites/root").orElseThrow();
+
+			assertEquals(first, second);
+			assertEquals(1, simulator.getNotModifiedResponses());
+			assertEquals(1, cache.getRevalidated());
+			factory.disableBatching();
+		}
+	}
+
+	private static GraphClientFactory factory(GraphApiSimulator simulator, GraphResponseCache cache) {
+		simulator.setLatency(Duration.ZERO, Duration.ZERO);
+		GraphClientFactory factory = new GraphClientFactory("tenant", "client", "secret", simulator.getAuthority());
+		factory.setGraphBaseUrl(simulator.getGraphBaseUrl());
+		factory.setResponseCache(cache);
+		return factory;
+	}
+}
@@ -0,0 +1,123 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class GraphTelemetryTests {
+
+	@Test
+	void percentileReportsTheBucketBound() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(-1, histogram.getPercentileMillis(50));
+
+		for (int i = 0; i < 90; i++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(15));
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(400));
+		}
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(20, histogram.getPercentileMillis(50));
+		assertEquals(20, histogram.getPercentileMillis(90));
+		assertEquals(500, histogram.getPercentileMillis(99));
+	}
+
+	@Test
+	void percentileAboveTheLastBoundReportsTheSlowestSample() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+		histogram.record(TimeUnit.SECONDS.toNanos(75));
+		histogram.record(TimeUnit.SECONDS.toNanos(90));
+
+		assertEquals(10, histogram.getPercentileMillis(30));
+		assertEquals(90_000, histogram.getPercentileMillis(99));
+	}
+
+	@Test
+	void quotaSeriesKeepsTheLatestSamples() {
+		QuotaTimeSeries quota = new QuotaTimeSeries(3);
+		assertEquals(-1, quota.getLatestRemaining());
+
+		quota.record(100, 90, 100);
+		quota.record(101, 80, 100);
+		quota.record(102, 70, 100);
+		quota.record(103, 60, 100);
+
+		assertEquals(60, quota.getLatestRemaining());
+		assertEquals(100, quota.getLimit());
+		assertEquals(Map.of(101L, 80, 102L, 70, 103L, 60), quota.toMap());
+		assertEquals(List.of(101L, 102L, 103L), quota.snapshot().stream().map(point -> point[0]).toList());
+	}
+
+	@Test
+	void burnRateIgnoresWindowResets() {
+		QuotaTimeSeries quota = new QuotaTimeSeries(8);
+		quota.record(100, 50, 100);
+		quota.record(102, 30, 100);
+		// 창이 리셋되어 값이 오른 구간은 소모로 세지 않는다
+		quota.record(104, 100, 100);
+		quota.record(105, 90, 100);
+
+		assertEquals(30 / 5.0, quota.getBurnRatePerSecond(), 0.0001);
+	}
+
+	@Test
+	void countsRequestsPerEndpoint() {
+		GraphTelemetry telemetry = new GraphTelemetry();
+		telemetry.recordRequest("sites", TimeUnit.MILLISECONDS.toNanos(5), snapshot(200, "40"));
+		telemetry.recordRequest("sites", TimeUnit.MILLISECONDS.toNanos(5), snapshot(429, "0"));
+		telemetry.recordRequest("sites", TimeUnit.MILLISECONDS.toNanos(5), RateLimitSnapshot.ofSingleValued(503, Map.of()));
+		telemetry.recordRequest("users", TimeUnit.MILLISECONDS.toNanos(5), RateLimitSnapshot.ofSingleValued(200, Map.of()));
+		telemetry.recordWait("sites", TimeUnit.MILLISECONDS.toNanos(500));
+		telemetry.recordWait("sites", 0);
+
+		EndpointTelemetry sites = telemetry.getEndpoint("sites");
+		assertEquals(4, telemetry.getTotalRequests());
+		assertEquals(3, sites.getRequests());
+		assertEquals(1, sites.getThrottled());
+		assertEquals(1, sites.getFailures());
+		assertEquals(1, sites.getWaits());
+		assertEquals(0.5, sites.getWaitSeconds(), 0.0001);
+		assertEquals(0, sites.getQuota().getLatestRemaining());
+		assertEquals(-1, telemetry.getEndpoint("users").getQuota().getLatestRemaining());
+	}
+
+	@Test
+	void countsThrottledBatchSubResponses() throws Exception {
+		try (GraphApiSimulator simulator = new GraphApiSimulator(2, Duration.ofMinutes(1))) {
+			simulator.setLatency(Duration.ZERO, Duration.ZERO);
+			GraphClientFactory factory = new GraphClientFactory("tenant", "client", "secret", simulator.getAuthority());
+			factory.setGraphBaseUrl(simulator.getGraphBaseUrl());
+			factory.getRateLimiter().setMinimumCapacityLeft(0);
+			GraphTelemetry telemetry = new GraphTelemetry();
+			factory.setTelemetry(telemetry);
+
+			List<BatchRequestItem> items = new ArrayList<>();
+			for (int i = 1; i <= 4; i++) {
+				items.add(BatchRequestItem.get(String.valueOf(i), "sites/root"));
+			}
+			factory.executeBatchAsync(items).get();
+
+			// 봉투는 200 이지만 하위 응답 두 개가 429
+			EndpointTelemetry batch = telemetry.getEndpoint(GraphClientFactory.BATCH_API_TYPE);
+			assertEquals(1, batch.getRequests());
+			assertEquals(2, batch.getThrottled());
+			assertEquals(0, batch.getFailures());
+		}
+	}
+
+	private static RateLimitSnapshot snapshot(int status, String remaining) {
+		return RateLimitSnapshot.ofSingleValued(status, Map.of(
+				"RateLimit-Limit", "100",
+				"RateLimit-Remaining", remaining,
+				"RateLimit-Reset", "30"));
+	}
+}
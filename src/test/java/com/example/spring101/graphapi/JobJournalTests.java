@@ -0,0 +1,164 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JobJournalTests {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void replaysDoneItemsAndCheckpointsAfterATornTail() throws Exception {
+		Path file = directory.resolve("sweep.journal");
+		try (JobJournal journal = new JobJournal(file, 64, Duration.ofMinutes(1))) {
+			for (int i = 0; i < 1000; i++) {
+				journal.markDone("parallel:" + i);
+			}
+			journal.markDone("parallel:7");
+			journal.checkpoint("users", "https://graph.microsoft.com/v1.0/users?$skiptoken=1");
+			journal.checkpoint("users", "https://graph.microsoft.com/v1.0/users?$skiptoken=2");
+			journal.checkpoint("groups", "https://graph.microsoft.com/v1.0/groups?$skiptoken=1");
+			journal.clearCheckpoint("groups");
+		}
+
+		// 쓰다 만 레코드 흉내
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 40, 1, 2 }));
+		}
+
+		try (JobJournal journal = new JobJournal(file)) {
+			assertEquals(1000, journal.getDoneCount());
+			assertTrue(journal.isDone("parallel:999"));
+			assertFalse(journal.isDone("parallel:1000"));
+			assertEquals("https://graph.microsoft.com/v1.0/users?$skiptoken=2", journal.getCheckpoint("users").orElseThrow());
+			assertFalse(journal.getCheckpoint("groups").isPresent());
+
+			journal.reset();
+			assertEquals(0, journal.getDoneCount());
+			assertEquals(0, journal.getFileSize());
+		}
+	}
+
+	@Test
+	void restartedRunSkipsFinishedItems() throws Exception {
+		Path file = directory.resolve("sweep.journal");
+		Set<Integer> called = ConcurrentHashMap.newKeySet();
+		GraphApiResponse ok = new GraphApiResponse(200, Map.of(), "{}");
+
+		try (JobJournal journal = new JobJournal(file);
+				GraphWorkloadRunner runner = new GraphWorkloadRunner(ExecutionMode.VIRTUAL,
+						new AdaptiveConcurrencyLimiter(4, 1, 8), () -> 100)) {
+			// 90% 지점에서 실패가 이어지는 실행
+			WorkloadResult first = runner.runAll(0, 100, index -> {
+				if (index >= 90) {
+					throw new IllegalStateException("Graph is down");
+				}
+				return ok;
+			}, journal, "sweep");
+			assertEquals(90, first.getCompleted());
+			assertEquals(10, first.getFailed());
+		}
+
+		try (JobJournal journal = new JobJournal(file);
+				GraphWorkloadRunner runner = new GraphWorkloadRunner(ExecutionMode.VIRTUAL,
+						new AdaptiveConcurrencyLimiter(4, 1, 8), () -> 100)) {
+			WorkloadResult second = runner.runAll(0, 100, index -> {
+				called.add(index);
+				return ok;
+			}, journal, "sweep");
+			assertEquals(90, second.getSkipped());
+			assertEquals(10, second.getCompleted());
+			assertEquals(10, called.size());
+			assertTrue(called.stream().allMatch(index -> index >= 90));
+		}
+	}
+
+	@Test
+	void failedSubResponsesAreNotMarkedDone() throws Exception {
+		Path file = directory.resolve("sweep.journal");
+		// 봉투는 200 이지만 하위 응답 하나가 실패한 batch
+		GraphApiResponse partial = new GraphApiResponse(200, Map.of(), null, List.of(
+				new BatchResponseItem("1", 200, Map.of(), "{}"),
+				new BatchResponseItem("2", 500, Map.of(), "{}")));
+		GraphApiResponse notFound = new GraphApiResponse(404, Map.of(), "{}");
+		GraphApiResponse ok = new GraphApiResponse(200, Map.of(), "{}");
+
+		try (JobJournal journal = new JobJournal(file);
+				GraphWorkloadRunner runner = new GraphWorkloadRunner(ExecutionMode.VIRTUAL,
+						new AdaptiveConcurrencyLimiter(4, 1, 8), () -> 100)) {
+			WorkloadResult result = runner.runAll(0, 3, index -> switch (index) {
+				case 0 -> partial;
+				case 1 -> notFound;
+				default -> ok;
+			}, journal, "sweep");
+
+			assertEquals(1, result.getCompleted());
+			assertEquals(2, result.getFailed());
+			assertFalse(journal.isDone("sweep:0"));
+			assertFalse(journal.isDone("sweep:1"));
+			assertTrue(journal.isDone("sweep:2"));
+		}
+	}
+
+	@Test
+	void transportErrorsCountAsFailed() throws Exception {
+		GraphApiResponse ok = new GraphApiResponse(200, Map.of(), "{}");
+
+		try (JobJournal journal = new JobJournal(directory.resolve("sweep.journal"));
+				GraphWorkloadRunner runner = new GraphWorkloadRunner(ExecutionMode.VIRTUAL,
+						new AdaptiveConcurrencyLimiter(4, 1, 8), () -> 100)) {
+			// 호출의 IOException 은 저널 기록 실패와 달리 실패로 센다
+			WorkloadResult result = runner.runAll(0, 2, index -> {
+				if (index == 0) {
+					throw new IOException("Connection reset");
+				}
+				return ok;
+			}, journal, "sweep");
+
+			assertEquals(1, result.getCompleted());
+			assertEquals(1, result.getFailed());
+			assertFalse(journal.isDone("sweep:0"));
+		}
+	}
+
+	@Test
+	void openCircuitPausesTheItemInsteadOfFailingIt() throws Exception {
+		GraphApiResponse ok = new GraphApiResponse(200, Map.of(), "{}");
+		AtomicInteger calls = new AtomicInteger();
+
+		try (JobJournal journal = new JobJournal(directory.resolve("sweep.journal"));
+				GraphWorkloadRunner runner = new GraphWorkloadRunner(ExecutionMode.VIRTUAL,
+						new AdaptiveConcurrencyLimiter(4, 1, 8), () -> 100)) {
+			runner.setMaxAttempts(1);
+			WorkloadResult result = runner.runAll(0, 1, index -> {
+				if (calls.incrementAndGet() == 1) {
+					throw new CircuitOpenException("sites", 0);
+				}
+				return ok;
+			}, journal, "sweep");
+
+			// 시도 횟수로도 실패로도 세지 않고 같은 항목을 다시 보낸다
+			assertEquals(2, calls.get());
+			assertEquals(1, result.getCompleted());
+			assertEquals(0, result.getFailed());
+			assertTrue(journal.isDone("sweep:0"));
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class PrioritySchedulerTests {
+
+	@Test
+	void lowPriorityYieldsFirst() {
+		RateLimiter limiter = new RateLimiter();
+		limiter.updateWindow(headers(100, 30), "sites");
+		PriorityScheduler scheduler = new PriorityScheduler(limiter);
+
+		// 30개 남음: LOW 는 35% 를 남겨야 하므로 대기, HIGH 는 10% 까지 사용 가능
+		CompletableFuture<Void> low = scheduler.acquireAsync("sites", RequestPriority.LOW);
+		assertFalse(low.isDone());
+		assertEquals(1, scheduler.getQueued(RequestPriority.LOW));
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(scheduler.acquireAsync("sites", RequestPriority.NORMAL).isDone());
+		}
+		assertFalse(scheduler.acquireAsync("sites", RequestPriority.NORMAL).isDone());
+		for (int i = 0; i < 10; i++) {
+			assertTrue(scheduler.acquireAsync("sites", RequestPriority.HIGH).isDone());
+		}
+		assertFalse(scheduler.acquireAsync("sites", RequestPriority.HIGH).isDone());
+	}
+
+	@Test
+	void queuedRequestsAreReleasedByWeight() throws Exception {
+		RateLimiter limiter = new RateLimiter();
+		limiter.updateWindow(headers(100, 5), "sites");
+		PriorityScheduler scheduler = new PriorityScheduler(limiter);
+
+		List<RequestPriority> order = Collections.synchronizedList(new ArrayList<>());
+		List<CompletableFuture<Void>> granted = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			granted.add(scheduler.acquireAsync("sites", RequestPriority.LOW)
+					.thenRun(() -> order.add(RequestPriority.LOW)));
+		}
+		for (int i = 0; i < 8; i++) {
+			granted.add(scheduler.acquireAsync("sites", RequestPriority.HIGH)
+					.thenRun(() -> order.add(RequestPriority.HIGH)));
+		}
+		assertTrue(order.isEmpty());
+
+		// 창이 초기화되면 먼저 온 LOW 보다 가중치가 큰 HIGH 가 먼저 나간다
+		CompletableFuture.allOf(granted.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+		assertEquals(List.of(RequestPriority.HIGH), order.subList(0, 8).stream().distinct().toList());
+		assertEquals(List.of(RequestPriority.LOW), order.subList(8, 12).stream().distinct().toList());
+	}
+
+	private static RateLimitSnapshot headers(int limit, int remaining) {
+		return RateLimitSnapshot.ofSingleValued(200, Map.of("RateLimit-Limit", String.valueOf(limit),
+				"RateLimit-Remaining", String.valueOf(remaining), "RateLimit-Reset", "1"));
+	}
+}
@@ -0,0 +1,107 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class RateLimiterTests {
+
+	@Test
+	void unknownLimitNeverDelays() {
+		RateLimiter limiter = new RateLimiter();
+		assertEquals(0, limiter.acquire("sites"));
+		assertEquals(100f, limiter.getCapacityLeft("sites"), 0.001);
+	}
+
+	@Test
+	void delaysOnceReserveIsReached() {
+		RateLimiter limiter = new RateLimiter();
+		limiter.updateWindow(headers(100, 12, 30), "sites");
+
+		assertEquals(0, limiter.acquire("sites"));
+		assertEquals(0, limiter.acquire("sites"));
+
+		long delay = limiter.acquire("sites");
+		assertTrue(delay > 25_000 && delay <= 30_000, "delay " + delay);
+	}
+
+	@Test
+	void bucketsAreSeparatePerApiType() {
+		RateLimiter limiter = new RateLimiter();
+		limiter.updateWindow(headers(100, 5, 30), "sites");
+
+		assertTrue(limiter.acquire("sites") > 0);
+		assertEquals(0, limiter.acquire("users"));
+	}
+
+	@Test
+	void staleResponseDoesNotRaiseRemaining() {
+		RateLimiter limiter = new RateLimiter();
+		limiter.updateWindow(headers(100, 50, 30), "sites");
+		limiter.updateWindow(headers(100, 80, 30), "sites");
+
+		assertEquals(50f, limiter.getCapacityLeft("sites"), 0.001);
+	}
+
+	@Test
+	void snapshotReadsLowerCaseHttp2Headers() {
+		RateLimitSnapshot snapshot = RateLimitSnapshot.of(429, Map.of(
+				"ratelimit-limit", List.of("100"),
+				"ratelimit-remaining", List.of("0"),
+				"retry-after", List.of("12"),
+				"x-ms-throttle-limit-percentage", List.of("1.2")));
+
+		assertEquals(100, snapshot.getLimit());
+		assertEquals(0, snapshot.getRemaining());
+		assertEquals(-1, snapshot.getResetSeconds());
+		assertEquals(12, snapshot.getRetryAfterSeconds());
+		assertEquals(1.2f, snapshot.getThrottleLimitPercentage(), 0.001);
+		assertTrue(snapshot.isThrottled());
+
+		RateLimiter limiter = new RateLimiter();
+		limiter.updateWindow(snapshot, "sites");
+		assertEquals(0f, limiter.getCapacityLeft("sites"), 0.001);
+	}
+
+	@Test
+	void keepsLimitingAfterTheWindowResets() {
+		AtomicLong now = new AtomicLong(1_700_000_000_000L);
+		RateLimiter limiter = new RateLimiter();
+		limiter.setClock(now::get);
+		limiter.updateWindow(headers(10, 2, 1), "sites");
+
+		assertEquals(0, limiter.acquire("sites"));
+		long delay = limiter.acquire("sites");
+		assertEquals(1000L, delay);
+		now.addAndGet(delay);
+
+		// 새 창에는 응답 헤더가 없어도 한도만큼만 내주고, 다음 창까지 다시 기다리게 한다
+		for (int i = 0; i < 9; i++) {
+			assertEquals(0L, limiter.acquire("sites"), "request " + i);
+		}
+		assertEquals(1000L, limiter.acquire("sites"));
+	}
+
+	@Test
+	void backsOffWhenTheResetIsUnknown() {
+		RateLimiter limiter = new RateLimiter();
+		limiter.updateWindow(new HttpResponseWrapper(Map.of(
+				"RateLimit-Limit", "100",
+				"RateLimit-Remaining", "0")), "sites");
+
+		assertTrue(limiter.acquire("sites") > 0);
+	}
+
+	private static HttpResponseWrapper headers(int limit, int remaining, int reset) {
+		return new HttpResponseWrapper(Map.of(
+				"RateLimit-Limit", String.valueOf(limit),
+				"RateLimit-Remaining", String.valueOf(remaining),
+				"RateLimit-Reset", String.valueOf(reset)));
+	}
+
+}
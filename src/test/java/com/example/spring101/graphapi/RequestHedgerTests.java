@@ -0,0 +1,124 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class RequestHedgerTests {
+
+	@Test
+	void slowReadIsAnsweredByTheHedge() throws Exception {
+		RequestHedger hedger = new RequestHedger(95);
+		List<Runnable> due = manualTimer(hedger);
+		CompletableFuture<GraphApiResponse> slow = new CompletableFuture<>();
+		GraphApiResponse fast = new GraphApiResponse(200, Map.of(), "{\"hedge\":true}");
+		AtomicInteger attempts = new AtomicInteger();
+
+		CompletableFuture<GraphApiResponse> result = hedger.send(admitted -> {
+			admitted.run();
+			return attempts.incrementAndGet() == 1 ? slow : CompletableFuture.completedFuture(fast);
+		}, latencies(20, 5), new RateLimiter(), "sites");
+
+		runDue(due);
+		assertSame(fast, result.get(5, TimeUnit.SECONDS));
+		assertEquals(2, attempts.get());
+		assertEquals(1, hedger.getHedged());
+		assertEquals(1, hedger.getHedgeWins());
+	}
+
+	@Test
+	void hedgeWaitStartsOnceTheAttemptIsAdmitted() throws Exception {
+		RequestHedger hedger = new RequestHedger(95);
+		List<Runnable> due = manualTimer(hedger);
+		AtomicReference<Runnable> queued = new AtomicReference<>();
+		AtomicInteger attempts = new AtomicInteger();
+
+		hedger.send(admitted -> {
+			if (attempts.incrementAndGet() == 1) {
+				queued.set(admitted);
+			}
+			return new CompletableFuture<>();
+		}, latencies(20, 5), new RateLimiter(), "sites");
+
+		// rate limiter 대기열에 있는 동안은 헤지 타이머가 돌지 않는다
+		assertTrue(due.isEmpty());
+		queued.get().run();
+		assertEquals(1, due.size());
+		runDue(due);
+		assertEquals(2, attempts.get());
+	}
+
+	@Test
+	void noHedgeWhileQuotaIsLow() throws Exception {
+		RequestHedger hedger = new RequestHedger(95);
+		List<Runnable> due = manualTimer(hedger);
+		RateLimiter limiter = new RateLimiter();
+		limiter.updateWindow(RateLimitSnapshot.ofSingleValued(200, Map.of(
+				"RateLimit-Limit", "100", "RateLimit-Remaining", "10", "RateLimit-Reset", "60")), "sites");
+		CompletableFuture<GraphApiResponse> slow = new CompletableFuture<>();
+		AtomicInteger attempts = new AtomicInteger();
+
+		CompletableFuture<GraphApiResponse> result = hedger.send(admitted -> {
+			admitted.run();
+			attempts.incrementAndGet();
+			return slow;
+		}, latencies(20, 5), limiter, "sites");
+
+		runDue(due);
+		assertFalse(result.isDone());
+		GraphApiResponse response = new GraphApiResponse(200, Map.of(), "{}");
+		slow.complete(response);
+		assertSame(response, result.get(5, TimeUnit.SECONDS));
+		assertEquals(1, attempts.get());
+		assertEquals(0, hedger.getHedged());
+		assertEquals(1, hedger.getSuppressed());
+	}
+
+	@Test
+	void waitsForEnoughSamples() {
+		RequestHedger hedger = new RequestHedger(95);
+		assertEquals(-1, hedger.hedgeDelayMillis(latencies(5, 5)));
+		assertEquals(10, hedger.hedgeDelayMillis(latencies(20, 5)));
+		assertEquals(200, hedger.hedgeDelayMillis(latencies(20, 150)));
+		// 마지막 버킷(60초)을 넘는 지연은 헤지하지 않는다
+		assertEquals(-1, hedger.hedgeDelayMillis(latencies(20, 90_000)));
+
+		CompletableFuture<GraphApiResponse> only = new CompletableFuture<>();
+		assertSame(only, hedger.send(admitted -> only, null, new RateLimiter(), "sites"));
+		only.complete(new GraphApiResponse(200, Map.of(), null, List.of()));
+	}
+
+	/**
+	 * Hedge checks are collected instead of scheduled, and run by {@link #runDue}.
+	 */
+	private static List<Runnable> manualTimer(RequestHedger hedger) {
+		List<Runnable> due = new CopyOnWriteArrayList<>();
+		hedger.setTimer(millis -> due::add);
+		return due;
+	}
+
+	private static void runDue(List<Runnable> due) {
+		List<Runnable> tasks = List.copyOf(due);
+		due.clear();
+		tasks.forEach(Runnable::run);
+	}
+
+	private static LatencyHistogram latencies(int count, long millis) {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < count; i++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+		}
+		return histogram;
+	}
+}
@@ -0,0 +1,116 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+class ResponseBodyTests {
+
+	private static final String JSON = "{\"displayName\":\"서울 사이트\",\"value\":[1,2,3]}";
+
+	@Test
+	void bodySpansPooledBuffersAndDecodesLazily() throws Exception {
+		BufferPool pool = new BufferPool(8, 16);
+		ResponseBody body = receive(pool, JSON);
+
+		byte[] bytes = JSON.getBytes(StandardCharsets.UTF_8);
+		assertEquals(bytes.length, body.length());
+		// 8바이트 버퍼 경계에서 한글이 잘려도 한 번에 디코딩
+		assertEquals(JSON, body.asString());
+		try (InputStream in = body.newInputStream()) {
+			assertEquals(JSON, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		body.writeTo(Channels.newChannel(out));
+		assertEquals(JSON, out.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void releasedBuffersAreReused() throws Exception {
+		BufferPool pool = new BufferPool(8, 16);
+		ResponseBody first = receive(pool, JSON);
+		long allocated = pool.getAllocated();
+
+		first.release();
+		first.release();
+		assertEquals(allocated, pool.getPooled());
+		assertThrows(IllegalStateException.class, first::newInputStream);
+
+		ResponseBody second = receive(pool, JSON);
+		assertEquals(JSON, second.asString());
+		assertEquals(allocated, pool.getAllocated());
+		assertTrue(pool.getReused() >= allocated);
+	}
+
+	@Test
+	void sharedBodyIsReturnedAfterTheLastRelease() throws Exception {
+		BufferPool pool = new BufferPool(8, 16);
+		GraphApiResponse first = GraphApiResponse.withBody(200, Map.of(), receive(pool, JSON));
+		GraphApiResponse second = first.retain();
+
+		first.release();
+		// 같은 참조를 두 번 놓아도 다른 호출자의 본문은 그대로
+		first.release();
+		assertEquals(0, pool.getPooled());
+		assertEquals(JSON, second.getBody());
+
+		second.release();
+		assertEquals(pool.getAllocated(), pool.getPooled());
+	}
+
+	@Test
+	void collapsedCallersEachGetTheirOwnReference() throws Exception {
+		BufferPool pool = new BufferPool(8, 16);
+		SingleFlight<String, GraphApiResponse> inFlight = new SingleFlight<>();
+		CompletableFuture<GraphApiResponse> sent = new CompletableFuture<>();
+
+		CompletableFuture<GraphApiResponse> a = inFlight.execute("sites", () -> sent,
+				GraphApiResponse::retain, GraphApiResponse::release);
+		CompletableFuture<GraphApiResponse> b = inFlight.execute("sites", () -> sent,
+				GraphApiResponse::retain, GraphApiResponse::release);
+		sent.complete(GraphApiResponse.withBody(200, Map.of(), receive(pool, JSON)));
+
+		a.join().release();
+		assertEquals(0, pool.getPooled());
+		assertEquals(JSON, b.join().getBody());
+		b.join().release();
+		assertEquals(pool.getAllocated(), pool.getPooled());
+	}
+
+	@Test
+	void shortBodyIsNotGivenAWholePooledBuffer() throws Exception {
+		BufferPool pool = new BufferPool(1024, 16);
+		byte[] bytes = JSON.getBytes(StandardCharsets.UTF_8);
+		HttpResponse.BodySubscriber<ResponseBody> subscriber = ResponseBody.subscriber(pool, bytes.length);
+		subscriber.onNext(List.of(ByteBuffer.wrap(bytes)));
+		subscriber.onComplete();
+		ResponseBody body = subscriber.getBody().toCompletableFuture().get();
+
+		assertEquals(JSON, body.asString());
+		assertEquals(0, pool.getAllocated());
+		body.release();
+		assertEquals(0, pool.getPooled());
+	}
+
+	private static ResponseBody receive(BufferPool pool, String text) throws Exception {
+		HttpResponse.BodySubscriber<ResponseBody> subscriber = ResponseBody.subscriber(pool);
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		// HttpClient 처럼 여러 조각으로 나눠 전달
+		int half = bytes.length / 2 + 1;
+		subscriber.onNext(List.of(ByteBuffer.wrap(bytes, 0, half), ByteBuffer.wrap(bytes, half, bytes.length - half)));
+		subscriber.onComplete();
+		return subscriber.getBody().toCompletableFuture().get();
+	}
+}
@@ -0,0 +1,127 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SharedQuotaLedgerTests {
+
+	@TempDir
+	Path directory;
+
+	// 초 경계에서 시작해 창 길이가 정확히 떨어지게 한다
+	private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+	@Test
+	void processesShareOneBudget() throws Exception {
+		Path file = directory.resolve("ledger.bin");
+		try (SharedQuotaLedger first = new SharedQuotaLedger(file, 10, Duration.ofSeconds(30));
+				SharedQuotaLedger second = new SharedQuotaLedger(file, 10, Duration.ofSeconds(30))) {
+			first.update("batch", 100, 100, 60);
+
+			int granted = 0;
+			for (int i = 0; i < 200; i++) {
+				SharedQuotaLedger ledger = i % 2 == 0 ? first : second;
+				if (ledger.acquire("batch", 0) == 0) {
+					granted++;
+				}
+			}
+			assertEquals(100, granted);
+			assertTrue(first.acquire("batch", 0) > 0);
+			assertEquals(0f, second.getCapacityLeft("batch"));
+		}
+	}
+
+	@Test
+	void expiredLeaseIsReclaimed() throws Exception {
+		Path file = directory.resolve("ledger.bin");
+		// heartbeat 를 멈추고 닫지 않고 버려서 비정상 종료된 프로세스를 흉내낸다
+		SharedQuotaLedger crashed = new SharedQuotaLedger(file, 10, Duration.ofSeconds(30));
+		crashed.setClock(now::get);
+		crashed.update("batch", 20, 20, 60);
+		assertEquals(0, crashed.acquire("batch", 0));
+		assertEquals(10, crashed.getRemaining("batch"));
+		crashed.stopHeartbeats();
+
+		try (SharedQuotaLedger survivor = new SharedQuotaLedger(file, 1, Duration.ofSeconds(30))) {
+			survivor.setClock(now::get);
+			now.addAndGet(Duration.ofSeconds(31).toMillis());
+			int granted = 0;
+			while (survivor.acquire("batch", 0) == 0) {
+				granted++;
+			}
+			// 한 번 쓴 토큰을 뺀 나머지 19개를 모두 사용
+			assertEquals(19, granted);
+		}
+	}
+
+	@Test
+	void idleProcessKeepsItsLease() throws Exception {
+		Path file = directory.resolve("ledger.bin");
+		try (SharedQuotaLedger idle = new SharedQuotaLedger(file, 10, Duration.ofSeconds(30));
+				SharedQuotaLedger busy = new SharedQuotaLedger(file, 1, Duration.ofSeconds(30))) {
+			idle.setClock(now::get);
+			busy.setClock(now::get);
+			idle.update("batch", 20, 20, 60);
+			assertEquals(0, idle.acquire("batch", 0));
+
+			// acquire 없이 TTL 을 넘겨도 heartbeat 를 보내는 프로세스의 lease 는 회수되지 않는다
+			for (int i = 0; i < 2; i++) {
+				now.addAndGet(Duration.ofSeconds(20).toMillis());
+				idle.heartbeatLeases();
+			}
+			int granted = 0;
+			while (busy.acquire("batch", 0) == 0) {
+				granted++;
+			}
+			assertEquals(10, granted);
+			for (int i = 0; i < 9; i++) {
+				assertEquals(0L, idle.acquire("batch", 0), "leased token " + i);
+			}
+		}
+	}
+
+	@Test
+	void keepsLimitingAfterTheWindowResets() throws Exception {
+		Path file = directory.resolve("ledger.bin");
+		try (SharedQuotaLedger ledger = new SharedQuotaLedger(file, 1, Duration.ofSeconds(30))) {
+			ledger.setClock(now::get);
+			ledger.update("batch", 5, 0, 1);
+			long delay = ledger.acquire("batch", 0);
+			assertEquals(1000L, delay);
+			now.addAndGet(delay);
+
+			// 새 창에는 응답이 없어도 한도만큼만 내주고, 다음 창까지 다시 기다리게 한다
+			for (int i = 0; i < 5; i++) {
+				assertEquals(0L, ledger.acquire("batch", 0), "request " + i);
+			}
+			assertEquals(1000L, ledger.acquire("batch", 0));
+		}
+	}
+
+	@Test
+	void rateLimiterPacesAgainstLedger() throws Exception {
+		Path file = directory.resolve("ledger.bin");
+		try (SharedQuotaLedger ledger = new SharedQuotaLedger(file, 1, Duration.ofSeconds(30));
+				SharedQuotaLedger other = new SharedQuotaLedger(file, 1, Duration.ofSeconds(30))) {
+			RateLimiter limiter = new RateLimiter();
+			limiter.setSharedLedger(ledger);
+			limiter.updateWindow(RateLimitSnapshot.ofSingleValued(200, Map.of("RateLimit-Limit", "100",
+					"RateLimit-Remaining", "50", "RateLimit-Reset", "30")), "batch");
+
+			// 다른 프로세스가 남은 할당량을 거의 다 쓴 상황
+			for (int i = 0; i < 40; i++) {
+				assertEquals(0, other.acquire("batch", 10));
+			}
+			assertTrue(limiter.acquire("batch") > 0);
+			assertEquals(10f, limiter.getCapacityLeft("batch"));
+		}
+	}
+}
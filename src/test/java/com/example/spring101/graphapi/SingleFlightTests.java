@@ -0,0 +1,68 @@
+package com.example.spring101.graphapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTests {
+
+	@Test
+	void concurrentCallersShareOneExecution() throws Exception {
+		SingleFlight<String, String> flight = new SingleFlight<>();
+		AtomicInteger executions = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+		List<Future<String>> results = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			results.add(executor.submit(() -> flight.call("sites/root", () -> {
+				executions.incrementAndGet();
+				release.await();
+				return "site";
+			})));
+		}
+		// 모든 호출이 대기 중인 호출에 합류할 때까지 기다린다
+		while (flight.getCollapsed() < 49) {
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+		release.countDown();
+
+		for (Future<String> result : results) {
+			assertEquals("site", result.get());
+		}
+		executor.shutdown();
+		assertEquals(1, executions.get());
+		assertEquals(0, flight.getInFlight());
+
+		// 완료 후에는 결과를 보관하지 않는다
+		assertEquals("again", flight.call("sites/root", () -> "again"));
+		assertEquals(2, flight.getExecuted());
+	}
+
+	@Test
+	void failuresReachEveryWaitingCaller() {
+		SingleFlight<String, String> flight = new SingleFlight<>();
+		CompletableFuture<String> response = new CompletableFuture<>();
+
+		CompletableFuture<String> first = flight.execute("sites/root", () -> response);
+		CompletableFuture<String> second = flight.execute("sites/root", () -> CompletableFuture.completedFuture("unused"));
+		response.completeExceptionally(new IllegalStateException("throttled"));
+
+		assertThrows(Exception.class, first::join);
+		assertThrows(Exception.class, second::join);
+		assertEquals(1, flight.getExecuted());
+		assertEquals(1, flight.getCollapsed());
+		assertEquals(0, flight.getInFlight());
+	}
+}